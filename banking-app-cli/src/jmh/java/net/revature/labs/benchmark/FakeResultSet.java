@@ -0,0 +1,87 @@
+package net.revature.labs.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory ResultSet over a list of rows (column name -> value), so the row mapping code can be
+ * measured without a database. Only the getters the model classes use are implemented.
+ *
+ * Call reset() before each pass; the proxy itself is reusable.
+ */
+public class FakeResultSet implements InvocationHandler {
+    private final List<Map<String, Object>> rows;
+    private int cursor = -1;
+    private Object lastValue;
+
+    private FakeResultSet(List<Map<String, Object>> rows) {
+        this.rows = rows;
+    }
+
+    public static ResultSet of(List<Map<String, Object>> rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class}, new FakeResultSet(rows));
+    }
+
+    // rewinds a ResultSet created by of()
+    public static void reset(ResultSet rs) {
+        ((FakeResultSet) Proxy.getInvocationHandler(rs)).cursor = -1;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                cursor++;
+                return cursor < rows.size();
+            case "close":
+                return null;
+            case "isClosed":
+                return false;
+            case "wasNull":
+                return lastValue == null;
+            case "getString":
+                Object value = column(args[0]);
+                return value == null ? null : value.toString();
+            case "getInt":
+                Number number = (Number) column(args[0]);
+                return number == null ? 0 : number.intValue();
+            case "getLong":
+                Number longNumber = (Number) column(args[0]);
+                return longNumber == null ? 0L : longNumber.longValue();
+            case "getBoolean":
+                Boolean bool = (Boolean) column(args[0]);
+                return bool != null && bool;
+            case "getBigDecimal":
+                return (BigDecimal) column(args[0]);
+            case "getTimestamp":
+                return (Timestamp) column(args[0]);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "FakeResultSet(" + rows.size() + " rows)";
+            default:
+                throw new UnsupportedOperationException("FakeResultSet does not implement " + method.getName());
+        }
+    }
+
+    private Object column(Object column) throws SQLException {
+        if (!(column instanceof String)) {
+            throw new SQLException("FakeResultSet only supports lookup by column name");
+        }
+        if (cursor < 0 || cursor >= rows.size()) {
+            throw new SQLException("Cursor is not on a row");
+        }
+        lastValue = rows.get(cursor).get(column);
+        return lastValue;
+    }
+}
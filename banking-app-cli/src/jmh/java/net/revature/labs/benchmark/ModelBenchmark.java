@@ -0,0 +1,103 @@
+package net.revature.labs.benchmark;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.Transaction;
+import net.revature.labs.model.TransactionHistory;
+import net.revature.labs.model.User;
+
+/**
+ * Row mapping and model construction: what every DAO read pays per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+    @Param({"100", "10000"})
+    public int rows;
+
+    private ResultSet accountRows;
+    private ResultSet transactionRows;
+    private final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+    @Setup
+    public void setUp() {
+        accountRows = FakeResultSet.of(SyntheticData.bankAccountRows(rows));
+        transactionRows = FakeResultSet.of(SyntheticData.transactionRows(rows));
+    }
+
+    @Benchmark
+    public List<BankAccount> bankAccountFromResultSet() throws SQLException {
+        FakeResultSet.reset(accountRows);
+        return BankAccount.fromResultSet(accountRows);
+    }
+
+    @Benchmark
+    public void transactionFromRow(Blackhole blackhole) throws SQLException {
+        FakeResultSet.reset(transactionRows);
+        while (transactionRows.next()) {
+            blackhole.consume(Transaction.fromRow(transactionRows));
+        }
+    }
+
+    // the transaction store's loader: same rows straight into columns, no Transaction per row
+    @Benchmark
+    public TransactionHistory transactionHistoryFromRows() throws SQLException {
+        FakeResultSet.reset(transactionRows);
+        TransactionHistory history = new TransactionHistory(1, 16);
+        while (transactionRows.next()) {
+            history.append(transactionRows.getInt("transaction_id"), transactionRows.getString("transaction_type"),
+                Money.read(transactionRows, "amount").getCents(), transactionRows.getTimestamp("transaction_date_time"),
+                transactionRows.getInt("from_account_number"), transactionRows.getInt("to_account_number"));
+        }
+        history.trimToSize();
+        return history;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Transaction transactionConstructor() {
+        return new Transaction(1, 1, "deposit", Money.ofCents(1000), now, 1, 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean userIsValidName() {
+        return User.isValidName("Mary-Jane Watson");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean userIsValidEmail() {
+        return User.isValidEmail("mary.jane+bank@example.com");
+    }
+
+    // the validating constructor is what registration runs
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public User userValidatingConstructor() {
+        return new User("Mary-Jane Watson", "mary.jane+bank@example.com", "5551234567", "password", false);
+    }
+}
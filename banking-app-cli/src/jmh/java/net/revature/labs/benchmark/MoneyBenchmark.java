@@ -0,0 +1,85 @@
+package net.revature.labs.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.revature.labs.model.Money;
+
+/**
+ * Ledger math with BigDecimal vs Money: summing a history, a balance check and parsing a request amount.
+ * Run with -prof gc to see the allocation difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final int AMOUNTS = 1000;
+
+    private BigDecimal[] decimals;
+    private Money[] monies;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        decimals = new BigDecimal[AMOUNTS];
+        monies = new Money[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            long cents = random.nextInt(100_000);
+            decimals[i] = BigDecimal.valueOf(cents, 2);
+            monies[i] = Money.ofCents(cents);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : decimals) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money sumMoney() {
+        Money total = Money.ZERO;
+        for (Money amount : monies) {
+            total = total.plus(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public boolean withdrawCheckBigDecimal() {
+        return decimals[0].subtract(decimals[1]).compareTo(BigDecimal.ZERO) >= 0;
+    }
+
+    @Benchmark
+    public boolean withdrawCheckMoney() {
+        return !monies[0].minus(monies[1]).isNegative();
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal("1234.56");
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return Money.parse("1234.56");
+    }
+}
@@ -0,0 +1,71 @@
+package net.revature.labs.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.User;
+
+/**
+ * Jackson round trips of a User graph (user -> accounts -> transactions), the shape the
+ * login and admin endpoints send back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"1", "10"})
+    public int accounts;
+
+    @Param({"10", "1000"})
+    public int transactionsPerAccount;
+
+    // same setup as BankingAPIController: one mapper, cached readers and writers
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter userWriter = objectMapper.writerFor(User.class);
+    private final ObjectReader bankAccountReader = objectMapper.readerFor(BankAccount.class);
+
+    private User user;
+    private byte[] bankAccountJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        user = SyntheticData.userGraph(accounts, transactionsPerAccount);
+        bankAccountJson = objectMapper.writeValueAsBytes(user.getBankAccounts().get(0));
+    }
+
+    @Benchmark
+    public byte[] serializeUserGraph() throws IOException {
+        return userWriter.writeValueAsBytes(user);
+    }
+
+    // what the handlers did before: a new mapper per request, and a String in between
+    @Benchmark
+    public String serializeUserGraphWithNewMapper() throws IOException {
+        return new ObjectMapper().writeValueAsString(user);
+    }
+
+    @Benchmark
+    public BankAccount deserializeBankAccount() throws IOException {
+        return bankAccountReader.readValue(bankAccountJson);
+    }
+}
@@ -0,0 +1,81 @@
+package net.revature.labs.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.Transaction;
+import net.revature.labs.model.User;
+
+/**
+ * Builds rows and object graphs for the benchmarks. Seeded, so every run measures the same data.
+ */
+public final class SyntheticData {
+    private static final long SEED = 42L;
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    private SyntheticData() {
+    }
+
+    public static List<Map<String, Object>> bankAccountRows(int count) {
+        Random random = new Random(SEED);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("account_number", i + 1);
+            row.put("user_id", i / 3 + 1);
+            row.put("email", "user" + (i / 3 + 1) + "@bank.com");
+            row.put("account_type", random.nextBoolean() ? "checking" : "savings");
+            row.put("balance", BigDecimal.valueOf(random.nextInt(10_000_000), 2));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public static List<Map<String, Object>> transactionRows(int count) {
+        Random random = new Random(SEED);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int accountNumber = i % 100 + 1;
+            Map<String, Object> row = new HashMap<>();
+            row.put("transaction_id", i + 1);
+            row.put("account_number", accountNumber);
+            row.put("transaction_type", random.nextBoolean() ? "deposit" : "withdrawal");
+            row.put("amount", BigDecimal.valueOf(random.nextInt(100_000), 2));
+            row.put("transaction_date_time", new Timestamp(BASE_TIME + i * 1000L));
+            row.put("from_account_number", accountNumber);
+            row.put("to_account_number", accountNumber);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * One user with accounts accounts, each holding transactionsPerAccount transactions.
+     */
+    public static User userGraph(int accounts, int transactionsPerAccount) {
+        Random random = new Random(SEED);
+        User user = new User(1, "Jane Doe", "jane@doe.com", "5551234567", "password", false);
+        int transactionId = 1;
+        for (int a = 0; a < accounts; a++) {
+            int accountNumber = a + 1;
+            List<Transaction> transactions = new ArrayList<>(transactionsPerAccount);
+            for (int t = 0; t < transactionsPerAccount; t++) {
+                transactions.add(new Transaction(transactionId++, accountNumber,
+                    random.nextBoolean() ? "deposit" : "withdrawal",
+                    Money.ofCents(random.nextInt(100_000)),
+                    new Timestamp(BASE_TIME + transactionId * 1000L), accountNumber, accountNumber));
+            }
+            BankAccount account = new BankAccount(1, a % 2 == 0 ? "checking" : "savings", user.getEmail(),
+                Money.ofCents(random.nextInt(10_000_000)), accountNumber, transactions);
+            user.addBankAccount(account);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,101 @@
+package net.revature.labs.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.revature.labs.model.Money;
+import net.revature.labs.model.Transaction;
+import net.revature.labs.model.TransactionHistory;
+
+/**
+ * Retained heap of a million transactions as List<Transaction> (what the uncached DAO reads built)
+ * vs TransactionHistory columns (what the transaction store keeps). JMH measures time, not what stays
+ * on the heap, so this is a plain main:
+ *   mvn -P jmh compile exec:java -Dexec.mainClass=net.revature.labs.benchmark.TransactionFootprint [-Dexec.args="transactions perAccount"]
+ * Defaults to 1,000,000 transactions in histories of 100. Run it with a fixed heap (-Xms = -Xmx) for steadier numbers.
+ */
+public final class TransactionFootprint {
+    private static final long SEED = 42L;
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    private TransactionFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int perAccount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        long baseline = usedHeap();
+        List<List<Transaction>> objects = objects(transactions, perAccount);
+        long objectBytes = usedHeap() - baseline;
+        report("List<Transaction>", objectBytes, transactions, objects.size());
+        objects = null;
+
+        baseline = usedHeap();
+        List<TransactionHistory> columns = columns(transactions, perAccount);
+        long columnBytes = usedHeap() - baseline;
+        report("TransactionHistory", columnBytes, transactions, columns.size());
+
+        System.out.printf("columns use %.1f%% of the object model's heap%n", 100.0 * columnBytes / objectBytes);
+    }
+
+    // a new Timestamp and Money per row, same as mapping a real result set
+    static List<List<Transaction>> objects(int transactions, int perAccount) {
+        Random random = new Random(SEED);
+        List<List<Transaction>> accounts = new ArrayList<>();
+        List<Transaction> history = null;
+        for (int i = 0; i < transactions; i++) {
+            int accountNumber = i / perAccount + 1;
+            if (i % perAccount == 0) {
+                history = new ArrayList<>();
+                accounts.add(history);
+            }
+            history.add(new Transaction(i + 1, accountNumber, random.nextBoolean() ? "deposit" : "withdraw",
+                Money.ofCents(random.nextInt(100_000) + 1), new Timestamp(BASE_TIME + i * 1000L), accountNumber, accountNumber));
+        }
+        return accounts;
+    }
+
+    static List<TransactionHistory> columns(int transactions, int perAccount) {
+        Random random = new Random(SEED);
+        List<TransactionHistory> accounts = new ArrayList<>();
+        TransactionHistory history = null;
+        for (int i = 0; i < transactions; i++) {
+            int accountNumber = i / perAccount + 1;
+            if (i % perAccount == 0) {
+                if (history != null) {
+                    history.trimToSize();
+                }
+                history = new TransactionHistory(accountNumber, 16);
+                accounts.add(history);
+            }
+            history.append(i + 1, random.nextBoolean() ? "deposit" : "withdraw",
+                random.nextInt(100_000) + 1, new Timestamp(BASE_TIME + i * 1000L), accountNumber, accountNumber);
+        }
+        if (history != null) {
+            history.trimToSize();
+        }
+        return accounts;
+    }
+
+    private static void report(String name, long bytes, int transactions, int accounts) {
+        System.out.printf("%-20s %,d accounts  %.1f MB per million transactions  %.1f bytes per transaction%n",
+            name, accounts, bytes / (transactions / 1e6) / (1024 * 1024), (double) bytes / transactions);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        // a few rounds, one System.gc() doesn't always collect everything
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,356 @@
+package net.revature.labs.loadtest;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.revature.labs.controller.BankingAPIController;
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.User;
+import net.revature.labs.service.AccountService;
+import net.revature.labs.service.UserService;
+
+/**
+ * Open-loop HTTP load generator for the real route table.
+ *
+ * Boots BankingAPIController in-process against the local Postgres of the chosen env (default test),
+ * seeds users with funded accounts, logs them in through /user/login, then sends requests at a fixed
+ * arrival rate for the configured duration, whatever the server's response times. Prints HdrHistogram
+ * p50/p99/p99.9 latency and error counts per route.
+ *
+ *   mvn -P loadtest test-compile exec:java -Dexec.args="--rate 500 --duration 60"
+ *
+ * Options (all optional):
+ *   --rate N            requests per second, all routes together (default 200)
+ *   --duration S        measured seconds (default 30)
+ *   --warmup S          seconds of load before measuring starts (default 5)
+ *   --arrivals A        poisson or uniform spacing between requests (default poisson)
+ *   --users N           seeded users, one account each (default 50)
+ *   --mix SPEC          route weights (default register=1,login=2,deposit=4,withdraw=3,transfer=2,get-account=8,admin=1)
+ *   --max-in-flight N   requests outstanding before new ones are counted as failed instead of sent (default 10000)
+ *   --env E             DBUtil env to boot against (default test)
+ *   --url URL           hit an already running server instead of booting one (seeding still uses the env's DB)
+ *
+ * 4xx answers are counted but not as errors (a withdrawal can legitimately bounce); err% is 5xx + no response.
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "register=1,login=2,deposit=4,withdraw=3,transfer=2,get-account=8,admin=1";
+    private static final String PASSWORD = "loadtest";
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    private final String baseUrl;
+    private final List<Seeded> seeded;
+    private final String runId;
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+
+    private LoadGenerator(String baseUrl, List<Seeded> seeded, String runId, int maxInFlight) {
+        this.baseUrl = baseUrl;
+        this.seeded = seeded;
+        this.runId = runId;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        boolean poisson = !"uniform".equals(options.getOrDefault("arrivals", "poisson"));
+        int users = Integer.parseInt(options.getOrDefault("users", "50"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "10000"));
+        Map<Route, Integer> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        System.setProperty("env", options.getOrDefault("env", "test"));
+
+        String baseUrl = options.get("url");
+        boolean bootServer = baseUrl == null;
+        if (bootServer) {
+            DBUtil.runMigrations();
+            new BankingAPIController();
+            baseUrl = "http://localhost:7000";
+        }
+        // emails and phones are unique per run, so runs can share a database
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        try {
+            List<Seeded> seeded = seed(users, runId);
+            LoadGenerator loadGenerator = new LoadGenerator(baseUrl, seeded, runId, maxInFlight);
+            loadGenerator.login();
+            System.out.printf("Seeded %d users. Target %.0f req/s, %ds warmup, %ds measured, %s arrivals.%n",
+                users, rate, warmupSeconds, durationSeconds, poisson ? "poisson" : "uniform");
+
+            loadGenerator.run(mix, rate, poisson, warmupSeconds, null);
+            Map<Route, RouteStats> stats = new LinkedHashMap<>();
+            for (Route route : mix.keySet()) {
+                stats.put(route, new RouteStats(route.label));
+            }
+            long sent = loadGenerator.run(mix, rate, poisson, durationSeconds, stats);
+            loadGenerator.awaitInFlight(Duration.ofSeconds(30));
+            report(stats, sent, durationSeconds);
+        } finally {
+            if (bootServer) {
+                BankingAPIController.stopAPI();
+                DBUtil.closeConnection();
+            }
+        }
+    }
+
+    enum Route {
+        REGISTER("register"),
+        LOGIN("login"),
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw"),
+        TRANSFER("transfer"),
+        GET_ACCOUNT("get-account"),
+        ADMIN("admin");
+
+        private final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+
+        static Route fromLabel(String label) {
+            for (Route route : values()) {
+                if (route.label.equals(label)) {
+                    return route;
+                }
+            }
+            throw new IllegalArgumentException("Unknown route in mix: " + label);
+        }
+    }
+
+    private static class Seeded {
+        private final String email;
+        private final int accountNumber;
+        private volatile String authCookie;
+
+        Seeded(String email, int accountNumber) {
+            this.email = email;
+            this.accountNumber = accountNumber;
+        }
+    }
+
+    // seeded straight through the services, it isn't part of what's measured
+    private static List<Seeded> seed(int users, String runId) throws Exception {
+        UserService userService = new UserService();
+        AccountService accountService = new AccountService();
+        long phoneBase = new Random().nextInt(900_000) * 10_000L;
+        List<Seeded> seeded = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String email = "load" + i + "." + runId + "@loadtest.com";
+            userService.registerUser(new User("Load User", email, phone(phoneBase + i), PASSWORD, false));
+            BankAccount account = accountService.createBankAccount(email, "checking");
+            accountService.depositToAccount(account.getAccountNumber(), Money.parse("1000000.00"));
+            seeded.add(new Seeded(email, account.getAccountNumber()));
+        }
+        return seeded;
+    }
+
+    private void login() throws Exception {
+        for (Seeded user : seeded) {
+            HttpResponse<Void> response = client.send(loginRequest(user), HttpResponse.BodyHandlers.discarding());
+            user.authCookie = authCookie(response)
+                .orElseThrow(() -> new IllegalStateException("Login failed for " + user.email + ": " + response.statusCode()));
+        }
+    }
+
+    /**
+     * Sends requests on schedule for the given time. stats == null means warmup: sent but not recorded.
+     * @return number of requests scheduled
+     */
+    private long run(Map<Route, Integer> mix, double rate, boolean poisson, int seconds, Map<Route, RouteStats> stats) {
+        Route[] wheel = weightedWheel(mix);
+        double meanIntervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        double intended = start;
+        long scheduled = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (intended < end) {
+            long wait = (long) intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Route route = wheel[random.nextInt(wheel.length)];
+            send(route, (long) intended, stats == null ? null : stats.get(route));
+            scheduled++;
+            // the next send time doesn't depend on when this one completes: open loop
+            intended += poisson ? -Math.log(1 - random.nextDouble()) * meanIntervalNanos : meanIntervalNanos;
+        }
+        return scheduled;
+    }
+
+    private void send(Route route, long intendedStart, RouteStats stats) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            if (stats != null) {
+                stats.recordFailure(System.nanoTime() - intendedStart);
+            }
+            return;
+        }
+        client.sendAsync(request(route), HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (stats == null) {
+                    return;
+                }
+                long latency = System.nanoTime() - intendedStart;
+                if (error != null) {
+                    stats.recordFailure(latency);
+                } else {
+                    stats.record(latency, response.statusCode());
+                }
+            });
+    }
+
+    private HttpRequest request(Route route) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Seeded user = seeded.get(random.nextInt(seeded.size()));
+        switch (route) {
+            case REGISTER:
+                long n = registered.incrementAndGet();
+                String email = "new" + n + "." + runId + "@loadtest.com";
+                return post("/user/register", null, "{\"name\":\"New User\",\"email\":\"" + email
+                    + "\",\"phone\":\"" + phone(9_000_000_000L + Math.abs(runId.hashCode() % 100_000) * 10_000L + n)
+                    + "\",\"password\":\"" + PASSWORD + "\",\"isAdmin\":false}");
+            case LOGIN:
+                return loginRequest(user);
+            case DEPOSIT:
+                return post("/account/deposit/" + user.accountNumber, user, amountJson(random, 100));
+            case WITHDRAW:
+                return post("/account/withdraw/" + user.accountNumber, user, amountJson(random, 50));
+            case TRANSFER:
+                Seeded to = seeded.get(random.nextInt(seeded.size()));
+                return post("/account/transfer/" + user.accountNumber, user, "{\"amount\":" + amount(random, 50)
+                    + ",\"toAccountNumber\":\"" + to.accountNumber + "\"}");
+            case GET_ACCOUNT:
+                return get("/account/" + user.accountNumber, user);
+            case ADMIN:
+                return get("/admin/accounts?limit=100", user);
+            default:
+                throw new IllegalArgumentException("Unhandled route " + route);
+        }
+    }
+
+    private HttpRequest loginRequest(Seeded user) {
+        return post("/user/login", null, "{\"email\":\"" + user.email + "\",\"password\":\"" + PASSWORD + "\"}");
+    }
+
+    private HttpRequest post(String path, Seeded user, String json) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (user != null) {
+            builder.header("Cookie", "Auth=" + user.authCookie);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest get(String path, Seeded user) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Cookie", "Auth=" + user.authCookie)
+            .GET()
+            .build();
+    }
+
+    private void awaitInFlight(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        if (inFlight.get() > 0) {
+            System.err.println(inFlight.get() + " requests still outstanding, not included in the report.");
+        }
+    }
+
+    private static void report(Map<Route, RouteStats> stats, long sent, int durationSeconds) {
+        System.out.println();
+        System.out.printf("Sent %d requests in %ds (%.1f req/s)%n", sent, durationSeconds, sent / (double) durationSeconds);
+        System.out.println(RouteStats.header());
+        for (RouteStats routeStats : stats.values()) {
+            if (routeStats.getCount() > 0) {
+                System.out.println(routeStats.summary());
+            }
+        }
+    }
+
+    private static Optional<String> authCookie(HttpResponse<?> response) {
+        for (String setCookie : response.headers().allValues("Set-Cookie")) {
+            if (setCookie.startsWith("Auth=")) {
+                int end = setCookie.indexOf(';');
+                return Optional.of(setCookie.substring("Auth=".length(), end < 0 ? setCookie.length() : end));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // each route appears in the wheel as many times as its weight
+    private static Route[] weightedWheel(Map<Route, Integer> mix) {
+        List<Route> wheel = new ArrayList<>();
+        for (Map.Entry<Route, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                wheel.add(entry.getKey());
+            }
+        }
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("Route mix has no weight");
+        }
+        return wheel.toArray(new Route[0]);
+    }
+
+    private static Map<Route, Integer> parseMix(String spec) {
+        Map<Route, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected route=weight, got " + part);
+            }
+            mix.put(Route.fromLabel(pair[0].trim()), Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static String amountJson(ThreadLocalRandom random, int maxWhole) {
+        return "{\"amount\":" + amount(random, maxWhole) + "}";
+    }
+
+    private static String amount(ThreadLocalRandom random, int maxWhole) {
+        return BigDecimal.valueOf(random.nextInt(1, maxWhole * 100), 2).toPlainString();
+    }
+
+    private static String phone(long number) {
+        return String.format("%010d", number % 10_000_000_000L);
+    }
+}
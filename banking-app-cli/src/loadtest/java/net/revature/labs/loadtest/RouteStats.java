@@ -0,0 +1,72 @@
+package net.revature.labs.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+/**
+ * Latency and outcome counts for one route. Latency is measured from the request's intended send
+ * time (not the time it actually went out), so a stalled server shows up in the percentiles
+ * instead of quietly slowing the load down.
+ */
+public class RouteStats {
+    // 1 microsecond to 5 minutes, 3 significant digits
+    private static final long HIGHEST_TRACKABLE_MICROS = 5L * 60 * 1_000_000;
+
+    private final String route;
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public RouteStats(String route) {
+        this.route = route;
+    }
+
+    public void record(long latencyNanos, int status) {
+        latencyMicros.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(1, latencyNanos / 1000)));
+        if (status >= 500) {
+            serverErrors.incrementAndGet();
+        } else if (status >= 400) {
+            clientErrors.incrementAndGet();
+        } else {
+            ok.incrementAndGet();
+        }
+    }
+
+    // no HTTP response at all: connection refused, timeout, or dropped by the in-flight cap
+    public void recordFailure(long latencyNanos) {
+        latencyMicros.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(1, latencyNanos / 1000)));
+        failures.incrementAndGet();
+    }
+
+    public long getCount() {
+        return ok.get() + clientErrors.get() + serverErrors.get() + failures.get();
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public static String header() {
+        return String.format("%-14s %9s %8s %8s %8s %7s %10s %10s %10s %10s",
+            "route", "count", "4xx", "5xx", "failed", "err%", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    public String summary() {
+        long count = getCount();
+        long errors = serverErrors.get() + failures.get();
+        double errorPercent = count == 0 ? 0 : 100.0 * errors / count;
+        return String.format("%-14s %9d %8d %8d %8d %6.2f%% %10.2f %10.2f %10.2f %10.2f",
+            route, count, clientErrors.get(), serverErrors.get(), failures.get(), errorPercent,
+            millis(latencyMicros.getValueAtPercentile(50)),
+            millis(latencyMicros.getValueAtPercentile(99)),
+            millis(latencyMicros.getValueAtPercentile(99.9)),
+            millis(latencyMicros.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
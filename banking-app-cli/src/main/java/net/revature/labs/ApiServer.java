@@ -72,7 +72,7 @@ public class ApiServer {
         ctx.status(401);
     }
     
-    private static void getAllAccountsForAdminHandler(Context ctx){
+    private static void getAllAccountsForAdminHandler(Context ctx) throws SQLException {
         String adminCookie =ctx.cookie("Auth");
         //fetch all accounts for admin
         Boolean validated = userService.validateCookie(adminCookie);
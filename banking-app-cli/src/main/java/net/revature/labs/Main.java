@@ -1,6 +1,7 @@
 package net.revature.labs;
 
 import net.revature.labs.controller.BankingAPIController;
+import net.revature.labs.dao.util.DBUtil;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -8,6 +9,7 @@ import java.sql.SQLException;
 public class Main {
     public static void main(String[] args) throws SQLException, IOException, ClassNotFoundException {
         try {
+            DBUtil.runMigrations();
             BankingAPIController apiController = new BankingAPIController();
             // ApiServer.getInstance(); // This will start the server
         } catch (Exception e) {
@@ -0,0 +1,223 @@
+package net.revature.labs.controller;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Request/response access log that keeps logging I/O off the request threads.
+ *
+ * Handlers format a line and drop it into a fixed size ring buffer (a CAS on the tail, no lock);
+ * one background thread drains the buffer into SLF4J. When the buffer is full the line is dropped
+ * and counted instead of blocking the request.
+ *
+ * Settings (system properties):
+ *   access.log.sampleRate   fraction of requests logged, 0.0 - 1.0 (default 1.0). Error responses are always logged.
+ *   access.log.maxBody      bodies are cut to this many characters (default 512)
+ *   access.log.bufferSize   ring buffer slots, rounded up to a power of two (default 8192)
+ */
+public class AccessLog {
+    private static final Logger logger = LoggerFactory.getLogger("access");
+    private static final Set<String> REDACTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        REDACTED_HEADERS.add("Cookie");
+        REDACTED_HEADERS.add("Set-Cookie");
+        REDACTED_HEADERS.add("Authorization");
+        REDACTED_HEADERS.add("Proxy-Authorization");
+    }
+    private static final String REDACTED = "<redacted>";
+    // login and register bodies carry the plain text password
+    private static final Pattern PASSWORD_FIELD = Pattern.compile("(\"password\"\\s*:\\s*)\"(?:[^\"\\\\]|\\\\.)*\"");
+
+    private final double sampleRate;
+    private final int maxBodyLength;
+    private final Consumer<String> sink;
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    // producers claim slots by advancing tail; only the writer thread moves head
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDrops = 0;
+    private final Object drainLock = new Object();
+    private volatile Thread writer;
+
+    public AccessLog(double sampleRate, int maxBodyLength, int bufferSize, Consumer<String> sink) {
+        this.sampleRate = sampleRate;
+        this.maxBodyLength = maxBodyLength;
+        this.sink = sink;
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public static AccessLog fromSystemConfig() {
+        double sampleRate = Double.parseDouble(System.getProperty("access.log.sampleRate", "1.0"));
+        int maxBody = Integer.parseInt(System.getProperty("access.log.maxBody", "512"));
+        int bufferSize = Integer.parseInt(System.getProperty("access.log.bufferSize", "8192"));
+        return new AccessLog(sampleRate, maxBody, bufferSize, logger::info);
+    }
+
+    /**
+     * Starts the background writer. Safe to call more than once.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(this::runWriter, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer after flushing whatever is still buffered.
+     */
+    public synchronized void stop() {
+        Thread t = writer;
+        writer = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+    }
+
+    // decided once per request, so a sampled request gets both its request and response line
+    public boolean shouldSample() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public void request(String method, String path, Map<String, String> headers, String body) {
+        StringBuilder line = new StringBuilder(128)
+            .append("request method=").append(method)
+            .append(" path=").append(path)
+            .append(" headers=").append(redactHeaders(headers))
+            .append(" body=");
+        appendBody(line, body);
+        offer(line.toString());
+    }
+
+    public void response(String method, String path, int status, Object body) {
+        StringBuilder line = new StringBuilder(128)
+            .append("response method=").append(method)
+            .append(" path=").append(path)
+            .append(" status=").append(status)
+            .append(" body=");
+        appendBody(line, body == null ? "" : body.toString());
+        offer(line.toString());
+    }
+
+    /**
+     * @return false when the buffer was full and the line was dropped.
+     */
+    boolean offer(String line) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= slots.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.set((int) (t & mask), line);
+                Thread w = writer;
+                if (w != null && t == head) {
+                    LockSupport.unpark(w);  // buffer was empty, writer may be parked
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Writes out everything currently buffered. Only called from the writer thread (or after it stopped).
+     * @return number of lines written
+     */
+    int drain() {
+        synchronized (drainLock) {
+            return drainLocked();
+        }
+    }
+
+    private int drainLocked() {
+        int written = 0;
+        while (true) {
+            int index = (int) (head & mask);
+            String line = slots.get(index);
+            if (line == null) {
+                // either empty, or a producer claimed the slot but hasn't stored into it yet
+                break;
+            }
+            slots.set(index, null);
+            head = head + 1;
+            try {
+                sink.accept(line);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            written++;
+        }
+        long lost = dropped.get() - reportedDrops;
+        if (lost > 0) {
+            reportedDrops += lost;
+            sink.accept("access log buffer full, dropped " + lost + " lines");
+        }
+        return written;
+    }
+
+    private void runWriter() {
+        while (writer == Thread.currentThread()) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(10_000_000L);
+            }
+        }
+    }
+
+    String redactHeaders(Map<String, String> headers) {
+        if (headers == null) {
+            return "{}";
+        }
+        StringBuilder out = new StringBuilder("{");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (out.length() > 1) {
+                out.append(", ");
+            }
+            out.append(header.getKey()).append('=')
+                .append(REDACTED_HEADERS.contains(header.getKey()) ? REDACTED : header.getValue());
+        }
+        return out.append('}').toString();
+    }
+
+    private void appendBody(StringBuilder line, String body) {
+        if (body == null || body.isEmpty()) {
+            return;
+        }
+        // redact before cutting, a cut through the password value would no longer match
+        if (body.indexOf("password") >= 0) {
+            body = PASSWORD_FIELD.matcher(body).replaceAll("$1\"" + REDACTED + "\"");
+        }
+        if (body.length() > maxBodyLength) {
+            line.append(body, 0, maxBodyLength).append("...(").append(body.length()).append(" chars)");
+        } else {
+            line.append(body);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
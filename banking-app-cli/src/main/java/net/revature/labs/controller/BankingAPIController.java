@@ -1,20 +1,45 @@
 package net.revature.labs.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.json.JavalinJackson;
+import io.javalin.util.ConcurrencyUtil;
+import net.revature.labs.controller.dto.AmountRequest;
+import net.revature.labs.controller.dto.CreateAccountRequest;
+import net.revature.labs.controller.dto.TransferRequest;
+import net.revature.labs.dao.RowHandler;
+import net.revature.labs.dao.TransactionCursor;
+import net.revature.labs.dao.TransactionFilter;
+import net.revature.labs.dao.util.AccountCache;
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.dao.util.GroupCommitLedger;
+import net.revature.labs.dao.util.QueryMetrics;
+import net.revature.labs.dao.util.TransactionStore;
+import net.revature.labs.engine.BalanceEngine;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 import net.revature.labs.service.AccountService;
+import net.revature.labs.service.AuthToken;
+import net.revature.labs.service.AuthTokenService;
+import net.revature.labs.service.TransferService;
 import net.revature.labs.service.UserService;
 
-import org.json.JSONObject;
-
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BankingAPIController{
     // In this setup, the app object is fully managed within the BankingAPIController class. 
@@ -23,18 +48,67 @@ public class BankingAPIController{
     private static Javalin app;
     private AccountService accountService;
     private UserService userService;
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private TransferService transferService;
+    private AuthTokenService authTokenService;
+    // set by the before handler when the request carries a valid signed 'Auth' cookie
+    private static final String AUTH_TOKEN_ATTRIBUTE = "authToken";
+    // One mapper for the whole app (also registered as Javalin's json mapper). ObjectMapper is thread safe
+    // and caches serializers, so building a new one per request threw that cache away every time.
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false); // Javalin closes the response stream
+    private static final ObjectReader USER_READER = objectMapper.readerFor(User.class);
+    private static final ObjectReader AMOUNT_READER = objectMapper.readerFor(AmountRequest.class);
+    private static final ObjectReader TRANSFER_READER = objectMapper.readerFor(TransferRequest.class);
+    private static final ObjectReader CREATE_ACCOUNT_READER = objectMapper.readerFor(CreateAccountRequest.class);
+    private static final ObjectWriter USER_WRITER = objectMapper.writerFor(User.class);
+    private static final ObjectWriter BANK_ACCOUNT_WRITER = objectMapper.writerFor(BankAccount.class);
+    private static final ObjectWriter LIST_WRITER = objectMapper.writer();
+    // request/response logging, written by a background thread
+    private static AccessLog accessLog;
+    private static final String ACCESS_LOG_SAMPLED_ATTRIBUTE = "accessLogSampled";
+    private static ExecutionMode executionMode;
+    private static DbWorkLimiter dbWorkLimiter;
+    private static RequestMetrics requestMetrics;
+    private static final String NEXT_PAGE_HEADER = "X-Next-After";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     public BankingAPIController() throws ClassNotFoundException, SQLException, IOException {
         this.accountService = new AccountService();
         this.userService = new UserService();
+        this.transferService = new TransferService();
+        this.authTokenService = AuthTokenService.fromSystemConfig();
         if (app == null) {
             startAPI();  // Start the API only if it hasn't been started yet
         }
     }
 
     private void startAPI() {
+        warmUpJson();
+        accessLog = AccessLog.fromSystemConfig();
+        accessLog.start();
+        executionMode = ExecutionMode.fromSystemConfig();
+        boolean useVirtualThreads = executionMode == ExecutionMode.VIRTUAL && ConcurrencyUtil.isLoomAvailable();
+        if (executionMode == ExecutionMode.VIRTUAL && !useVirtualThreads) {
+            System.err.println("Virtual threads need JDK 21+, running handlers on platform threads.");
+            executionMode = ExecutionMode.PLATFORM;
+        }
+        if (useVirtualThreads) {
+            reportPinningDiagnostics();
+        }
+        // Only with virtual threads: there nothing else bounds how many handlers wait on the pool. Jetty's
+        // platform thread pool already does, and a limiter on top would cap every route at the pool size,
+        // even ones that never reach the database (cache hits, the engine).
+        // One permit per pooled connection, and wait no longer than a pool borrow would.
+        dbWorkLimiter = useVirtualThreads
+            ? new DbWorkLimiter(DBUtil.getPoolMaxSize(), Long.getLong("server.dbWaitTimeoutMs", DBUtil.getPoolBorrowTimeoutMillis()))
+            : null;
+        requestMetrics = new RequestMetrics(dbWorkLimiter, accessLog);
         app = Javalin.create(config -> {
+            config.useVirtualThreads = useVirtualThreads;
+            // Jetty calls the request log once the response is completely written
+            config.jetty.modifyServer(server -> server.setRequestLog(requestMetrics));
+            config.jsonMapper(new JavalinJackson(objectMapper, false));
             config.bundledPlugins.enableCors(cors -> {
                 cors.addRule(it -> {
                     it.allowHost("http://localhost:3000"); // Allow requests from localhost:3000
@@ -43,23 +117,116 @@ public class BankingAPIController{
             });
         }).start(7000);
         
+        app.before(requestMetrics::onRequestStart);
+        app.before(this::authenticate);
+        app.after(requestMetrics::onRequestEnd);
+        // a body Jackson can't parse (malformed JSON) or can't map (e.g. an amount with fractions of a cent,
+        // see Money) is the client's fault
+        app.exception(JsonProcessingException.class, (e, ctx) -> {
+            logResponse(ctx, e.getOriginalMessage());
+            ctx.status(400).result("Invalid request body: " + e.getOriginalMessage());
+        });
+        // ids in the path and the paging params are parsed straight to ints, garbage there is the client's fault
+        app.exception(NumberFormatException.class, (e, ctx) -> {
+            logResponse(ctx, e.getMessage());
+            ctx.status(400).result("Invalid number: " + e.getMessage());
+        });
         registerRoutes();
     }
 
+    // A virtual thread that blocks while holding a monitor (synchronized) pins its carrier thread.
+    // The JDK can report every time that happens; point at the switch if it isn't on.
+    private static void reportPinningDiagnostics() {
+        String trace = System.getProperty("jdk.tracePinnedThreads");
+        if (trace == null) {
+            System.out.println("Handlers run on virtual threads. Start with -Djdk.tracePinnedThreads=short "
+                + "to log stack traces of virtual threads that block while pinned.");
+        } else {
+            System.out.println("Handlers run on virtual threads, pinned threads are traced (" + trace + ").");
+        }
+    }
+
+    // routes that can talk to the database, limited when running on virtual threads (see startAPI)
+    private Handler db(Handler handler) {
+        return dbWorkLimiter == null ? handler : dbWorkLimiter.limit(handler);
+    }
+
+    public static ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    // Prometheus text exposition format. Each component writes its own series.
+    public void metricsHandler(Context ctx) {
+        StringBuilder out = new StringBuilder(requestMetrics.scrape());
+        QueryMetrics.writePrometheus(out);
+        TransactionStore.writePrometheus(out);
+        AccountCache.writePrometheus(out);
+        GroupCommitLedger.writePrometheus(out);
+        BalanceEngine.writePrometheus(out);
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        ctx.result(out.toString());
+    }
+
     private void registerRoutes() {
         // Define all the routes and their handlers here
-        app.post("/user/register", this::registerAccountHandler);
-        app.post("/account/create", this::createBankAccountHandler);
-        app.post("/user/login", this::loginHandler);
-        app.post("/account/deposit/{accountNumber}", this::depositHandler);
-        app.put("/user/update/{user_id}", this::updateUserHandler);
-        app.delete("/account/{account_number}", this::deleteAccountHandler);
-        app.get("/account/{account_number}", this::getAccountHandler);
-        app.post("/account/withdraw/{account_number}", this::withdrawHandler);
-        app.post("/account/transfer/{account_number}", this::transferHandler);
-        app.get("/admin/users", this::getAllUsersForAdminHandler);
-        app.get("/admin/accounts", this::getAllAccountsForAdminHandler);
-        app.get("/admin/transactions", this::getAllTransactionsForAdminHandler);
+        app.post("/user/register", db(this::registerAccountHandler));
+        app.post("/account/create", db(this::createBankAccountHandler));
+        app.post("/user/login", db(this::loginHandler));
+        app.post("/account/deposit/{accountNumber}", db(this::depositHandler));
+        app.put("/user/update/{user_id}", db(this::updateUserHandler));
+        app.delete("/account/{account_number}", db(this::deleteAccountHandler));
+        app.get("/account/{account_number}", db(this::getAccountHandler));
+        app.get("/account/{account_number}/transactions", db(this::getTransactionHistoryHandler));
+        app.post("/account/withdraw/{account_number}", db(this::withdrawHandler));
+        app.post("/account/transfer/{account_number}", db(this::transferHandler));
+        app.get("/admin/users", db(this::getAllUsersForAdminHandler));
+        app.get("/admin/accounts", db(this::getAllAccountsForAdminHandler));
+        app.get("/admin/transactions", db(this::getAllTransactionsForAdminHandler));
+        app.get("/metrics", this::metricsHandler);
+    }
+
+    // Serialize one of each response type up front so the first real request doesn't pay for
+    // Jackson building its serializers.
+    private static void warmUpJson() {
+        try {
+            User user = new User(0, "Warm Up", "warm@up.com", "0000000000", "password", false);
+            BankAccount bankAccount = new BankAccount(0, "checking", "warm@up.com", Money.ZERO, 0, new ArrayList<>());
+            user.addBankAccount(bankAccount);
+            USER_WRITER.writeValueAsBytes(user);
+            BANK_ACCOUNT_WRITER.writeValueAsBytes(bankAccount);
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Writes the body as JSON straight to the response output stream (no intermediate String).
+    private void respondJson(Context ctx, ObjectWriter writer, Object body) throws IOException {
+        ctx.contentType("application/json");
+        writer.writeValue(ctx.outputStream(), body);
+    }
+
+    // Verifies the signed 'Auth' cookie once per request: HMAC check only, no database.
+    private void authenticate(Context ctx) {
+        AuthToken authToken = authTokenService.verify(ctx.cookie("Auth"));
+        if (authToken != null) {
+            ctx.attribute(AUTH_TOKEN_ATTRIBUTE, authToken);
+        }
+    }
+
+    // only a signed, unexpired, unrevoked token counts. Anything else in the cookie (e.g. a bare email) is a 401.
+    private boolean isAuthenticated(Context ctx) {
+        return ctx.attribute(AUTH_TOKEN_ATTRIBUTE) != null;
+    }
+
+    // null if the token is still valid but its user has been deleted since, callers answer that with a 401
+    private User currentUser(Context ctx) {
+        AuthToken authToken = ctx.attribute(AUTH_TOKEN_ATTRIBUTE);
+        return userService.getUserForToken(ctx.cookie("Auth"), authToken.getUserId());
+    }
+
+    private void unauthorized(Context ctx) {
+        logResponse(ctx, "Unauthorized access");
+        ctx.status(401).result("Unauthorized access");
     }
 
     public static void stopAPI() {
@@ -67,6 +234,10 @@ public class BankingAPIController{
             app.stop();
             app = null;
         }
+        if (accessLog != null) {
+            accessLog.stop();
+            accessLog = null;
+        }
     }
 
     
@@ -90,23 +261,22 @@ public class BankingAPIController{
 
         //register new user
        // return user object
-        ObjectMapper om = new ObjectMapper();
-        User user = om.readValue(ctx.body(), User.class);
+        User user = USER_READER.readValue(ctx.bodyAsBytes());
 
         //register the new user
         User registeredUser = userService.registerUser(user);
         //return the registered user as json
-        logResponse(ctx, registeredUser.toString());
-        ctx.json(registeredUser);
+        logResponse(ctx, registeredUser);
+        respondJson(ctx, USER_WRITER, registeredUser);
     }
 
     public void loginHandler(Context ctx) throws ClassNotFoundException, SQLException, IOException {
         logRequest(ctx);
-        ObjectMapper om = new ObjectMapper();
         //get the user object from the request
         //use the email and password to login
         //return a cookie with the user object
-        User user = om.readValue(ctx.body(), User.class);
+        User user = USER_READER.readValue(ctx.bodyAsBytes());
+        long sessionStamp = userService.sessionStamp();
         User foundUser = userService.loginUser(user.getEmail(), user.getPassword());
 
         if(foundUser == null){
@@ -114,27 +284,30 @@ public class BankingAPIController{
             ctx.status(401);
         } else {
             //reply with cookie
-            ctx.cookie("Auth", om.writeValueAsString(user.getEmail()));
+            String authToken = authTokenService.issue(foundUser);
+            ctx.cookie("Auth", authToken);
+            userService.startSession(authToken, foundUser, sessionStamp);
             ctx.status(200);
-            ctx.result(om.writeValueAsString(foundUser));
-            logResponse(ctx, foundUser.toString());
+            respondJson(ctx, USER_WRITER, foundUser);
+            logResponse(ctx, foundUser);
         }
     }
 
-    public void createBankAccountHandler(Context ctx) throws JsonMappingException, JsonProcessingException, SQLException{
+    public void createBankAccountHandler(Context ctx) throws IOException, SQLException{
         //validate user by cookie 'Auth' which is their email address.
         //accept email and account type for creating accounts
-        JSONObject json = new JSONObject(ctx.body());
-        String accountType = json.getString("accountType");
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+        CreateAccountRequest request = CREATE_ACCOUNT_READER.readValue(ctx.bodyAsBytes());
+        String accountType = request.getAccountType();
+        Boolean validated = isAuthenticated(ctx);
         logRequest(ctx);
-        if(validated){
+        User user = validated ? currentUser(ctx) : null;
+        if(user != null){
             ctx.status(200);
-            BankAccount createdBankAccount = accountService.createBankAccount(userEmailCookie, accountType);
-            logResponse(ctx, createdBankAccount.toString());
-            ctx.json(om.writeValueAsString(createdBankAccount));
+            BankAccount createdBankAccount = accountService.createBankAccount(user.getEmail(), accountType);
+            logResponse(ctx, createdBankAccount);
+            respondJson(ctx, BANK_ACCOUNT_WRITER, createdBankAccount);
+        } else {
+            unauthorized(ctx);
         }
         // BankAccount addedAccount = accountService.createAccount(account);
         // if(addedAccount == null){
@@ -144,16 +317,14 @@ public class BankingAPIController{
         // }
     }
     
-    public void updateUserHandler(Context ctx) throws JsonMappingException, JsonProcessingException, SQLException {
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+    public void updateUserHandler(Context ctx) throws IOException, SQLException {
+        Boolean validated = isAuthenticated(ctx);
         logRequest(ctx);
+        User authenticatedUser = validated ? currentUser(ctx) : null;
 
-        if (validated) {
+        if (authenticatedUser != null) {
             int ownerUserId = Integer.parseInt(ctx.pathParam("user_id"));
-            User user = om.readValue(ctx.body(), User.class);
-            User authenticatedUser = userService.getUserByEmail(userEmailCookie);
+            User user = USER_READER.readValue(ctx.bodyAsBytes());
     
             // Ensure only admins can update the isAdmin field
             User existingUser = userService.getUserById(ownerUserId);
@@ -165,8 +336,9 @@ public class BankingAPIController{
             // Allow users to update their own details, or admins to update any user
             if (authenticatedUser.isAdmin() || authenticatedUser.getUserId() == ownerUserId) {
                 User updatedUser = userService.updateUserById(ownerUserId, user);
-                logResponse(ctx, updatedUser.toString());
-                ctx.status(200).json(updatedUser);
+                logResponse(ctx, updatedUser);
+                ctx.status(200);
+                respondJson(ctx, USER_WRITER, updatedUser);
             } else {
                 logResponse(ctx, "Unauthorized to update user details.");
                 ctx.status(403).result("Unauthorized to update user details.");
@@ -178,39 +350,50 @@ public class BankingAPIController{
     }
 
     
-    public void depositHandler(Context ctx) throws JsonMappingException, JsonProcessingException, SQLException{
+    public void depositHandler(Context ctx) throws IOException, SQLException{
         //validate user by cookie 'Auth' which is their email address.
         //accept account number and amount to deposit
         logRequest(ctx);
-        JSONObject json = new JSONObject(ctx.body());
-        String accountNumber = ctx.pathParam("accountNumber");
-        BigDecimal amount = json.getBigDecimal("amount");
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+        AmountRequest request = AMOUNT_READER.readValue(ctx.bodyAsBytes());
+        int accountNumber = Integer.parseInt(ctx.pathParam("accountNumber"));
+        Money amount = request.getAmount();
+        //only positive amounts can be deposited
+        if(amount == null || !amount.isPositive()){
+            ctx.status(400);
+            ctx.result("Deposit amount must be positive");
+            return;
+        }
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
-            BankAccount bankAccount = accountService.getAccount(accountNumber);
-            accountService.deposit(bankAccount, amount);
-            BankAccount updatedBankAccount = accountService.getAccount(accountNumber);
-            logResponse(ctx, updatedBankAccount.toString());
-            ctx.json(om.writeValueAsString(updatedBankAccount));
+            // the deposit comes back with the updated account, no need to read it again
+            BankAccount updatedBankAccount;
+            try {
+                updatedBankAccount = accountService.depositToAccount(accountNumber, amount);
+            } catch (IllegalArgumentException e) {
+                logResponse(ctx, e.getMessage());
+                ctx.status(400).result(e.getMessage());
+                return;
+            }
             ctx.status(200);
+            logResponse(ctx, updatedBankAccount);
+            respondJson(ctx, BANK_ACCOUNT_WRITER, updatedBankAccount);
+        } else {
+            unauthorized(ctx);
         }
     }
     
     public void deleteAccountHandler(Context ctx) throws SQLException {
-        String accountNumber = ctx.pathParam("account_number");
-        String userEmailCookie = ctx.cookie("Auth");
+        int accountNumber = Integer.parseInt(ctx.pathParam("account_number"));
         logRequest(ctx);
         
-        if (userService.validateCookie(userEmailCookie)) {
-            User user = userService.getUserByEmail(userEmailCookie);
+        User user = isAuthenticated(ctx) ? currentUser(ctx) : null;
+        if (user != null) {
             BankAccount bankAccount = accountService.getAccount(accountNumber);
             if (user.isAdmin()){
                 accountService.deleteAccountForAdmin(accountNumber, user);
                 logResponse(ctx, "Account deleted succesfully");
                 ctx.status(200).result("Account deleted successfully");
-            }else if ( bankAccount.getBalance().compareTo(BigDecimal.ZERO) == 0) {
+            }else if ( bankAccount.getBalance().isZero()) {
                 accountService.deleteAccount(accountNumber);
                 logResponse(ctx, "Account deleted succesfully");
                 ctx.status(200).result("Account deleted successfully");
@@ -224,107 +407,188 @@ public class BankingAPIController{
         }
     }
     
-    public void getAccountHandler(Context ctx) throws JsonProcessingException{
+    public void getAccountHandler(Context ctx) throws IOException, SQLException{
         //validate user by cookie 'Auth' which is their email address.
         //accept account number to get account details
         logRequest(ctx);
-        String accountNumber = ctx.pathParam("account_number");
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+        int accountNumber = Integer.parseInt(ctx.pathParam("account_number"));
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
             BankAccount bankAccount = accountService.getAccount(accountNumber);
-            logResponse(ctx, bankAccount.toString());
-            ctx.json(om.writeValueAsString(bankAccount));
+            if (bankAccount != null) {
+                // history only on request (?include=transactions&limit=&after=), one keyset page of it
+                if (isIncluded(ctx, "transactions")) {
+                    int limit = pageLimit(ctx);
+                    List<Transaction> page = accountService.getTransactionsPageForAccount(accountNumber, pageAfter(ctx), limit);
+                    if (page.size() == limit) {
+                        ctx.header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getTransactionId()));
+                    }
+                    bankAccount.setTransactions(page);
+                } else {
+                    bankAccount.setTransactions(null);
+                }
+            }
             ctx.status(200);
+            logResponse(ctx, bankAccount);
+            respondJson(ctx, BANK_ACCOUNT_WRITER, bankAccount);
+        } else {
+            unauthorized(ctx);
+        }
+    }
+    // ?from=&to= (dates or date-times), ?type= (repeatable), ?minAmount=&maxAmount=, ?limit=, ?after=<cursor>
+    // Newest first. A full page sets X-Next-After to the cursor of its last row.
+    public void getTransactionHistoryHandler(Context ctx) throws IOException, SQLException{
+        logRequest(ctx);
+        int accountNumber = Integer.parseInt(ctx.pathParam("account_number"));
+        Boolean validated = isAuthenticated(ctx);
+        if(validated){
+            TransactionFilter filter = new TransactionFilter();
+            TransactionCursor after;
+            try {
+                filter.setFrom(queryTimestamp(ctx, "from", false));
+                filter.setTo(queryTimestamp(ctx, "to", true));
+                List<String> types = ctx.queryParams("type");
+                filter.setTransactionTypes(types.isEmpty() ? null : types);
+                String minAmount = ctx.queryParam("minAmount");
+                filter.setMinAmount(minAmount == null ? null : Money.parse(minAmount));
+                String maxAmount = ctx.queryParam("maxAmount");
+                filter.setMaxAmount(maxAmount == null ? null : Money.parse(maxAmount));
+                String cursor = ctx.queryParam("after");
+                after = cursor == null ? null : TransactionCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                logResponse(ctx, e.getMessage());
+                ctx.status(400).result(e.getMessage());
+                return;
+            }
+            int limit = pageLimit(ctx);
+            List<Transaction> page = accountService.getTransactionHistory(accountNumber, filter, after, limit);
+            if (page.size() == limit) {
+                ctx.header(NEXT_PAGE_HEADER, TransactionCursor.after(page.get(page.size() - 1)).encode());
+            }
+            writeJson(ctx, page);
+        } else {
+            ctx.status(401);
+            ctx.result("Unauthorized access");
+            logResponse(ctx, "Unauthorized access");
         }
     }
-    public void withdrawHandler(Context ctx) throws JsonProcessingException{
+
+    // 2024-05-01 is the whole day: as "from" its start, as "to" the start of the next day (to is exclusive)
+    private Timestamp queryTimestamp(Context ctx, String name, boolean endOfRange) {
+        String value = ctx.queryParam(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                LocalDate date = LocalDate.parse(value);
+                return Timestamp.valueOf((endOfRange ? date.plusDays(1) : date).atStartOfDay());
+            }
+            return Timestamp.valueOf(LocalDateTime.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date for " + name + ": " + value);
+        }
+    }
+
+    public void withdrawHandler(Context ctx) throws IOException, SQLException{
         //validate user by cookie 'Auth' which is their email address.
         //accept account number and amount to withdraw
         logRequest(ctx);
-        JSONObject json = new JSONObject(ctx.body());
-        String accountNumber = ctx.pathParam("account_number");
-        BigDecimal amount = json.getBigDecimal("amount");
+        AmountRequest request = AMOUNT_READER.readValue(ctx.bodyAsBytes());
+        int accountNumber = Integer.parseInt(ctx.pathParam("account_number"));
+        Money amount = request.getAmount();
         //no negative amounts allowed
-        if(amount.compareTo(BigDecimal.ZERO) < 0){
+        if(amount == null || amount.isNegative()){
             ctx.status(400);
             ctx.result("Cannot withdraw negative amount");
             return;
         }
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
-            BankAccount foundBankAccount = accountService.getAccount(accountNumber);
-            accountService.withdraw(foundBankAccount, amount);
-            BankAccount updatedBankAccount = accountService.getAccount(accountNumber);
-            logResponse(ctx, updatedBankAccount.toString());
-            ctx.json(om.writeValueAsString(updatedBankAccount));
+            // balance check and withdrawal happen atomically in the database
+            BankAccount updatedBankAccount;
+            try {
+                updatedBankAccount = accountService.withdrawFromAccount(accountNumber, amount);
+            } catch (IllegalArgumentException e) {
+                logResponse(ctx, e.getMessage());
+                ctx.status(400).result(e.getMessage());
+                return;
+            }
             ctx.status(200);
+            logResponse(ctx, updatedBankAccount);
+            respondJson(ctx, BANK_ACCOUNT_WRITER, updatedBankAccount);
+        } else {
+            unauthorized(ctx);
         }
     }
     /**
      * @param ctx
      * @throws NumberFormatException
      * @throws SQLException
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    public void transferHandler(Context ctx) throws NumberFormatException, SQLException, JsonProcessingException{
+    public void transferHandler(Context ctx) throws NumberFormatException, SQLException, IOException{
         //validate user by cookie 'Auth' which is their email address.
         //accept account number and amount to transfer
         //accept destination account number
         //check if destination account exists
         //check if source account has enough balance
-        //withdraw from source account
-        //deposit to destination account
+        //withdraw from source account and deposit to destination account atomically
         //return updated source account
-        //return updated destination account
         //return error if any of the checks fail
         logRequest(ctx);
-        JSONObject json = new JSONObject(ctx.body());
-        String accountNumber = ctx.pathParam("account_number");
-        BigDecimal amount = json.getBigDecimal("amount");
-        String destinationAccountNumber = json.getString("toAccountNumber");
-        // String originAccountNumber = json.getString("fromAccountNumber");
-        String userEmailCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(userEmailCookie);
-        ObjectMapper om = new ObjectMapper();
+        TransferRequest request = TRANSFER_READER.readValue(ctx.bodyAsBytes());
+        int accountNumber = Integer.parseInt(ctx.pathParam("account_number"));
+        Money amount = request.getAmount();
+        int destinationAccountNumber = request.getToAccountNumber();
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
-            BankAccount foundBankAccount = accountService.getAccount(accountNumber);
-            BankAccount destinationBankAccount = accountService.getAccount(destinationAccountNumber);
-            if(destinationBankAccount == null){
-                logResponse(ctx, "Destination account does not exist");
-                ctx.status(400);
-                ctx.result("Destination account does not exist");
-                return;
-            }
-            if(foundBankAccount.getBalance().compareTo(amount) < 0){
-                logResponse(ctx, "Insufficient funds");
+            // both legs run in one database transaction, see TransferService
+            try {
+                transferService.transfer(accountNumber, destinationAccountNumber, amount);
+            } catch (IllegalArgumentException e) {
+                logResponse(ctx, e.getMessage());
                 ctx.status(400);
-                ctx.result("Insufficient funds");
+                ctx.result(e.getMessage());
                 return;
             }
-            accountService.withdraw(foundBankAccount, amount);
-            accountService.deposit(destinationBankAccount, amount);
             BankAccount senderBankAccount = accountService.getAccount(accountNumber);
-            logResponse(ctx, senderBankAccount.toString());
-            ctx.json(om.writeValueAsString(senderBankAccount));
+            if (senderBankAccount != null) {
+                // same as getAccountHandler without ?include: don't page the whole history in just to write it out
+                senderBankAccount.setTransactions(null);
+            }
             ctx.status(200);
+            logResponse(ctx, senderBankAccount);
+            respondJson(ctx, BANK_ACCOUNT_WRITER, senderBankAccount);
+        } else {
+            unauthorized(ctx);
         }
     }
     
     
+    // The admin list endpoints support 3 modes:
+    //  - default: the whole table as one JSON array (original behaviour)
+    //  - ?after=<id>&limit=<n>: one keyset page. The cursor for the next page is sent back in the X-Next-After header.
+    //  - ?stream=true: the whole table, but rows are written to the response as they are read, so memory stays flat.
     public void getAllUsersForAdminHandler(Context ctx){
         logRequest(ctx);  // Log incoming request
-        String adminCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(adminCookie);
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
             try {
-                String jsonResponse = objectMapper.writeValueAsString(userService.getAllUsers());
-                ctx.result(jsonResponse);
-                ctx.status(200);
-                logResponse(ctx, jsonResponse);  // Log outgoing response
+                if (isStreamRequested(ctx)) {
+                    writeJsonArrayStream(ctx, userService::streamAllUsers);
+                    logResponse(ctx, "<streamed users>");
+                    return;
+                }
+                if (isPageRequested(ctx)) {
+                    List<User> page = userService.getUsersPage(pageAfter(ctx), pageLimit(ctx));
+                    if (page.size() == pageLimit(ctx)) {
+                        ctx.header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getUserId()));
+                    }
+                    writeJson(ctx, page);
+                    return;
+                }
+                writeJson(ctx, userService.getAllUsers());
             } catch (Exception e) {
                 ctx.status(500);
                 ctx.result("Error processing request");
@@ -339,14 +603,23 @@ public class BankingAPIController{
 
     public void getAllAccountsForAdminHandler(Context ctx){
         logRequest(ctx);
-        String adminCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(adminCookie);
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
             try {
-                String jsonResponse = objectMapper.writeValueAsString(accountService.getAllAccounts());
-                ctx.result(jsonResponse);
-                ctx.status(200);
-                logResponse(ctx, jsonResponse);
+                if (isStreamRequested(ctx)) {
+                    writeJsonArrayStream(ctx, accountService::streamAllAccounts);
+                    logResponse(ctx, "<streamed accounts>");
+                    return;
+                }
+                if (isPageRequested(ctx)) {
+                    List<BankAccount> page = accountService.getAccountsPage(pageAfter(ctx), pageLimit(ctx));
+                    if (page.size() == pageLimit(ctx)) {
+                        ctx.header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getAccountNumber()));
+                    }
+                    writeJson(ctx, page);
+                    return;
+                }
+                writeJson(ctx, accountService.getAllAccounts());
             } catch (Exception e) {
                 ctx.status(500);
                 ctx.result("Error processing request");
@@ -361,14 +634,23 @@ public class BankingAPIController{
 
     public void getAllTransactionsForAdminHandler(Context ctx){
         logRequest(ctx);
-        String adminCookie = ctx.cookie("Auth");
-        Boolean validated = userService.validateCookie(adminCookie);
+        Boolean validated = isAuthenticated(ctx);
         if(validated){
             try {
-                String jsonResponse = objectMapper.writeValueAsString(accountService.getAllTransactions());
-                ctx.result(jsonResponse);
-                ctx.status(200);
-                logResponse(ctx, jsonResponse);
+                if (isStreamRequested(ctx)) {
+                    writeJsonArrayStream(ctx, accountService::streamAllTransactions);
+                    logResponse(ctx, "<streamed transactions>");
+                    return;
+                }
+                if (isPageRequested(ctx)) {
+                    List<Transaction> page = accountService.getTransactionsPage(pageAfter(ctx), pageLimit(ctx));
+                    if (page.size() == pageLimit(ctx)) {
+                        ctx.header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getTransactionId()));
+                    }
+                    writeJson(ctx, page);
+                    return;
+                }
+                writeJson(ctx, accountService.getAllTransactions());
             } catch (Exception e) {
                 ctx.status(500);
                 ctx.result("Error processing request");
@@ -381,21 +663,85 @@ public class BankingAPIController{
         }
     }
 
+    private void writeJson(Context ctx, List<?> body) throws IOException {
+        ctx.status(200);
+        respondJson(ctx, LIST_WRITER, body);
+        logResponse(ctx, "<" + body.size() + " items>");  // Log outgoing response
+    }
+
+    // Something that can push rows to a RowHandler, e.g. accountService::streamAllTransactions
+    private interface JsonArraySource<T> {
+        void stream(RowHandler<T> handler) throws SQLException, IOException;
+    }
+
+    // Writes the rows as a JSON array straight to the response output stream, one element at a time.
+    private <T> void writeJsonArrayStream(Context ctx, JsonArraySource<T> source) throws SQLException, IOException {
+        ctx.status(200);
+        ctx.contentType("application/json");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(ctx.outputStream())) {
+            // leave closing the response stream to Javalin
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            source.stream(generator::writeObject);
+            generator.writeEndArray();
+        }
+    }
+
+    private boolean isStreamRequested(Context ctx) {
+        return "true".equalsIgnoreCase(ctx.queryParam("stream"));
+    }
+
+    // ?include=transactions,somethingElse
+    private boolean isIncluded(Context ctx, String part) {
+        String include = ctx.queryParam("include");
+        if (include == null) {
+            return false;
+        }
+        for (String included : include.split(",")) {
+            if (included.trim().equalsIgnoreCase(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPageRequested(Context ctx) {
+        return ctx.queryParam("after") != null || ctx.queryParam("limit") != null;
+    }
+
+    private int pageAfter(Context ctx) {
+        String after = ctx.queryParam("after");
+        return after == null ? 0 : Integer.parseInt(after);
+    }
+
+    private int pageLimit(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(limit)));
+    }
+
+    // Only hands the request to the access log; the actual writing happens on its own thread.
+    // Whether the request is sampled is decided here and reused for its response.
     private void logRequest(Context ctx) {
-        System.out.println("Request Received:--=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=" + //
-                        "");
-        System.out.println("Method: " + ctx.method());
-        System.out.println("Path: " + ctx.path());
-        System.out.println("Headers: " + ctx.headerMap());
-        System.out.println("Body: " + ctx.body());
+        boolean sampled = accessLog.shouldSample();
+        ctx.attribute(ACCESS_LOG_SAMPLED_ATTRIBUTE, sampled);
+        if (sampled) {
+            accessLog.request(ctx.method().name(), ctx.path(), ctx.headerMap(), ctx.body());
+        }
     }
 
-    private void logResponse(Context ctx, String responseBody) {
-        if (responseBody == null) {
-            responseBody = "";
+    // responseBody is only turned into a String when the line is actually logged.
+    // Error responses are logged even when the request wasn't sampled.
+    private void logResponse(Context ctx, Object responseBody) {
+        Boolean sampled = ctx.attribute(ACCESS_LOG_SAMPLED_ATTRIBUTE);
+        int status = ctx.status().getCode();
+        if (sampled == null) {
+            sampled = accessLog.shouldSample();
+        }
+        if (sampled || status >= 400) {
+            accessLog.response(ctx.method().name(), ctx.path(), status, responseBody);
         }
-        System.out.println("Response Sent:--=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=");
-        System.out.println("Status: " + ctx.status());
-        System.out.println("Body: " + responseBody);
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package net.revature.labs.controller;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+
+/**
+ * Caps how many handlers do database work at once, sized to the connection pool.
+ *
+ * With virtual threads nothing else bounds concurrency: 10k clients means 10k handlers all asking
+ * the pool for a connection, and most of them end up timing out inside ConnectionPool.borrow().
+ * Waiting here instead is cheap (a parked virtual thread) and fair, and a request that can't get
+ * a permit in time gets a 503 before it has touched the database.
+ */
+public class DbWorkLimiter {
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long acquireTimeoutMillis;
+
+    public DbWorkLimiter(int maxInFlight, long acquireTimeoutMillis) {
+        this.permits = new Semaphore(maxInFlight, true);
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Wraps a handler so it only runs while holding a permit.
+     */
+    public Handler limit(Handler handler) {
+        return ctx -> {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                reject(ctx);
+                return;
+            }
+            try {
+                handler.handle(ctx);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    private void reject(Context ctx) {
+        ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+        ctx.header("Retry-After", "1");
+        ctx.result("Server busy, try again");
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+}
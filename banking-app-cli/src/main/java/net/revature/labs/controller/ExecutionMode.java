@@ -0,0 +1,23 @@
+package net.revature.labs.controller;
+
+/**
+ * Which threads run the request handlers. Chosen once in BankingAPIController.startAPI()
+ * from -Dserver.threads=platform|virtual (default platform).
+ */
+public enum ExecutionMode {
+    // Jetty's bounded thread pool. A handler blocked on JDBC holds one of its threads, which is the only limit.
+    PLATFORM,
+    // one virtual thread per request (needs JDK 21+). Blocking JDBC only parks the virtual thread,
+    // so in-flight DB work is bounded by DbWorkLimiter instead of the thread pool size.
+    VIRTUAL;
+
+    public static ExecutionMode fromSystemConfig() {
+        String mode = System.getProperty("server.threads", "platform");
+        try {
+            return ExecutionMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown server.threads '" + mode + "', using platform threads.");
+            return PLATFORM;
+        }
+    }
+}
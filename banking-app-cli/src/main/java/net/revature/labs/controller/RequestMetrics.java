@@ -0,0 +1,222 @@
+package net.revature.labs.controller;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+
+import io.javalin.http.Context;
+import net.revature.labs.dao.util.QueryMetrics;
+
+/**
+ * Per route latency, size and in-flight metrics, rendered at /metrics in Prometheus text format.
+ *
+ * The before hook stamps the start time, the after hook labels the request with its route, and
+ * Jetty's RequestLog callback (which runs once the response is fully written, so the byte count
+ * is final) records it. Recording never takes a lock: each route/method/status series has an
+ * HdrHistogram Recorder (wait-free writes) and LongAdders. A scrape swaps each Recorder's interval
+ * histogram out and folds it into a running total under a lock only scrapes take.
+ */
+public class RequestMetrics implements RequestLog {
+    private static final String START_ATTRIBUTE = "metrics.startNanos";
+    private static final String ROUTE_ATTRIBUTE = "metrics.route";
+    private static final String QUERIES_ATTRIBUTE = "metrics.queries";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final ConcurrentHashMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final ReentrantLock scrapeLock = new ReentrantLock();
+    private final DbWorkLimiter dbWorkLimiter;
+    private final AccessLog accessLog;
+
+    public RequestMetrics(DbWorkLimiter dbWorkLimiter, AccessLog accessLog) {
+        this.dbWorkLimiter = dbWorkLimiter;
+        this.accessLog = accessLog;
+    }
+
+    // app.before
+    public void onRequestStart(Context ctx) {
+        ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+        inFlight.increment();
+        QueryMetrics.startRequest();
+    }
+
+    // app.after: only here is the matched route known
+    public void onRequestEnd(Context ctx) {
+        String route;
+        try {
+            route = ctx.endpointHandlerPath();
+        } catch (RuntimeException e) {
+            route = null;
+        }
+        ctx.attribute(ROUTE_ATTRIBUTE, route == null || route.isEmpty() ? "unmatched" : route);
+        // handlers run on the thread that ran the before hook, so this is the count for this request
+        ctx.attribute(QUERIES_ATTRIBUTE, QueryMetrics.finishRequest());
+    }
+
+    // Jetty calls this after the response has been completely written, also for requests that failed
+    @Override
+    public void log(Request request, Response response) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long)) {
+            return;  // never reached the before hook
+        }
+        inFlight.decrement();
+        long elapsedNanos = System.nanoTime() - (Long) start;
+        Object route = request.getAttribute(ROUTE_ATTRIBUTE);
+        SeriesKey key = new SeriesKey(request.getMethod(), route == null ? "unmatched" : route.toString(), response.getStatus());
+        Series s = series.computeIfAbsent(key, k -> new Series());
+        s.latencyMicros.recordValue(Math.max(1, elapsedNanos / 1000));
+        s.latencySumNanos.add(elapsedNanos);
+        s.requestBytes.add(Math.max(0, request.getHttpInput().getContentReceived()));
+        s.responseBytes.add(response.getHttpChannel().getBytesWritten());
+        Object queries = request.getAttribute(QUERIES_ATTRIBUTE);
+        if (queries instanceof Integer) {
+            s.queriesPerRequest.recordValue((Integer) queries);
+        }
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        scrapeLock.lock();
+        try {
+            Map<SeriesKey, Series> sorted = new TreeMap<>(series);
+
+            out.append("# HELP http_server_requests_seconds Request latency by route, method and status.\n");
+            out.append("# TYPE http_server_requests_seconds summary\n");
+            for (Map.Entry<SeriesKey, Series> entry : sorted.entrySet()) {
+                Series s = entry.getValue();
+                s.interval = s.latencyMicros.getIntervalHistogram(s.interval);
+                s.total.add(s.interval);
+                String labels = entry.getKey().labels();
+                for (double quantile : QUANTILES) {
+                    out.append("http_server_requests_seconds{").append(labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(s.total.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+                }
+                out.append("http_server_requests_seconds_sum{").append(labels).append("} ")
+                    .append(s.latencySumNanos.sum() / 1e9).append('\n');
+                out.append("http_server_requests_seconds_count{").append(labels).append("} ")
+                    .append(s.total.getTotalCount()).append('\n');
+            }
+
+            // a route whose query count grows with the data is an N+1
+            out.append("# HELP http_server_db_queries_per_request SQL statements executed per request.\n");
+            out.append("# TYPE http_server_db_queries_per_request summary\n");
+            for (Map.Entry<SeriesKey, Series> entry : sorted.entrySet()) {
+                Series s = entry.getValue();
+                s.queriesInterval = s.queriesPerRequest.getIntervalHistogram(s.queriesInterval);
+                s.queriesTotal.add(s.queriesInterval);
+                String labels = entry.getKey().labels();
+                for (double quantile : QUANTILES) {
+                    out.append("http_server_db_queries_per_request{").append(labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(s.queriesTotal.getValueAtPercentile(quantile * 100)).append('\n');
+                }
+                out.append("http_server_db_queries_per_request_count{").append(labels).append("} ")
+                    .append(s.queriesTotal.getTotalCount()).append('\n');
+            }
+
+            out.append("# HELP http_server_request_bytes_total Request body bytes received.\n");
+            out.append("# TYPE http_server_request_bytes_total counter\n");
+            for (Map.Entry<SeriesKey, Series> entry : sorted.entrySet()) {
+                out.append("http_server_request_bytes_total{").append(entry.getKey().labels()).append("} ")
+                    .append(entry.getValue().requestBytes.sum()).append('\n');
+            }
+            out.append("# HELP http_server_response_bytes_total Response bytes written, headers included.\n");
+            out.append("# TYPE http_server_response_bytes_total counter\n");
+            for (Map.Entry<SeriesKey, Series> entry : sorted.entrySet()) {
+                out.append("http_server_response_bytes_total{").append(entry.getKey().labels()).append("} ")
+                    .append(entry.getValue().responseBytes.sum()).append('\n');
+            }
+        } finally {
+            scrapeLock.unlock();
+        }
+
+        gauge(out, "http_server_requests_in_flight", "Requests being handled right now.", inFlight.sum());
+        if (dbWorkLimiter != null) {
+            gauge(out, "db_work_in_flight", "Handlers holding a database work permit.", dbWorkLimiter.getInFlight());
+            gauge(out, "db_work_queued", "Handlers waiting for a database work permit.", dbWorkLimiter.getQueueLength());
+        }
+        if (accessLog != null) {
+            out.append("# HELP access_log_dropped_total Access log lines dropped because the buffer was full.\n");
+            out.append("# TYPE access_log_dropped_total counter\n");
+            out.append("access_log_dropped_total ").append(accessLog.getDroppedCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static class Series {
+        // auto resizing, 3 significant digits
+        private final Recorder latencyMicros = new Recorder(3);
+        private final LongAdder latencySumNanos = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final Recorder queriesPerRequest = new Recorder(3);
+        // only touched by scrapes, under scrapeLock
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+        private final Histogram queriesTotal = new Histogram(3);
+        private Histogram queriesInterval;
+    }
+
+    private static final class SeriesKey implements Comparable<SeriesKey> {
+        private final String method;
+        private final String route;
+        private final int status;
+
+        SeriesKey(String method, String route, int status) {
+            this.method = method;
+            this.route = route;
+            this.status = status;
+        }
+
+        String labels() {
+            return "method=\"" + method + "\",route=\"" + escape(route) + "\",status=\"" + status + "\"";
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+        @Override
+        public int compareTo(SeriesKey other) {
+            int byRoute = route.compareTo(other.route);
+            if (byRoute != 0) {
+                return byRoute;
+            }
+            int byMethod = method.compareTo(other.method);
+            return byMethod != 0 ? byMethod : Integer.compare(status, other.status);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) o;
+            return status == other.status && method.equals(other.method) && route.equals(other.route);
+        }
+
+        @Override
+        public int hashCode() {
+            return (method.hashCode() * 31 + route.hashCode()) * 31 + status;
+        }
+    }
+}
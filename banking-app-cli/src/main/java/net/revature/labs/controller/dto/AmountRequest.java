@@ -0,0 +1,21 @@
+package net.revature.labs.controller.dto;
+
+import net.revature.labs.model.Money;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Request body for /account/deposit and /account/withdraw: {"amount": "100.00"}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AmountRequest {
+    private Money amount;
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,19 @@
+package net.revature.labs.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Request body for /account/create: {"accountType": "checking"}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CreateAccountRequest {
+    private String accountType;
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    public void setAccountType(String accountType) {
+        this.accountType = accountType;
+    }
+}
@@ -0,0 +1,31 @@
+package net.revature.labs.controller.dto;
+
+import net.revature.labs.model.Money;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Request body for /account/transfer: {"amount": "100.00", "toAccountNumber": "1000000001"}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransferRequest {
+    private Money amount;
+    // accepts "1000000001" or 1000000001, Jackson coerces the string form
+    private int toAccountNumber;
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount;
+    }
+
+    public int getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public void setToAccountNumber(int toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+}
@@ -1,7 +1,8 @@
 package net.revature.labs.dao;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,14 +11,25 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import net.revature.labs.dao.util.AccountCache;
 import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.dao.util.GroupCommitLedger;
+import net.revature.labs.dao.util.TransactionStore;
 import java.util.ArrayList;
 
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.LazyTransactionList;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
+import net.revature.labs.model.TransactionHistory;
 import net.revature.labs.model.User;
 
 public class BankAccountDAO {
+    // rows pulled from the database per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 500;
+    // rows per query when a lazy transaction list pages itself in
+    private static final int TRANSACTION_PAGE_SIZE = 100;
+
     public BankAccountDAO() throws ClassNotFoundException, SQLException, IOException {
     }
 
@@ -46,7 +58,8 @@ public class BankAccountDAO {
     private User getUserByEmail(String userEmail) {
         User foundUser;
         String sql = "SELECT * FROM users WHERE email = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             stmt.setString(1, userEmail);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
@@ -73,7 +86,8 @@ public class BankAccountDAO {
         // When you use SELECT 1, the database engine checks for the presence of rows that satisfy 
         // the condition specified in the WHERE clause and returns a 1 for each row that matches the condition. 
         String sql = "SELECT 1 FROM users WHERE email = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             stmt.setString(1, userEmail);
             ResultSet rs = stmt.executeQuery();
             Boolean yesNo = rs.next();
@@ -100,32 +114,36 @@ public class BankAccountDAO {
             
             // 3) authorized users: No updates. Only NEW inserts/appends to the table.
             insertIntoAuthorizedUsersTable(bankAccount.getAuthorizedUserEmails(), bankAccount.getAccountNumber());
+            // none of these inserts a ledger row through postToLedger, so there is no version to write through
+            DBUtil.getAccountCache().invalidate(bankAccount.getAccountNumber());
         }
     }
 
-    private boolean doesAccountExist(String accountNumber) throws SQLException {
+    private boolean doesAccountExist(int accountNumber) throws SQLException {
         //The SELECT 1 statement in SQL is used to check the existence of records in a table
         //  that match a specific condition, without actually retrieving any data from the table. 
         // When you use SELECT 1, the database engine checks for the presence of rows that satisfy 
         // the condition specified in the WHERE clause and returns a 1 for each row that matches the condition. 
         String sql = "SELECT 1 FROM bank_accounts WHERE account_number = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
-            stmt.setInt(1, Integer.valueOf(accountNumber));
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, accountNumber);
             ResultSet rs = stmt.executeQuery();
             Boolean yesNo = rs.next();
             return yesNo;
         }
     }
 
-    private void insertIntoAuthorizedUsersTable(List<String> authorizedEmails, String accountNumber) throws SQLException {
+    private void insertIntoAuthorizedUsersTable(List<String> authorizedEmails, int accountNumber) throws SQLException {
         //Authorized users: just a list of emails and account_number the email is authorized to access.                        
             // Authorized users may be appended to the authorized_users table. NO UPDATES.
             // Even if user is authorized for an account twice(yes they will be added twice)
             //  but they will still be returned by isUserAuthorizedForAccount(String userEmail) as true.
         String sql2 = "INSERT INTO authorized_users (account_number, authorized_user_email) VALUES (?, ?)";
-        try (PreparedStatement stmt2 = DBUtil.getConnection().prepareStatement(sql2, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt2 = conn.prepareStatement(sql2, PreparedStatement.RETURN_GENERATED_KEYS)) {
             for(String authorizedEmail : authorizedEmails){
-                stmt2.setInt(1, Integer.valueOf(accountNumber));
+                stmt2.setInt(1, accountNumber);
                 stmt2.setString(2, authorizedEmail);
                 int generatedKey = stmt2.executeUpdate();
                 System.out.println("Generated key: " + generatedKey);
@@ -133,40 +151,46 @@ public class BankAccountDAO {
         }
     }
 
-    private void insertIntoTransactionsTable(List<Transaction> transactions, String accountNumber) throws SQLException {
+    private void insertIntoTransactionsTable(List<Transaction> transactions, int accountNumber) throws SQLException {
         for(Transaction tx: transactions){
-            insertIntoTransactionsTable(tx, accountNumber);
+            // a history loaded from the table is already in it, only rows without an id are new
+            if (tx.getTransactionId() == 0) {
+                insertIntoTransactionsTable(tx, accountNumber);
+            }
         }
     }
 
-    private void insertIntoTransactionsTable(Transaction tx, String accountNumber) throws SQLException {
+    private void insertIntoTransactionsTable(Transaction tx, int accountNumber) throws SQLException {
         String insertTransactionSQL = "INSERT INTO transactions (account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number) VALUES (?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt3 = DBUtil.getConnection().prepareStatement(insertTransactionSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
-            stmt3.setInt(1, Integer.valueOf(accountNumber));
-            stmt3.setBigDecimal(2, tx.getAmount());
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt3 = conn.prepareStatement(insertTransactionSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
+            stmt3.setInt(1, accountNumber);
+            Money.bind(stmt3, 2, tx.getAmount());
             stmt3.setString(3, tx.getTransactionType());
             stmt3.setTimestamp(4, tx.getTransactionDateTime());
-            stmt3.setInt(5, Integer.valueOf(tx.getFromAccountNumber()));
-            stmt3.setInt(6, Integer.valueOf(tx.getToAccountNumber()));
+            stmt3.setInt(5, tx.getFromAccountNumber());
+            stmt3.setInt(6, tx.getToAccountNumber());
             int generatedKey = stmt3.executeUpdate();
             System.out.println("Generated key: " + generatedKey);
+            DBUtil.getTransactionStore().invalidate(accountNumber);
         }
     }
 
     private void insertIntoBankAccountsTable(BankAccount bankAccount) throws NumberFormatException, SQLException {            
         String insertAccountSQL = "INSERT INTO bank_accounts (user_id, email, account_number, account_type, balance) VALUES (?, ?, ?, ?, ?)";
-            try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(insertAccountSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(insertAccountSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
                 stmt.setLong(1, bankAccount.getUserId());
                 stmt.setString(2, bankAccount.getEmail());
-                stmt.setInt(3, Integer.valueOf(bankAccount.getAccountNumber()));
+                stmt.setInt(3, bankAccount.getAccountNumber());
                 stmt.setString(4, bankAccount.getAccountType());
-                stmt.setBigDecimal(5, new BigDecimal(0));
+                Money.bind(stmt, 5, Money.ZERO);
                 int generatedKey = stmt.executeUpdate();
                 System.out.println("Generated key: " + generatedKey);
             }
     }
 
-    private void updateBalanceInBankAccountTable(BigDecimal balance, String accountNumber) throws SQLException { 
+    private void updateBalanceInBankAccountTable(Money balance, int accountNumber) throws SQLException { 
         // user bank account already exists so no insert. Update the account.
         // insert method exists for this purpose called insertBankAccount(bankdAccount) if you need it when the user already has an existing bank account
         // update details of the account to the database - 
@@ -175,9 +199,10 @@ public class BankAccountDAO {
         // TODO: add a test that confirms that only the balance can be updated unless the user is an admin.
 
         String updateAccountSQL = "UPDATE bank_accounts SET balance = ? WHERE account_number = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(updateAccountSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
-            stmt.setBigDecimal(1, balance);
-            stmt.setInt(2, Integer.valueOf(accountNumber));
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(updateAccountSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
+            Money.bind(stmt, 1, balance);
+            stmt.setInt(2, accountNumber);
             int generatedKey = stmt.executeUpdate();
             System.out.println("Generated key: " + generatedKey);
         }
@@ -191,7 +216,8 @@ public class BankAccountDAO {
         List<BankAccount> bankAccounts = new ArrayList<>();
         // Get all accounts for a user by email
         String sql = "SELECT * FROM bank_accounts WHERE email = ?";
-        try(PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             stmt.setString(1, userEmail);
             // execute the query
             ResultSet rs = stmt.executeQuery();
@@ -204,7 +230,7 @@ public class BankAccountDAO {
         //     bankAccount.addAuthorizedUsers(findAuthorizedUsersForBankAccount(bankAccount.getAccountNumber()));}
         bankAccounts = bankAccounts.stream()
             .map(bankAccount -> {
-                bankAccount.addTransactions(this.findTransactionsForBankAccount(bankAccount.getAccountNumber()));
+                bankAccount.setTransactions(this.lazyTransactions(bankAccount.getAccountNumber()));
                 bankAccount.addAuthorizedUsers(this.findAuthorizedUsersForBankAccount(bankAccount.getAccountNumber()));
                 return bankAccount;// Return the modified bankAccount object
             })
@@ -212,11 +238,12 @@ public class BankAccountDAO {
         return bankAccounts;
     }
 
-    private List<String> findAuthorizedUsersForBankAccount(String accountNumber) throws NumberFormatException{
+    private List<String> findAuthorizedUsersForBankAccount(int accountNumber) throws NumberFormatException{
         List<String> authorizedUsersForBankAccount = new ArrayList<>();
-        String sql = "SELECT * FROM authorized_users WHERE account_number  = ? ";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
-            stmt.setInt(1, Integer.valueOf(accountNumber));
+        String sql = "SELECT authorized_user_email FROM authorized_users WHERE account_number = ?";
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, accountNumber);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()){
                 String authorizedUserEmail = rs.getString("authorized_user_email");
@@ -228,32 +255,78 @@ public class BankAccountDAO {
         return authorizedUsersForBankAccount;
     }
 
-    private List<Transaction> findTransactionsForBankAccount(String accountNumber) throws NumberFormatException{
-        String sql = "SELECT * FROM transactions WHERE account_number = ?";
-        List<Transaction> transactionsForBankAccount = new ArrayList<>();
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
-            stmt.setInt(1, Integer.valueOf(accountNumber));
+    /**
+     * One page of an account's transactions in transaction_id order, the ones after afterTransactionId
+     * (0 = from the start). Keyset, not OFFSET, so page 50 costs the same as page 1.
+     */
+    public List<Transaction> getTransactionsPageForAccount(int accountNumber, int afterTransactionId, int limit) throws SQLException {
+        TransactionStore store = DBUtil.getTransactionStore();
+        if (store.isEnabled()) {
+            TransactionHistory history = findTransactionHistory(accountNumber, store);
+            int from = firstAfter(history, afterTransactionId);
+            int to = (int) Math.min((long) from + limit, history.size());
+            return new ArrayList<>(history.subList(from, to));
+        }
+        String sql = "SELECT * FROM transactions WHERE account_number = ? AND transaction_id > ? ORDER BY transaction_id LIMIT ?";
+        List<Transaction> page = new ArrayList<>();
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, accountNumber);
+            stmt.setInt(2, afterTransactionId);
+            stmt.setInt(3, limit);
             ResultSet rs = stmt.executeQuery();
             while(rs.next()){
-                String transactionType = rs.getString("transaction_type");
-                BigDecimal amount = rs.getBigDecimal("amount");
-                Timestamp transactionDateTime = rs.getTimestamp("transaction_date_time");
-                String transactionId = rs.getString("transaction_id");
-                String fromAccountNumber = String.valueOf(rs.getString("from_account_number"));
-                String toAccountNumber = String.valueOf(rs.getString("to_account_number"));
-                // public Transaction(String accountNumber, String transactionType, BigDecimal amount, 
-                // LocalDate transactionDate, LocalTime transactionTime,
-                // String fromAccountNumber, String toAccountNumber) {
-
-                Transaction tx = new Transaction(transactionId, accountNumber, transactionType, amount, transactionDateTime, 
-                 fromAccountNumber, toAccountNumber);
-                transactionsForBankAccount.add(tx);
-            } 
-        }catch(SQLException e){
-                e.printStackTrace();
+                page.add(Transaction.fromRow(rs));
+            }
+        }
+        return page;
+    }
+
+    // histories are in transaction_id order, binary search for the first id past the cursor
+    private static int firstAfter(TransactionHistory history, int afterTransactionId) {
+        int low = 0;
+        int high = history.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (history.getTransactionId(mid) <= afterTransactionId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // nothing is read until something looks at the list
+    private List<Transaction> lazyTransactions(int accountNumber) {
+        return new LazyTransactionList(accountNumber, TRANSACTION_PAGE_SIZE, this::getTransactionsPageForAccount);
+    }
+
+    // Every row of the account read straight into primitive columns, no Transaction
+    // per row, and kept in the store for the next request. Read-only: BankAccount.deposit() can't add to it.
+    // A failed read throws: a partial history would look like a short one, and paging would stop early.
+    private TransactionHistory findTransactionHistory(int accountNumber, TransactionStore store) throws SQLException {
+        TransactionHistory history = store.get(accountNumber);
+        if (history != null) {
+            return history;
+        }
+        long stamp = store.stamp();
+        history = new TransactionHistory(accountNumber, 16);
+        String sql = "SELECT transaction_id, transaction_type, amount, transaction_date_time, from_account_number, to_account_number " +
+            "FROM transactions WHERE account_number = ? ORDER BY transaction_id";
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, accountNumber);
+            ResultSet rs = stmt.executeQuery();
+            while(rs.next()){
+                history.append(rs.getInt("transaction_id"), rs.getString("transaction_type"),
+                    Money.read(rs, "amount").getCents(), rs.getTimestamp("transaction_date_time"),
+                    rs.getInt("from_account_number"), rs.getInt("to_account_number"));
             }
-        
-            return transactionsForBankAccount;
+        }
+        history.trimToSize();
+        store.put(accountNumber, history, stamp);
+        return history;
     }
 
     public void shareBankAccountWithEmail(String email, BankAccount bankAccount) throws Exception {
@@ -275,7 +348,8 @@ public class BankAccountDAO {
         //user exists now get their accounts
         List<BankAccount> bankAccounts = new ArrayList<>();
         String sql = "SELECT * FROM bank_accounts WHERE email = ?";
-        try(PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             stmt.setString(1, userEmail);
             // execute the query
             ResultSet rs = stmt.executeQuery();
@@ -290,7 +364,7 @@ public class BankAccountDAO {
         // fetch using streams
         bankAccounts = bankAccounts.stream()
             .map(bankAccount -> {
-                bankAccount.addTransactions(this.findTransactionsForBankAccount(bankAccount.getAccountNumber()));
+                bankAccount.setTransactions(this.lazyTransactions(bankAccount.getAccountNumber()));
                 bankAccount.addAuthorizedUsers(this.findAuthorizedUsersForBankAccount(bankAccount.getAccountNumber()));
                 return bankAccount;// Return the modified bankAccount object
             })
@@ -303,21 +377,101 @@ public class BankAccountDAO {
         return bankAccounts;
     }
 
-    public void deposit(BankAccount bankAccount, BigDecimal amount) throws NumberFormatException, SQLException {
-        // update the balance in the bank_accounts table
-        // insert a new transaction into the transactions table
-        
-        updateBalanceInBankAccountTable(amount, bankAccount.getAccountNumber());
-        Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
-        Transaction newTx = new Transaction(bankAccount.getAccountNumber(), "deposit", amount, timestamp, bankAccount.getAccountNumber(), bankAccount.getAccountNumber());
-        insertIntoTransactionsTable(newTx, bankAccount.getAccountNumber());
-       
-}
+    public BankAccount deposit(BankAccount bankAccount, Money amount) throws NumberFormatException, SQLException {
+        BankAccount updatedBankAccount = depositToAccount(bankAccount.getAccountNumber(), amount);
+        bankAccount.setBalance(updatedBankAccount.getBalance());
+        return updatedBankAccount;
+    }
+
+    public BankAccount depositToAccount(int accountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }
+        // update the balance and insert the transaction in one atomic statement
+        return postToLedger(accountNumber, amount, "deposit");
+    }
+
+    public BankAccount withdrawFromAccount(int accountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        // if the balance is less than the amount to withdraw, postToLedger throws "Insufficient funds"
+        return postToLedger(accountNumber, amount, "withdraw");
+    }
+
+    // Applies a signed amount to the balance AND records the transaction in a single statement (one round trip).
+    // Postgres runs a statement atomically, so either both the balance update and the transaction insert
+    // happen or neither does. The balance check is part of the UPDATE's WHERE clause, so it is evaluated
+    // against the row while it is locked: two concurrent withdrawals can't both pass the check on a stale balance.
+    // Returns one row: the updated account, its authorized users and the transaction just posted. The rest of
+    // the history isn't read here, it is paged from /account/{n}/transactions when someone wants it.
+    private static final String POST_TO_LEDGER_SQL =
+        "WITH updated AS ( " +
+        "    UPDATE bank_accounts SET balance = balance + ? " +
+        "    WHERE account_number = ? AND balance + ? >= 0 " +
+        "    RETURNING account_number, user_id, email, account_type, balance " +
+        "), posted AS ( " +
+        "    INSERT INTO transactions (account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number) " +
+        "    SELECT account_number, ?, ?, ?, account_number, account_number FROM updated " +
+        "    RETURNING * " +
+        ") " +
+        "SELECT u.account_number, u.user_id, u.email, u.account_type, u.balance, " +
+        "       (SELECT array_agg(a.authorized_user_email) FROM authorized_users a WHERE a.account_number = u.account_number) AS authorized_user_emails, " +
+        "       p.transaction_id, p.transaction_type, p.amount, p.transaction_date_time, p.from_account_number, p.to_account_number " +
+        "FROM updated u JOIN posted p ON p.account_number = u.account_number";
+
+    // amount is what the transaction row records, always positive. The type says which way the balance goes.
+    private BankAccount postToLedger(int accountNumber, Money amount, String transactionType) throws SQLException {
+        Money signedAmount = "withdraw".equals(transactionType) ? amount.negate() : amount;
+        GroupCommitLedger groupCommitLedger = DBUtil.getGroupCommitLedger();
+        if (groupCommitLedger.isEnabled()) {
+            // committed together with whatever else was posted at the same time. Comes back without
+            // transactions, the history is paged from /account/{n}/transactions
+            return groupCommitLedger.post(accountNumber, amount, transactionType);
+        }
+        BankAccount bankAccount = null;
+        long ledgerVersion = 0;
+        AccountCache accountCache = DBUtil.getAccountCache();
+        long stamp = accountCache.stamp();
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(POST_TO_LEDGER_SQL)) {
+            Money.bind(stmt, 1, signedAmount);
+            stmt.setInt(2, accountNumber);
+            Money.bind(stmt, 3, signedAmount);
+            Money.bind(stmt, 4, amount);
+            stmt.setString(5, transactionType);
+            stmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+            ResultSet rs = stmt.executeQuery();
+            // auto-commit: the new transaction is committed by now, whatever history is stored for the account is stale
+            DBUtil.getTransactionStore().invalidate(accountNumber);
+            // no row when nothing was updated
+            if (rs.next()) {
+                bankAccount = BankAccount.fromRow(rs);
+                bankAccount.addAuthorizedUsers(authorizedUserEmails(rs));
+                bankAccount.getTransactions().add(Transaction.fromRow(rs));
+                // the row is locked until the statement commits, so the new transaction is the account's latest
+                ledgerVersion = rs.getLong("transaction_id");
+            }
+        }
+        if (bankAccount != null) {
+            // write-through: this is the committed row, as of the transaction we just posted
+            accountCache.put(AccountCache.Entry.of(bankAccount, bankAccount.getAuthorizedUserEmails(), ledgerVersion), stamp);
+        }
+        if (bankAccount == null) {
+            // nothing was updated: either there is no such account or the withdrawal would overdraw it
+            if (!doesAccountExist(accountNumber)) {
+                throw new IllegalArgumentException("Account not found");
+            }
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+        return bankAccount;
+    }
 
     public Boolean doesAccountExistByEmail(String userEmail) {
         Boolean doesAccountExist = false;
         String sql = "SELECT 1 FROM bank_accounts WHERE email = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             stmt.setString(1, userEmail);
             ResultSet rs = stmt.executeQuery();
             doesAccountExist = rs.next();
@@ -327,71 +481,181 @@ public class BankAccountDAO {
         return doesAccountExist;
     }
 
-    public BankAccount getAccount(String accountNumber) {
-        BankAccount bankAccount = null;
-        String sql = "SELECT * FROM bank_accounts WHERE account_number = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
-            stmt.setInt(1, Integer.valueOf(accountNumber));
-            ResultSet rs = stmt.executeQuery();
-            if(rs.next()){
-                Integer userId = rs.getInt("user_id");
-                String email = rs.getString("email");
-                String accountType = rs.getString("account_type");
-                BigDecimal balance = rs.getBigDecimal("balance");
-                bankAccount = new BankAccount(userId, accountType, email, balance, accountNumber, new ArrayList<Transaction>());
+    // The header (row + authorized users) and the account's ledger version in one round trip.
+    // The version is the highest transaction_id, see AccountCache. Same snapshot, so it matches the balance.
+    private static final String ACCOUNT_HEADER_SQL =
+        "SELECT b.account_number, b.user_id, b.email, b.account_type, b.balance, " +
+        "       (SELECT array_agg(a.authorized_user_email) FROM authorized_users a WHERE a.account_number = b.account_number) AS authorized_user_emails, " +
+        "       (SELECT coalesce(max(t.transaction_id), 0) FROM transactions t WHERE t.account_number = b.account_number) AS ledger_version " +
+        "FROM bank_accounts b WHERE b.account_number = ?";
+
+    public BankAccount getAccount(int accountNumber) {
+        AccountCache accountCache = DBUtil.getAccountCache();
+        AccountCache.Entry header = accountCache.get(accountNumber);
+        if (header == null) {
+            long stamp = accountCache.stamp();
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(ACCOUNT_HEADER_SQL)){
+                stmt.setInt(1, accountNumber);
+                ResultSet rs = stmt.executeQuery();
+                if(rs.next()){
+                    header = AccountCache.Entry.of(BankAccount.fromRow(rs), authorizedUserEmails(rs), rs.getLong("ledger_version"));
+                }
+            } catch (SQLException e){
+                e.printStackTrace();
             }
-            //if account is found and balance is greater than 0
-            //then get transactions for account
-            // get transactions for account
-            // get authorized users for account
-            if(bankAccount != null && bankAccount.getBalance().compareTo(BigDecimal.ZERO) > 0){
-                List<Transaction> txes = findTransactionsForBankAccount(accountNumber);
-                bankAccount.addTransactions(txes);
-                bankAccount.addAuthorizedUsers(findAuthorizedUsersForBankAccount(accountNumber));
+            if (header == null) {
+                return null;
             }
-           
-        } catch (SQLException e){
-            e.printStackTrace();
+            accountCache.put(header, stamp);
         }
+        BankAccount bankAccount = header.toBankAccount();
+        // the history is only read if the caller looks at it, a balance check doesn't pay for it
+        bankAccount.setTransactions(lazyTransactions(accountNumber));
+        bankAccount.addAuthorizedUsers(header.getAuthorizedUserEmails());
         return bankAccount;
     }
 
-    public void deleteAccount(String accountNumber) {
+    private static List<String> authorizedUserEmails(ResultSet rs) throws SQLException {
+        Array authorizedUserEmails = rs.getArray("authorized_user_emails");
+        return authorizedUserEmails == null ? List.of() : List.of((String[]) authorizedUserEmails.getArray());
+    }
+
+    public void deleteAccount(int accountNumber) {
         // delete the account from the bank_accounts table
         // delete all transactions for the account from the transactions table
         // delete all authorized users for the account from the authorized_users table
         String deleteAccountSQL = "DELETE FROM bank_accounts WHERE account_number = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(deleteAccountSQL)){
-            stmt.setInt(1, Integer.valueOf(accountNumber));
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(deleteAccountSQL)){
+            stmt.setInt(1, accountNumber);
             stmt.executeUpdate();
+            DBUtil.getTransactionStore().invalidate(accountNumber);
+            DBUtil.getAccountCache().invalidate(accountNumber);
         } catch (SQLException e){
             e.printStackTrace();
         }
     }
     
 
-    public void withdraw(BankAccount foundBankAccount, BigDecimal amount) {   
+    public BankAccount withdraw(BankAccount foundBankAccount, Money amount) throws SQLException {
         // update the balance in the bank_accounts table
         // insert a new transaction into the transactions table
         // if the balance is less than the amount to withdraw, throw an exception
-        if(foundBankAccount.getBalance().compareTo(amount) < 0){
-            throw new IllegalArgumentException("Insufficient funds");
-        }
-        BigDecimal newBalance = foundBankAccount.getBalance().subtract(amount);
-        try {
-            updateBalanceInBankAccountTable(newBalance, foundBankAccount.getAccountNumber());
-            Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
-            Transaction newTx = new Transaction(foundBankAccount.getAccountNumber(), "withdraw", amount, timestamp, foundBankAccount.getAccountNumber(), foundBankAccount.getAccountNumber());
-            insertIntoTransactionsTable(newTx, foundBankAccount.getAccountNumber());
-        } catch (SQLException e) {
-            e.printStackTrace();
+        // all three happen atomically in postToLedger against the current balance in the database
+        BankAccount updatedBankAccount = withdrawFromAccount(foundBankAccount.getAccountNumber(), amount);
+        foundBankAccount.setBalance(updatedBankAccount.getBalance());
+        return updatedBankAccount;
+    }
+
+    // Moves money between two accounts in ONE database transaction: both balances change and
+    // both transaction rows are written, or nothing happens at all.
+    //
+    // Deadlocks: two opposite transfers (A->B and B->A) that lock "their" source row first would each
+    // wait on the other's row forever. Locking both rows up front, always lowest account_number first,
+    // means every transfer takes the locks in the same order, so they queue instead of deadlocking.
+    //
+    // Returns the updated source account. SQLExceptions (e.g. serialization failures) are thrown
+    // as-is after rolling back so the caller can decide to retry.
+    public BankAccount transfer(int from, int to, Money amount) throws SQLException {
+        String lockSQL = "SELECT account_number, balance FROM bank_accounts WHERE account_number IN (?, ?) ORDER BY account_number FOR UPDATE";
+        String updateSQL = "UPDATE bank_accounts SET balance = balance + CASE WHEN account_number = ? THEN ? ELSE ? END " +
+            "WHERE account_number IN (?, ?) RETURNING account_number, user_id, email, account_type, balance";
+        // the pair of rows is linked by from/to account numbers and the shared timestamp
+        String insertSQL = "INSERT INTO transactions (account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number) " +
+            "VALUES (?, ?, 'transfer', ?, ?, ?), (?, ?, 'transfer', ?, ?, ?) RETURNING account_number, transaction_id";
+
+        AccountCache accountCache = DBUtil.getAccountCache();
+        long stamp = accountCache.stamp();
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Money fromBalance = null;
+                boolean toExists = false;
+                try (PreparedStatement stmt = conn.prepareStatement(lockSQL)) {
+                    stmt.setInt(1, from);
+                    stmt.setInt(2, to);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        if (rs.getInt("account_number") == from) {
+                            fromBalance = Money.read(rs, "balance");
+                        } else {
+                            toExists = true;
+                        }
+                    }
+                }
+                if (fromBalance == null) {
+                    throw new IllegalArgumentException("Account not found");
+                }
+                if (!toExists) {
+                    throw new IllegalArgumentException("Destination account does not exist");
+                }
+                // the balance we compare against is locked, nobody can change it before we commit
+                if (fromBalance.isLessThan(amount)) {
+                    throw new IllegalArgumentException("Insufficient funds");
+                }
+
+                BankAccount sourceAccount = null;
+                BankAccount destinationAccount = null;
+                try (PreparedStatement stmt = conn.prepareStatement(updateSQL)) {
+                    stmt.setInt(1, from);
+                    Money.bind(stmt, 2, amount.negate());
+                    Money.bind(stmt, 3, amount);
+                    stmt.setInt(4, from);
+                    stmt.setInt(5, to);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        if (rs.getInt("account_number") == from) {
+                            sourceAccount = BankAccount.fromRow(rs);
+                        } else {
+                            destinationAccount = BankAccount.fromRow(rs);
+                        }
+                    }
+                }
+
+                Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
+                long fromVersion = 0;
+                long toVersion = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
+                    stmt.setInt(1, from);
+                    Money.bind(stmt, 2, amount);
+                    stmt.setTimestamp(3, timestamp);
+                    stmt.setInt(4, from);
+                    stmt.setInt(5, to);
+                    stmt.setInt(6, to);
+                    Money.bind(stmt, 7, amount);
+                    stmt.setTimestamp(8, timestamp);
+                    stmt.setInt(9, from);
+                    stmt.setInt(10, to);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        if (rs.getInt("account_number") == from) {
+                            fromVersion = rs.getLong("transaction_id");
+                        } else {
+                            toVersion = rs.getLong("transaction_id");
+                        }
+                    }
+                }
+                conn.commit();
+                TransactionStore store = DBUtil.getTransactionStore();
+                store.invalidate(from);
+                store.invalidate(to);
+                // write-through both balances. Authorized users weren't read, the cache keeps the ones it has
+                accountCache.put(AccountCache.Entry.of(sourceAccount, null, fromVersion), stamp);
+                accountCache.put(AccountCache.Entry.of(destinationAccount, null, toVersion), stamp);
+                return sourceAccount;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
         }
     }
 
     public List<BankAccount> getAllAccounts() {
         List<BankAccount> bankAccounts = new ArrayList<>();
         String sql = "SELECT * FROM bank_accounts";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
             ResultSet rs = stmt.executeQuery();
             bankAccounts = BankAccount.fromResultSet(rs);
         } catch (SQLException e){
@@ -403,22 +667,146 @@ public class BankAccountDAO {
     public List<Transaction> getAllTransactions() {
         List<Transaction> transactions = new ArrayList<>();
         String sql = "SELECT * FROM transactions";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(sql)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            ResultSet rs = stmt.executeQuery();
+            while(rs.next()){
+                transactions.add(Transaction.fromRow(rs));
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+        return transactions;
+    }
+
+    // Keyset pagination: "give me the next `limit` rows after the last one I saw".
+    // Unlike OFFSET, the database seeks straight to the cursor using the primary key index,
+    // so every page costs the same no matter how deep the client pages.
+    public List<BankAccount> getAccountsPage(int afterAccountNumber, int limit) {
+        List<BankAccount> bankAccounts = new ArrayList<>();
+        String sql = "SELECT * FROM bank_accounts WHERE account_number > ? ORDER BY account_number LIMIT ?";
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, afterAccountNumber);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            bankAccounts = BankAccount.fromResultSet(rs);
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+        return bankAccounts;
+    }
+
+    public List<Transaction> getTransactionsPage(int afterTransactionId, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = "SELECT * FROM transactions WHERE transaction_id > ? ORDER BY transaction_id LIMIT ?";
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)){
+            stmt.setInt(1, afterTransactionId);
+            stmt.setInt(2, limit);
             ResultSet rs = stmt.executeQuery();
             while(rs.next()){
-                String transactionType = rs.getString("transaction_type");
-                BigDecimal amount = rs.getBigDecimal("amount");
-                Timestamp transactionDateTime = rs.getTimestamp("transaction_date_time");
-                String transactionId = rs.getString("transaction_id");
-                String accountNumber = rs.getString("account_number");
-                String fromAccountNumber = rs.getString("from_account_number");
-                String toAccountNumber = rs.getString("to_account_number");
-                Transaction tx = new Transaction(transactionId, accountNumber, transactionType, amount, transactionDateTime, fromAccountNumber, toAccountNumber);
-                transactions.add(tx);
+                transactions.add(Transaction.fromRow(rs));
             }
         } catch (SQLException e){
             e.printStackTrace();
         }
         return transactions;
     }
-}
\ No newline at end of file
+
+    /**
+     * One page of an account's history, newest first, after the cursor (null = from the newest).
+     * The SQL only carries the filters that are set, so the planner always sees the plain keyset
+     * range on idx_transactions_account_date_id plus a few row filters.
+     */
+    public List<Transaction> getTransactionHistory(int accountNumber, TransactionFilter filter, TransactionCursor after, int limit) throws SQLException {
+        // undated rows (nothing this app writes) have no place on the timeline and can't be a cursor
+        StringBuilder sql = new StringBuilder("SELECT * FROM transactions WHERE account_number = ? AND transaction_date_time IS NOT NULL");
+        if (filter.getFrom() != null) {
+            sql.append(" AND transaction_date_time >= ?");
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND transaction_date_time < ?");
+        }
+        if (filter.getTransactionTypes() != null && !filter.getTransactionTypes().isEmpty()) {
+            sql.append(" AND transaction_type = ANY(?)");
+        }
+        if (filter.getMinAmount() != null) {
+            sql.append(" AND amount >= ?");
+        }
+        if (filter.getMaxAmount() != null) {
+            sql.append(" AND amount <= ?");
+        }
+        if (after != null) {
+            // row comparison, not two ORed conditions: postgres turns it into one index range
+            sql.append(" AND (transaction_date_time, transaction_id) < (?, ?)");
+        }
+        sql.append(" ORDER BY transaction_date_time DESC, transaction_id DESC LIMIT ?");
+
+        List<Transaction> transactions = new ArrayList<>();
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())){
+            int i = 1;
+            stmt.setInt(i++, accountNumber);
+            if (filter.getFrom() != null) {
+                stmt.setTimestamp(i++, filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                stmt.setTimestamp(i++, filter.getTo());
+            }
+            if (filter.getTransactionTypes() != null && !filter.getTransactionTypes().isEmpty()) {
+                stmt.setArray(i++, conn.createArrayOf("varchar", filter.getTransactionTypes().toArray()));
+            }
+            if (filter.getMinAmount() != null) {
+                Money.bind(stmt, i++, filter.getMinAmount());
+            }
+            if (filter.getMaxAmount() != null) {
+                Money.bind(stmt, i++, filter.getMaxAmount());
+            }
+            if (after != null) {
+                stmt.setTimestamp(i++, after.getTransactionDateTime());
+                stmt.setInt(i++, after.getTransactionId());
+            }
+            stmt.setInt(i, limit);
+            ResultSet rs = stmt.executeQuery();
+            while(rs.next()){
+                transactions.add(Transaction.fromRow(rs));
+            }
+        }
+        return transactions;
+    }
+
+    // Streams every bank account to the handler one row at a time.
+    public void streamAllAccounts(RowHandler<BankAccount> handler) throws SQLException, IOException {
+        String sql = "SELECT * FROM bank_accounts ORDER BY account_number";
+        try (Connection conn = DBUtil.getConnection()) {
+            // postgres only honours the fetch size inside a transaction. Without it the driver
+            // pulls the whole table into memory before returning the first row.
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    handler.handle(BankAccount.fromRow(rs));
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    // Streams every transaction to the handler one row at a time.
+    public void streamAllTransactions(RowHandler<Transaction> handler) throws SQLException, IOException {
+        String sql = "SELECT * FROM transactions ORDER BY transaction_id";
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    handler.handle(Transaction.fromRow(rs));
+                }
+            }
+            conn.commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package net.revature.labs.dao;
+
+import java.io.IOException;
+
+/**
+ * Callback for the streaming DAO methods. Called once per row while the result set is still open,
+ * so rows can be written out (e.g. to the HTTP response) without collecting them into a List first.
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    void handle(T row) throws IOException;
+}
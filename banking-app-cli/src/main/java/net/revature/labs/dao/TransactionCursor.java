@@ -0,0 +1,53 @@
+package net.revature.labs.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import net.revature.labs.model.Transaction;
+
+/**
+ * Where a page of transaction history ended: the (transaction_date_time, transaction_id) of its last row.
+ * The next page starts strictly after it, so rows inserted meanwhile never shift or repeat a page.
+ *
+ * Clients get it as an opaque string (encode()) and hand it back unchanged.
+ */
+public final class TransactionCursor {
+    private final Timestamp transactionDateTime;
+    private final int transactionId;
+
+    public TransactionCursor(Timestamp transactionDateTime, int transactionId) {
+        this.transactionDateTime = transactionDateTime;
+        this.transactionId = transactionId;
+    }
+
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getTransactionDateTime(), transaction.getTransactionId());
+    }
+
+    // Timestamp.toString keeps every fractional digit, valueOf reads it back exactly
+    public String encode() {
+        String raw = transactionDateTime + "|" + transactionId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new TransactionCursor(Timestamp.valueOf(raw.substring(0, separator)),
+                Integer.parseInt(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            // bad base64, no separator, bad timestamp or id: all the same to the client
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public Timestamp getTransactionDateTime() {
+        return transactionDateTime;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,58 @@
+package net.revature.labs.dao;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import net.revature.labs.model.Money;
+
+/**
+ * Optional filters for BankAccountDAO.getTransactionHistory. Anything left null is not filtered on.
+ * The date range is [from, to), amounts are inclusive on both ends.
+ */
+public class TransactionFilter {
+    private Timestamp from;
+    private Timestamp to;
+    private List<String> transactionTypes;
+    private Money minAmount;
+    private Money maxAmount;
+
+    public Timestamp getFrom() {
+        return from;
+    }
+
+    public void setFrom(Timestamp from) {
+        this.from = from;
+    }
+
+    public Timestamp getTo() {
+        return to;
+    }
+
+    public void setTo(Timestamp to) {
+        this.to = to;
+    }
+
+    public List<String> getTransactionTypes() {
+        return transactionTypes;
+    }
+
+    public void setTransactionTypes(List<String> transactionTypes) {
+        this.transactionTypes = transactionTypes;
+    }
+
+    public Money getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(Money minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public Money getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(Money maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+}
@@ -2,20 +2,25 @@ package net.revature.labs.dao;
 
 import net.revature.labs.dao.util.DBUtil;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class UserDAOImpl extends DAO implements UserDAO {
+    // users loaded per page when streaming the whole table
+    private static final int STREAM_PAGE_SIZE = 200;
 
     public UserDAOImpl() throws SQLException, IOException, ClassNotFoundException {
     }
@@ -34,7 +39,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
         String tableName = "users";
         String query = "INSERT INTO \"" + tableName + "\" (name, email, phone, password, isAdmin) " +
                 "VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)) {
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPhone());
@@ -51,7 +57,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     @Override
     public User loginUser(String email, String password) throws SQLException, IOException , ClassNotFoundException{
         String query = "SELECT user_id, name, email, phone, password, isAdmin FROM \"users\" WHERE email = ? AND password = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)) {
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, email);
             stmt.setString(2, password);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -74,7 +81,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
         User foundUser = null;
         String query = "SELECT * FROM \"users\" WHERE email = ?";
         
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)){
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
@@ -95,7 +103,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     @Override
     public void updateUser(User user) {
         String updateSQL= "UPDATE \"users\" SET name = ?, email = ?, phone = ?, password = ? WHERE user_id = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(updateSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(updateSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPhone());
@@ -127,7 +136,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     public void deleteUserByEmail(String email) throws SQLException {
         String query = "DELETE FROM \"users\" WHERE email = ?";
 
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)){
             stmt.setString(1, email);
             stmt.executeUpdate();
         }
@@ -143,58 +153,63 @@ public class UserDAOImpl extends DAO implements UserDAO {
 
     @Override
     public List<BankAccount> getBankAccountsByUser(User user) throws SQLException {
-        //fetch all bank accounts for a user
-        // for each bank account fetch its transactions
-        // then add the transactions to the bank account
-        // then add the bank account to the list of bank accounts
-        // and return the list of bank accounts
-
-        List<BankAccount> bankAccounts = new ArrayList<>();
-        List<Transaction> transactions;
-
-        String bankAccountSQL = "SELECT * FROM \"bank_accounts\" WHERE user_id = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(bankAccountSQL)){
-            stmt.setInt(1, user.getUserId());
+        //fetch all bank accounts for a user along with their transactions.
+        // same set based loader as getAllUsers, just for a single user.
+        try (Connection conn = DBUtil.getConnection()) {
+            Map<Integer, List<BankAccount>> accountsByUserId = loadBankAccountsForUsers(conn, List.of(user.getUserId()));
+            return accountsByUserId.getOrDefault(user.getUserId(), new ArrayList<>());
+        }
+    }
+
+    // Loads the bank accounts (with their transactions) for ALL the given users in 2 queries,
+    // no matter how many users or accounts there are:
+    // 1) all bank accounts where user_id = ANY(userIds)
+    // 2) all transactions where account_number = ANY(accountNumbers)
+    // then stitches them together in memory using hash maps.
+    private Map<Integer, List<BankAccount>> loadBankAccountsForUsers(Connection conn, List<Integer> userIds) throws SQLException {
+        Map<Integer, List<BankAccount>> accountsByUserId = new HashMap<>();
+        Map<Integer, BankAccount> accountsByNumber = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return accountsByUserId;
+        }
+
+        String bankAccountSQL = "SELECT user_id, account_type, email, balance, account_number FROM \"bank_accounts\" WHERE user_id = ANY(?)";
+        try (PreparedStatement stmt = conn.prepareStatement(bankAccountSQL)){
+            stmt.setArray(1, conn.createArrayOf("integer", userIds.toArray()));
             ResultSet rs = stmt.executeQuery();
             while(rs.next()){
-                Integer userId = Integer.valueOf(rs.getString("user_id"));
+                int userId = rs.getInt("user_id");
                 String accountType = rs.getString("account_type");
                 String email = rs.getString("email");
-                BigDecimal balance = rs.getBigDecimal("balance");
-                String accountNumber = rs.getString("account_number");
-                transactions = getTransactionsByAccountNumber(accountNumber);
-                BankAccount account = new BankAccount(userId, accountType, email, balance, accountNumber, transactions);
-                bankAccounts.add(account);
-            }
-            bankAccounts.stream()
-                .map(account -> {
-                    account.addTransactions(getTransactionsByAccountNumber(account.getAccountNumber()));
-                    return account;
-                }).collect(Collectors.toList());
+                Money balance = Money.read(rs, "balance");
+                int accountNumber = rs.getInt("account_number");
+                BankAccount account = new BankAccount(userId, accountType, email, balance, accountNumber, new ArrayList<>());
+                accountsByUserId.computeIfAbsent(userId, id -> new ArrayList<>()).add(account);
+                accountsByNumber.put(accountNumber, account);
             }
-        return bankAccounts;
-    }
+        }
+        if (accountsByNumber.isEmpty()) {
+            return accountsByUserId;
+        }
 
-    private List<Transaction> getTransactionsByAccountNumber(String accountNumber) {
-        List<Transaction> transactions = new ArrayList<>();
-        String query = "SELECT * FROM \"transactions\" WHERE account_number = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
-            stmt.setString(1, accountNumber);
+        Integer[] accountNumbers = accountsByNumber.keySet().toArray(new Integer[0]);
+        String transactionSQL = "SELECT * FROM \"transactions\" WHERE account_number = ANY(?)";
+        try (PreparedStatement stmt = conn.prepareStatement(transactionSQL)){
+            stmt.setArray(1, conn.createArrayOf("integer", accountNumbers));
             ResultSet rs = stmt.executeQuery();
             while(rs.next()){
-                String txId = rs.getString("transaction_id");
-                String txAccountNumber = accountNumber;
+                int txId = rs.getInt("transaction_id");
+                int txAccountNumber = rs.getInt("account_number");
                 String transactionType = rs.getString("transaction_type");
-                BigDecimal txAmount = rs.getBigDecimal("amount");
+                Money txAmount = Money.read(rs, "amount");
                 Timestamp txDateTime = rs.getTimestamp("transaction_date_time");
-                String txFromAccountNumber = rs.getString("from_account_number");
-                String txToAccountNumber = rs.getString("to_account_number");
-                transactions.add(new Transaction(txId, txAccountNumber, transactionType, txAmount, txDateTime, txFromAccountNumber, txToAccountNumber));
+                int txFromAccountNumber = rs.getInt("from_account_number");
+                int txToAccountNumber = rs.getInt("to_account_number");
+                accountsByNumber.get(txAccountNumber).getTransactions()
+                    .add(new Transaction(txId, txAccountNumber, transactionType, txAmount, txDateTime, txFromAccountNumber, txToAccountNumber));
             }
-        } catch (SQLException e){
-            e.printStackTrace();
         }
-        return transactions;
+        return accountsByUserId;
     }
 
     @Override
@@ -206,7 +221,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     public boolean doesUserAccountExist(String userEmail) {
         boolean yesNo = false;
         String query = "SELECT 1 FROM \"users\" WHERE email = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)){
             stmt.setString(1, userEmail);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
@@ -228,7 +244,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     public User updateUserById(int ownerUserId, User user) throws SQLException {
         User updatedUser;
         String updateSQL= "UPDATE \"users\" SET name = ?, email = ?, phone = ?, password = ? WHERE user_id = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(updateSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(updateSQL, PreparedStatement.RETURN_GENERATED_KEYS)){
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPhone());
@@ -246,7 +263,8 @@ public class UserDAOImpl extends DAO implements UserDAO {
     public User getUserById(int ownerUserId) {
         User foundUser = null;
         String query = "SELECT * FROM \"users\" WHERE user_id = ?";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)){
             stmt.setInt(1, ownerUserId);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
@@ -266,29 +284,74 @@ public class UserDAOImpl extends DAO implements UserDAO {
     }
 
     public List<User> getAllUsers() {
+        // 3 queries total (users, their accounts, the accounts' transactions) instead of
+        // 1 + one per user + one per account.
         List<User> users = new ArrayList<>();
         String query = "SELECT * FROM \"users\"";
-        try (PreparedStatement stmt = DBUtil.getConnection().prepareStatement(query)){
-            ResultSet rs = stmt.executeQuery();
-            while(rs.next()){
-                User user = new User(rs.getInt("user_id"), rs.getString("name"), rs.getString("email"),
-                    rs.getString("phone"), rs.getString("password"), rs.getBoolean("isAdmin"));
-                users.add(user);
+        try (Connection conn = DBUtil.getConnection()){
+            try (PreparedStatement stmt = conn.prepareStatement(query)){
+                ResultSet rs = stmt.executeQuery();
+                while(rs.next()){
+                    User user = new User(rs.getInt("user_id"), rs.getString("name"), rs.getString("email"),
+                        rs.getString("phone"), rs.getString("password"), rs.getBoolean("isAdmin"));
+                    users.add(user);
+                }
+            }
+            //fetch BankAccounts for all users at once and add them to each user
+            List<Integer> userIds = users.stream().map(User::getUserId).collect(Collectors.toList());
+            Map<Integer, List<BankAccount>> accountsByUserId = loadBankAccountsForUsers(conn, userIds);
+            for (User user : users) {
+                List<BankAccount> bankAccounts = accountsByUserId.get(user.getUserId());
+                if (bankAccounts != null) {
+                    user.addBankAccounts(bankAccounts);
+                }
             }
-            //fetch BankAccounts and add them to user
-            users.stream()
-                .map(user -> {
-                    try {
-                        user.addBankAccounts(getBankAccountsByUser(user));
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                    return user;
-
-                }).collect(Collectors.toList());
         } catch (SQLException e){
             e.printStackTrace();
         }
         return users;
     }
+
+    // Keyset pagination over users (see BankAccountDAO.getAccountsPage). Each page comes with
+    // its bank accounts and transactions loaded set-based, same as getAllUsers.
+    // A failed read throws rather than returning an empty page, which streamAllUsers would take as the end.
+    public List<User> getUsersPage(int afterUserId, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        String query = "SELECT * FROM \"users\" WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        try (Connection conn = DBUtil.getConnection()){
+            try (PreparedStatement stmt = conn.prepareStatement(query)){
+                stmt.setInt(1, afterUserId);
+                stmt.setInt(2, limit);
+                ResultSet rs = stmt.executeQuery();
+                while(rs.next()){
+                    User user = new User(rs.getInt("user_id"), rs.getString("name"), rs.getString("email"),
+                        rs.getString("phone"), rs.getString("password"), rs.getBoolean("isAdmin"));
+                    users.add(user);
+                }
+            }
+            List<Integer> userIds = users.stream().map(User::getUserId).collect(Collectors.toList());
+            Map<Integer, List<BankAccount>> accountsByUserId = loadBankAccountsForUsers(conn, userIds);
+            for (User user : users) {
+                List<BankAccount> bankAccounts = accountsByUserId.get(user.getUserId());
+                if (bankAccounts != null) {
+                    user.addBankAccounts(bankAccounts);
+                }
+            }
+        }
+        return users;
+    }
+
+    // Streams every user (with accounts and transactions) to the handler.
+    // Walks the table one page at a time so only one page of users is ever in memory.
+    public void streamAllUsers(RowHandler<User> handler) throws SQLException, IOException {
+        int afterUserId = 0;
+        List<User> page;
+        do {
+            page = getUsersPage(afterUserId, STREAM_PAGE_SIZE);
+            for (User user : page) {
+                handler.handle(user);
+                afterUserId = user.getUserId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
 }
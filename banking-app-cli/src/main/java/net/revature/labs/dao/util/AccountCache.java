@@ -0,0 +1,225 @@
+package net.revature.labs.dao.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+
+/**
+ * Account headers (the bank_accounts row plus its authorized users) for getAccount. Transaction history
+ * is not in here, that is the TransactionStore's job, so a cached header stays small.
+ *
+ * Segmented LRU: a new entry starts on probation and is only promoted to the protected segment (80% of
+ * the capacity) when it is read again. A burst of one-off lookups, like an admin walking every account,
+ * only churns probation and can't flush the accounts that are actually busy. Capacity 0 = off.
+ *
+ * Write-through: ledger writes put the row they just updated. Two writers to the same account can finish
+ * in either order, so every entry carries a version, the account's highest transaction_id. Ledger writes
+ * always insert a transaction while holding the row lock, so a later balance always has a higher version
+ * and an older one is never put over a newer one.
+ * Writes that don't insert a transaction (deletes, sharing) call invalidate() after their commit instead.
+ * Every put carries a stamp taken before its query; a put that raced an invalidation is dropped.
+ * A write-through of an account that isn't cached (the transfer doesn't read authorized users) is kept as
+ * a tombstone: get() treats it as a miss, but its version still turns away a reader that loaded the row
+ * before the write committed.
+ */
+public class AccountCache {
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final int maxEntries;
+    private final int protectedCapacity;
+    private final int probationCapacity;
+    // both access ordered = LRU. Guarded by synchronized on this, nothing in there blocks.
+    private final LinkedHashMap<Integer, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long invalidations = 0;
+
+    public AccountCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.protectedCapacity = maxEntries * 4 / 5;
+        this.probationCapacity = maxEntries - protectedCapacity;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @return the cached header, or null if it has to be loaded
+     */
+    public synchronized Entry get(int accountNumber) {
+        Entry entry = protectedSegment.get(accountNumber);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        entry = probation.get(accountNumber);
+        if (entry != null && !entry.isTombstone()) {
+            hits.increment();
+            probation.remove(accountNumber);
+            promote(accountNumber, entry);
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Take before reading or writing the account in the database, pass to put() afterwards.
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches a header read or written at entry.getVersion(). Dropped if a newer version is already cached
+     * or anything was invalidated since stamp was taken. An entry without authorized users (the transfer
+     * doesn't read them) keeps the cached ones, or only stays as a tombstone if there are none.
+     */
+    public synchronized void put(Entry entry, long stamp) {
+        if (!isEnabled() || stamp != invalidations) {
+            return;
+        }
+        int accountNumber = entry.accountNumber;
+        Entry existing = protectedSegment.get(accountNumber);
+        boolean isProtected = existing != null;
+        if (existing == null) {
+            existing = probation.get(accountNumber);
+        }
+        if (existing != null && existing.version > entry.version) {
+            return;
+        }
+        if (entry.authorizedUserEmails == null && existing != null) {
+            entry = new Entry(entry, existing.authorizedUserEmails);
+        }
+        if (isProtected) {
+            protectedSegment.put(accountNumber, entry);
+        } else if (existing != null) {
+            probation.put(accountNumber, entry);
+        } else {
+            addToProbation(accountNumber, entry);
+        }
+    }
+
+    public synchronized void invalidate(int accountNumber) {
+        invalidations++;
+        if (protectedSegment.remove(accountNumber) == null) {
+            probation.remove(accountNumber);
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        protectedSegment.clear();
+        probation.clear();
+    }
+
+    public synchronized int size() {
+        return protectedSegment.size() + probation.size();
+    }
+
+    private void promote(int accountNumber, Entry entry) {
+        protectedSegment.put(accountNumber, entry);
+        if (protectedSegment.size() > protectedCapacity) {
+            // the protected segment's least recently used goes back on probation, it gets one more chance
+            Iterator<Map.Entry<Integer, Entry>> eldest = protectedSegment.entrySet().iterator();
+            Map.Entry<Integer, Entry> demoted = eldest.next();
+            eldest.remove();
+            addToProbation(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private void addToProbation(int accountNumber, Entry entry) {
+        probation.put(accountNumber, entry);
+        if (probation.size() > probationCapacity) {
+            Iterator<Entry> eldest = probation.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getEvictions() {
+        return evictions.sum();
+    }
+
+    public static void writePrometheus(StringBuilder out) {
+        PrometheusText.counter(out, "db_account_cache_hits_total", "getAccount calls served from the account cache.", getHits());
+        PrometheusText.counter(out, "db_account_cache_misses_total", "getAccount calls that had to read the account row.", getMisses());
+        PrometheusText.counter(out, "db_account_cache_evictions_total", "Account headers dropped from the cache to make room.", getEvictions());
+    }
+
+    /**
+     * Immutable copy of an account header. toBankAccount() hands every caller its own BankAccount.
+     */
+    public static final class Entry {
+        private final int accountNumber;
+        private final int userId;
+        private final String email;
+        private final String accountType;
+        private final Money balance;
+        // null = not known
+        private final List<String> authorizedUserEmails;
+        private final long version;
+
+        public Entry(int accountNumber, int userId, String email, String accountType, Money balance,
+                List<String> authorizedUserEmails, long version) {
+            this.accountNumber = accountNumber;
+            this.userId = userId;
+            this.email = email;
+            this.accountType = accountType;
+            this.balance = balance;
+            this.authorizedUserEmails = authorizedUserEmails == null ? null : List.copyOf(authorizedUserEmails);
+            this.version = version;
+        }
+
+        private Entry(Entry entry, List<String> authorizedUserEmails) {
+            this(entry.accountNumber, entry.userId, entry.email, entry.accountType, entry.balance, authorizedUserEmails, entry.version);
+        }
+
+        public static Entry of(BankAccount account, List<String> authorizedUserEmails, long version) {
+            return new Entry(account.getAccountNumber(), account.getUserId(), account.getEmail(), account.getAccountType(),
+                account.getBalance(), authorizedUserEmails, version);
+        }
+
+        public BankAccount toBankAccount() {
+            return new BankAccount(userId, accountType, email, balance, accountNumber, new ArrayList<>());
+        }
+
+        public int getAccountNumber() {
+            return accountNumber;
+        }
+
+        public Money getBalance() {
+            return balance;
+        }
+
+        public List<String> getAuthorizedUserEmails() {
+            return authorizedUserEmails;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // a write-through nobody has loaded the authorized users for yet, see put()
+        private boolean isTombstone() {
+            return authorizedUserEmails == null;
+        }
+    }
+}
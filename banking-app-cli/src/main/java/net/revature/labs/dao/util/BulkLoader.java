@@ -0,0 +1,435 @@
+package net.revature.labs.dao.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Capacity test fixtures: millions of users, accounts and transactions streamed in with COPY.
+ *
+ *   mvn compile exec:java -Dexec.mainClass=net.revature.labs.dao.util.BulkLoader \
+ *       -Dexec.args="users=10000000 transactions=50000000 skew=1.0"
+ * (-Denv=... picks the database like everywhere else). GenerateData in the tests takes the same arguments.
+ *
+ * Rows are generated in chunks on several threads, each chunk is one COPY ... FROM STDIN (csv) on its own
+ * pooled connection, so nothing is ever held in memory beyond a 64k buffer per thread.
+ *
+ * Transactions are spread over accounts with a Zipfian distribution: the account of rank r gets a share
+ * proportional to 1 / r^skew (skew 0 = every account the same). Ranks are scattered over the account
+ * numbers, so the hot accounts don't all sit next to each other in the index.
+ *
+ * Everything comes from SplittableRandom seeded with the seed and the account or user index, so the same
+ * settings always load the same rows, however many threads there are. That is also how balances stay
+ * right: an account's ledger is generated once to get its balance (the account row has to be copied
+ * before its transactions, foreign key) and generated again, identically, when its transactions are copied.
+ * A withdrawal never takes a balance below zero.
+ *
+ * Not atomic: every chunk commits on its own. A run that fails half way leaves what it got through,
+ * reset the database before trying again.
+ */
+public class BulkLoader {
+    // above BankAccount.randomAccountNumber()'s 1000000000-1899999999, bulk rows never collide with the app's
+    static final int ACCOUNT_NUMBER_BASE = 1_900_000_000;
+    private static final int MAX_ACCOUNTS = Integer.MAX_VALUE - ACCOUNT_NUMBER_BASE;
+    private static final int CHUNK_SIZE = 50_000;
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+    // prime and bigger than MAX_ACCOUNTS, so index * this mod accounts is a permutation of the accounts
+    private static final long RANK_SCATTER = 2_654_435_761L;
+    private static final long MAX_DEPOSIT_CENTS = 100_000;
+    private static final long MAX_WITHDRAWAL_CENTS = 50_000;
+    // well inside decimal(10,2)
+    private static final long MAX_BALANCE_CENTS = 100_000_000;
+    private static final String[] FIRST_NAMES = { "Ada", "Alan", "Barbara", "Claude", "Donald", "Edsger", "Frances",
+        "Grace", "John", "Katherine", "Ken", "Leslie", "Linus", "Margaret", "Niklaus", "Radia", "Tony", "Yukihiro" };
+    private static final String[] LAST_NAMES = { "Allen", "Backus", "Dijkstra", "Hamilton", "Hopper", "Johnson",
+        "Kay", "Knuth", "Lamport", "Liskov", "Lovelace", "Perlman", "Ritchie", "Thompson", "Torvalds", "Turing", "Wirth" };
+
+    private int users = 1_000;
+    private int accountsPerUser = 1;
+    private long transactions = 10_000;
+    private double skew = 1.0;
+    private long seed = 42L;
+    private int days = 365;
+    // 0 = one per core, but no more than the pool has connections
+    private int threads = 0;
+
+    // fixed once load() starts
+    private int firstUserId;
+    private long startMicros;
+    private double harmonic;
+
+    /**
+     * key=value pairs: users, accountsPerUser, transactions, skew, seed, days, threads. Anything left out keeps its default.
+     */
+    public static BulkLoader fromArgs(String[] args) {
+        BulkLoader loader = new BulkLoader();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(0, separator)) {
+                case "users": loader.setUsers(Integer.parseInt(value)); break;
+                case "accountsPerUser": loader.setAccountsPerUser(Integer.parseInt(value)); break;
+                case "transactions": loader.setTransactions(Long.parseLong(value)); break;
+                case "skew": loader.setSkew(Double.parseDouble(value)); break;
+                case "seed": loader.setSeed(Long.parseLong(value)); break;
+                case "days": loader.setDays(Integer.parseInt(value)); break;
+                case "threads": loader.setThreads(Integer.parseInt(value)); break;
+                default: throw new IllegalArgumentException("Unknown setting " + arg);
+            }
+        }
+        return loader;
+    }
+
+    public void setUsers(int users) {
+        if (users < 1) {
+            throw new IllegalArgumentException("users must be at least 1");
+        }
+        this.users = users;
+    }
+
+    public void setAccountsPerUser(int accountsPerUser) {
+        if (accountsPerUser < 1) {
+            throw new IllegalArgumentException("accountsPerUser must be at least 1");
+        }
+        this.accountsPerUser = accountsPerUser;
+    }
+
+    public void setTransactions(long transactions) {
+        if (transactions < 0) {
+            throw new IllegalArgumentException("transactions can't be negative");
+        }
+        this.transactions = transactions;
+    }
+
+    public void setSkew(double skew) {
+        if (skew < 0 || Double.isNaN(skew)) {
+            throw new IllegalArgumentException("skew can't be negative");
+        }
+        this.skew = skew;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setDays(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("days must be at least 1");
+        }
+        this.days = days;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    int accountCount() {
+        long accounts = (long) users * accountsPerUser;
+        if (accounts > MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("At most " + MAX_ACCOUNTS + " accounts, got " + accounts);
+        }
+        return (int) accounts;
+    }
+
+    public void load() throws SQLException, IOException, InterruptedException {
+        int accounts = accountCount();
+        prepare(LocalDateTime.now().minusDays(days));
+        try (Connection conn = DBUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM bank_accounts WHERE account_number >= " + ACCOUNT_NUMBER_BASE)) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    throw new IllegalStateException("Bulk accounts are already loaded, reset the database first");
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT coalesce(max(user_id), 0) FROM users")) {
+                rs.next();
+                firstUserId = rs.getInt(1) + 1;
+            }
+        }
+
+        long started = System.nanoTime();
+        inChunks(users, this::copyUsers);
+        report("users", users, started);
+        try (Connection conn = DBUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+            // user_id was given explicitly, move the SERIAL past it for the next registration
+            stmt.execute("SELECT setval(pg_get_serial_sequence('users', 'user_id'), (SELECT max(user_id) FROM users))");
+        }
+
+        started = System.nanoTime();
+        inChunks(accounts, this::copyAccounts);
+        report("accounts", accounts, started);
+
+        started = System.nanoTime();
+        inChunks(accounts, this::copyTransactions);
+        report("transactions (about)", transactions, started);
+
+        try (Connection conn = DBUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE users, bank_accounts, transactions");
+        }
+        DBUtil.getTransactionStore().clear();
+        DBUtil.getAccountCache().clear();
+    }
+
+    // split out of load() so the generators can be tested without a database
+    void prepare(LocalDateTime start) {
+        int accounts = accountCount();
+        startMicros = start.toEpochSecond(ZoneOffset.UTC) * 1_000_000L;
+        double sum = 0;
+        for (int rank = 1; rank <= accounts; rank++) {
+            sum += Math.pow(rank, -skew);
+        }
+        harmonic = sum;
+    }
+
+    private interface Chunk {
+        void copy(int from, int to) throws SQLException, IOException;
+    }
+
+    private void inChunks(int count, Chunk chunk) throws SQLException, IOException, InterruptedException {
+        int workers = threads > 0 ? threads : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), DBUtil.getPoolMaxSize()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                int start = from;
+                int end = Math.min(count, from + CHUNK_SIZE);
+                results.add(pool.submit(() -> {
+                    chunk.copy(start, end);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SQLException) {
+                        throw (SQLException) cause;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IllegalStateException("Bulk load failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void copyUsers(int from, int to) throws SQLException, IOException {
+        copy("COPY users (user_id, name, email, phone, password, isadmin) FROM STDIN WITH (FORMAT csv)", out -> {
+            for (int user = from; user < to; user++) {
+                SplittableRandom random = new SplittableRandom(seed ^ (user * 0x9E3779B97F4A7C15L));
+                out.field(firstUserId + user)
+                    .field(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                    .field(email(user))
+                    // a leading 0 isn't a valid number, can't clash with a real user's phone
+                    .field(String.format("0%09d", user))
+                    // stored as is, same as UserDAOImpl.registerUser. Everyone logs in with "password".
+                    .field("password")
+                    .lastField("f");
+            }
+        });
+    }
+
+    private void copyAccounts(int from, int to) throws SQLException, IOException {
+        copy("COPY bank_accounts (account_number, user_id, email, account_type, balance) FROM STDIN WITH (FORMAT csv)", out -> {
+            for (int account = from; account < to; account++) {
+                int user = account / accountsPerUser;
+                out.field(ACCOUNT_NUMBER_BASE + account)
+                    .field(firstUserId + user)
+                    .field(email(user))
+                    .field(account % 2 == 0 ? "checking" : "savings")
+                    .lastCents(ledger(account, null));
+            }
+        });
+    }
+
+    private void copyTransactions(int from, int to) throws SQLException, IOException {
+        copy("COPY transactions (account_number, transaction_type, amount, transaction_date_time, from_account_number, to_account_number) " +
+                "FROM STDIN WITH (FORMAT csv)", out -> {
+            for (int account = from; account < to; account++) {
+                ledger(account, out);
+            }
+        });
+    }
+
+    private static String email(int user) {
+        return "user" + user + "@bulk.example";
+    }
+
+    // rank 1 is the busiest account
+    int rank(int account) {
+        return (int) ((account * RANK_SCATTER) % accountCount()) + 1;
+    }
+
+    long expectedTransactions(int account) {
+        return (long) (transactions * Math.pow(rank(account), -skew) / harmonic);
+    }
+
+    /**
+     * Generates one account's ledger, oldest first, and writes it to out if there is one.
+     * Same seed and settings = same ledger, every time.
+     * @return the balance after the last transaction, in cents
+     */
+    long ledger(int account, CopyWriter out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed + account * 0xC2B2AE3D27D4EB4FL);
+        double share = transactions * Math.pow(rank(account), -skew) / harmonic;
+        long count = (long) share;
+        // the fractions add up to whole transactions over all accounts, so the total comes out right
+        if (random.nextDouble() < share - count) {
+            count++;
+        }
+        int accountNumber = ACCOUNT_NUMBER_BASE + account;
+        long spanMicros = days * 86_400_000_000L;
+        long balance = 0;
+        for (long i = 0; i < count; i++) {
+            // evenly spread with a bit of jitter, never out of order
+            long micros = startMicros + (long) (spanMicros * ((i + random.nextDouble()) / count));
+            long amount;
+            String type;
+            boolean withdraw = balance > 0 && (random.nextInt(10) < 4 || balance >= MAX_BALANCE_CENTS - MAX_DEPOSIT_CENTS);
+            if (withdraw) {
+                amount = 1 + random.nextLong(Math.min(balance, MAX_WITHDRAWAL_CENTS));
+                balance -= amount;
+                type = "withdraw";
+            } else {
+                amount = 1 + random.nextLong(MAX_DEPOSIT_CENTS);
+                balance += amount;
+                type = "deposit";
+            }
+            if (out != null) {
+                out.field(accountNumber).field(type).cents(amount).timestamp(micros)
+                    .field(accountNumber).lastField(accountNumber);
+            }
+        }
+        return balance;
+    }
+
+    private interface Rows {
+        void write(CopyWriter out) throws IOException;
+    }
+
+    private void copy(String sql, Rows rows) throws SQLException, IOException {
+        try (Connection conn = DBUtil.getConnection()) {
+            // straight through the pool and metrics proxies to the driver's connection
+            CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                CopyWriter out = new CopyWriter(copyIn);
+                rows.write(out);
+                out.flush();
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }
+    }
+
+    /**
+     * CSV rows into a COPY, buffered. Only for values the loader made itself: nothing is quoted or escaped.
+     */
+    static class CopyWriter {
+        private final CopyIn copyIn;
+        private final byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        private int length = 0;
+
+        CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        CopyWriter field(String value) throws IOException {
+            return append(value).separator(',');
+        }
+
+        CopyWriter field(long value) throws IOException {
+            return append(Long.toString(value)).separator(',');
+        }
+
+        CopyWriter cents(long cents) throws IOException {
+            return append(cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100).separator(',');
+        }
+
+        CopyWriter timestamp(long epochMicros) throws IOException {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                (int) Math.floorMod(epochMicros, 1_000_000L) * 1000, ZoneOffset.UTC);
+            return append(time.toString()).separator(',');
+        }
+
+        void lastField(String value) throws IOException {
+            append(value).separator('\n');
+        }
+
+        void lastField(long value) throws IOException {
+            append(Long.toString(value)).separator('\n');
+        }
+
+        void lastCents(long cents) throws IOException {
+            cents(cents);
+            // cents() ended the field with a comma, turn it into the end of the row
+            buffer[length - 1] = '\n';
+        }
+
+        private CopyWriter append(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (length + bytes.length + 1 > buffer.length) {
+                flush();
+            }
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+            return this;
+        }
+
+        private CopyWriter separator(char separator) {
+            // append() left room for it
+            buffer[length++] = (byte) separator;
+            return this;
+        }
+
+        void flush() throws IOException {
+            if (length > 0) {
+                try {
+                    copyIn.writeToCopy(buffer, 0, length);
+                } catch (SQLException e) {
+                    throw new IOException("COPY failed", e);
+                }
+                length = 0;
+            }
+        }
+    }
+
+    private static void report(String what, long rows, long startedNanos) {
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        System.out.printf("Loaded %,d %s in %.1fs (%,.0f rows/s)%n", rows, what, seconds, rows / seconds);
+    }
+
+    public static void main(String[] args) throws SQLException, IOException, InterruptedException {
+        fromArgs(args).load();
+    }
+}
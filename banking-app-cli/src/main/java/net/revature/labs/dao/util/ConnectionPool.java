@@ -0,0 +1,336 @@
+package net.revature.labs.dao.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ *
+ * Borrow/return contract: every caller gets its own connection from {@link #borrow()} and
+ * MUST close it (try-with-resources). Closing the handed out connection does not close the
+ * physical connection, it just hands it back to the pool for the next request.
+ *
+ * Each physical connection can keep its own cache of prepared statements (see StatementCache),
+ * so prepareStatement(sql) on a borrowed connection reuses the statement a previous borrower closed.
+ *
+ * Borrowing is meant to be cheap: an idle connection is only checked with isValid() (a round trip) if
+ * it has sat unused for longer than validateAfterIdleMillis, and the stack trace of where a connection
+ * was borrowed, for leak reports, is only captured when captureBorrowSite is on.
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long leakDetectionMillis;
+    private final int validationTimeoutSeconds;
+    // a connection returned more recently than this goes back out without an isValid() round trip
+    private final long validateAfterIdleMillis;
+    // a stack trace per borrow is expensive, so only when debugging a leak
+    private final boolean captureBorrowSite;
+    // prepared statements kept per physical connection, 0 turns the cache off
+    private final int statementCacheSize;
+
+    // idle physical connections. Used as a stack (LIFO) so the most recently used, warm connection goes out first.
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    // one permit per connection we are allowed to hand out. This is what bounds the pool.
+    private final Semaphore permits;
+    // connections currently out on loan -> where and when they were borrowed (for leak detection)
+    private final Map<Connection, Lease> borrowed = new ConcurrentHashMap<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    // bumped by clearStatementCaches(), each cache drops its statements the next time it is borrowed
+    private final AtomicInteger statementCacheGeneration = new AtomicInteger();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean shutdown = false;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long borrowTimeoutMillis, long leakDetectionMillis) throws SQLException {
+        this(url, user, password, minSize, maxSize, borrowTimeoutMillis, leakDetectionMillis, 0);
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long borrowTimeoutMillis, long leakDetectionMillis, int statementCacheSize) throws SQLException {
+        this(url, user, password, minSize, maxSize, borrowTimeoutMillis, leakDetectionMillis, statementCacheSize, 1000, false);
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long borrowTimeoutMillis, long leakDetectionMillis, int statementCacheSize,
+            long validateAfterIdleMillis, boolean captureBorrowSite) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size. min: " + minSize + " max: " + maxSize);
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakDetectionMillis = leakDetectionMillis;
+        this.validationTimeoutSeconds = 2;
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+        this.captureBorrowSite = captureBorrowSite;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        // warm up the pool with the minimum number of connections. That's all minSize is for: the pool
+        // doesn't top itself back up to it, a stale connection is simply replaced when it's next needed
+        for (int i = 0; i < minSize; i++) {
+            idle.offerFirst(new IdleConnection(openPhysicalConnection(), System.currentTimeMillis()));
+        }
+
+        if (leakDetectionMillis > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leakDetector.scheduleAtFixedRate(this::reportLeaks, leakDetectionMillis, leakDetectionMillis, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    /**
+     * Borrow a connection. Blocks up to the borrow timeout if all connections are in use.
+     * The returned connection goes back to the pool when it is closed.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a database connection. Pool size: " + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            Connection physical = takeValidConnection();
+            borrowed.put(physical, new Lease(System.currentTimeMillis(), Thread.currentThread().getName(),
+                captureBorrowSite ? new Exception("Connection borrowed here") : null));
+            return wrap(physical, statementCacheFor(physical));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeValidConnection() throws SQLException {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            // just handed back, it worked a moment ago. The next statement will fail if it doesn't now.
+            if (System.currentTimeMillis() - candidate.idleSince <= validateAfterIdleMillis || isValid(candidate.physical)) {
+                return candidate.physical;
+            }
+            // stale connection (db restarted, network dropped...). Throw it away and try the next one.
+            closeQuietly(candidate.physical);
+        }
+        return openPhysicalConnection();
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    // called when the borrower closes its connection
+    private void giveBack(Connection physical) {
+        if (borrowed.remove(physical) == null) {
+            return; // already returned
+        }
+        try {
+            if (shutdown || physical.isClosed()) {
+                closeQuietly(physical);
+                return;
+            }
+            // don't leak an open transaction or a changed autocommit mode into the next borrower
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idle.offerFirst(new IdleConnection(physical, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private StatementCache statementCacheFor(Connection physical) {
+        if (statementCacheSize == 0) {
+            return null;
+        }
+        int generation = statementCacheGeneration.get();
+        StatementCache cache = statementCaches.computeIfAbsent(physical,
+                connection -> new StatementCache(connection, statementCacheSize, generation));
+        cache.clearIfStale(generation);
+        return cache;
+    }
+
+    /**
+     * Drop every cached prepared statement, e.g. after tables were dropped and recreated.
+     * Caches on connections that are out on loan are cleared when they are next borrowed.
+     */
+    public void clearStatementCaches() {
+        statementCacheGeneration.incrementAndGet();
+    }
+
+    private Connection wrap(Connection physical, StatementCache statementCache) {
+        InvocationHandler handler = new PooledConnectionHandler(physical, statementCache);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    private void reportLeaks() {
+        long now = System.currentTimeMillis();
+        borrowed.forEach((connection, lease) -> {
+            long heldFor = now - lease.borrowedAt;
+            if (heldFor > leakDetectionMillis && !lease.reported) {
+                lease.reported = true;
+                System.err.println("Possible connection leak: connection held for " + heldFor + "ms and not closed. Borrowed on thread " + lease.threadName);
+                if (lease.borrowSite != null) {
+                    lease.borrowSite.printStackTrace();
+                } else {
+                    System.err.println("Set <env>.db.pool.captureBorrowSite=true to see where it was borrowed.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Close all idle connections and refuse new borrows. Connections still out on loan are
+     * closed when they are returned, so in-flight requests are not cut off.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        IdleConnection idleConnection;
+        while ((idleConnection = idle.pollFirst()) != null) {
+            closeQuietly(idleConnection.physical);
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private void closeQuietly(Connection physical) {
+        // closing the connection closes its statements too
+        statementCaches.remove(physical);
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Lease {
+        private final long borrowedAt;
+        private final String threadName;
+        // null unless captureBorrowSite
+        private final Exception borrowSite;
+        private volatile boolean reported = false;
+
+        Lease(long borrowedAt, String threadName, Exception borrowSite) {
+            this.borrowedAt = borrowedAt;
+            this.threadName = threadName;
+            this.borrowSite = borrowSite;
+        }
+    }
+
+    private static class IdleConnection {
+        private final Connection physical;
+        private final long idleSince;
+
+        IdleConnection(Connection physical, long idleSince) {
+            this.physical = physical;
+            this.idleSince = idleSince;
+        }
+    }
+
+    // Intercepts close() so the physical connection goes back to the pool instead of being closed.
+    // Everything else is passed straight through to the physical connection.
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile boolean returned = false;
+
+        PooledConnectionHandler(Connection physical, StatementCache statementCache) {
+            this.physical = physical;
+            this.statementCache = statementCache;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    // only plain prepareStatement(sql) is cached, the variants with generated keys etc. are not
+                    if (statementCache != null && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                        return statementCache.prepare((String) args[0]);
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -3,11 +3,10 @@ package net.revature.labs.dao.util;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,12 +14,16 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.github.javafaker.Faker;
 
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 
@@ -31,7 +34,42 @@ public class DBUtil {
     private static String dbPassword;
     private static String env = System.getProperty("env");
     private static String propFile;
-    private static Connection connection = getConnection();
+    // pool settings. Can be overridden per env in application-<env>.properties e.g. dev.db.pool.max=20
+    // dev.db.pool.validateAfterIdleMs: idle connections are only checked with isValid() after this long unused
+    // dev.db.pool.captureBorrowSite=true records where each connection was borrowed, for leak reports (slow, debug only)
+    // (same for the slow query log threshold: dev.db.slowQueryMs=100)
+    // and for prepared statements: dev.db.statementCacheSize=0 turns the per connection cache off,
+    // dev.db.prepareThreshold is how many executions before pgjdbc makes a statement a named server side one.
+    // dev.db.transactionStore.maxTransactions > 0 keeps account histories in memory, see TransactionStore.
+    // dev.db.accountCache.size is how many account headers getAccount keeps (0 = off), see AccountCache
+    // dev.db.groupCommit.maxBatch > 0 batches concurrent deposits/withdrawals into one commit, with
+    // dev.db.groupCommit.maxWaitMicros to hold a batch open for stragglers (0 = don't), see GroupCommitLedger
+    private static int poolMinSize = 2;
+    private static int poolMaxSize = 10;
+    private static long poolBorrowTimeoutMillis = 30000;
+    private static long poolLeakDetectionMillis = 60000;
+    private static long poolValidateAfterIdleMillis = 1000;
+    private static boolean poolCaptureBorrowSite = false;
+    private static int statementCacheSize = 64;
+    private static int prepareThreshold = 3;
+    private static volatile TransactionStore transactionStore = new TransactionStore(0);
+    private static int accountCacheSize = 10000;
+    private static volatile AccountCache accountCache = new AccountCache(accountCacheSize);
+    private static volatile GroupCommitLedger groupCommitLedger = new GroupCommitLedger(0, 0);
+    private static volatile ConnectionPool pool;
+    // ReentrantLock rather than synchronized: creating the pool opens connections, and blocking
+    // inside a synchronized block pins a virtual thread to its carrier
+    private static final ReentrantLock poolLock = new ReentrantLock();
+    // versioned schema scripts under src/main/resources/db/migration, applied in this order.
+    // Never edit a script that has shipped, add a new one to the end instead.
+    private static final String MIGRATION_DIR = "db/migration/";
+    private static final String[] MIGRATIONS = {
+        "V1__lookup_indexes.sql",
+        "V2__transaction_history_keyset.sql",
+        "V3__engine_checkpoints.sql",
+    };
+    // arbitrary key for pg_advisory_xact_lock so only one node migrates at a time
+    private static final long MIGRATION_LOCK_KEY = 4201001L;
     static {
         init();
     }
@@ -64,38 +102,134 @@ public class DBUtil {
             DBUtil.dbUrl = DBUtil.properties.getProperty(DBUtil.env + ".db.url");
             DBUtil.dbUser = DBUtil.properties.getProperty(DBUtil.env + ".db.user");
             DBUtil.dbPassword = DBUtil.properties.getProperty(DBUtil.env + ".db.password");
-            System.out.println("dbUrl: " + dbUrl);
-            if (connection == null) {
-               Class.forName("org.postgresql.Driver");
-                connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+            DBUtil.poolMinSize = Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.min", String.valueOf(poolMinSize)));
+            DBUtil.poolMaxSize = Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.max", String.valueOf(poolMaxSize)));
+            DBUtil.poolBorrowTimeoutMillis = Long.parseLong(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.borrowTimeoutMs", String.valueOf(poolBorrowTimeoutMillis)));
+            DBUtil.poolLeakDetectionMillis = Long.parseLong(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.leakDetectionMs", String.valueOf(poolLeakDetectionMillis)));
+            DBUtil.poolValidateAfterIdleMillis = Long.parseLong(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.validateAfterIdleMs", String.valueOf(poolValidateAfterIdleMillis)));
+            DBUtil.poolCaptureBorrowSite = Boolean.parseBoolean(DBUtil.properties.getProperty(DBUtil.env + ".db.pool.captureBorrowSite", String.valueOf(poolCaptureBorrowSite)));
+            DBUtil.statementCacheSize = Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.statementCacheSize", String.valueOf(statementCacheSize)));
+            DBUtil.prepareThreshold = Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.prepareThreshold", String.valueOf(prepareThreshold)));
+            DBUtil.transactionStore = new TransactionStore(Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.transactionStore.maxTransactions", "0")));
+            DBUtil.accountCacheSize = Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.accountCache.size", String.valueOf(accountCacheSize)));
+            DBUtil.accountCache = new AccountCache(accountCacheSize);
+            DBUtil.groupCommitLedger = new GroupCommitLedger(
+                Integer.parseInt(DBUtil.properties.getProperty(DBUtil.env + ".db.groupCommit.maxBatch", "0")),
+                Long.parseLong(DBUtil.properties.getProperty(DBUtil.env + ".db.groupCommit.maxWaitMicros", "0")));
+            String slowQueryMs = DBUtil.properties.getProperty(DBUtil.env + ".db.slowQueryMs");
+            if (slowQueryMs != null) {
+                QueryMetrics.setSlowQueryThresholdMillis(Long.parseLong(slowQueryMs));
             }
+            System.out.println("dbUrl: " + dbUrl);
+            Class.forName("org.postgresql.Driver");
         } catch (IOException e){
             throw new RuntimeException("PostgreSQL Driver not found", e);
         }
     }
 
-    public static Connection getConnection() {
+    private static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null && !current.isShutdown()) {
+            return current;  // every borrow goes through here, so no lock on the common path
+        }
+        poolLock.lock();
         try {
-            if (connection == null || connection.isClosed()) {
-                init();
-                return connection;
+            if (pool == null || pool.isShutdown()) {
+                pool = new ConnectionPool(withPrepareThreshold(dbUrl), dbUser, dbPassword, poolMinSize, poolMaxSize,
+                        poolBorrowTimeoutMillis, poolLeakDetectionMillis, statementCacheSize,
+                        poolValidateAfterIdleMillis, poolCaptureBorrowSite);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return pool;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    // a prepareThreshold already in the url wins
+    private static String withPrepareThreshold(String url) {
+        if (url == null || url.contains("prepareThreshold=")) {
+            return url;
         }
-        return connection;
+        return url + (url.contains("?") ? "&" : "?") + "prepareThreshold=" + prepareThreshold;
     }
 
+    /**
+     * Change how many prepared statements each pooled connection keeps (0 = no cache).
+     * Applies to the next pool, call closeConnection() to start one.
+     */
+    public static void setStatementCacheSize(int size) {
+        statementCacheSize = size;
+    }
+
+    /**
+     * Replace the in-memory transaction store with an empty one holding up to maxTransactions (0 = off).
+     */
+    public static void setTransactionStoreCapacity(int maxTransactions) {
+        transactionStore = new TransactionStore(maxTransactions);
+    }
+
+    public static TransactionStore getTransactionStore() {
+        return transactionStore;
+    }
+
+    /**
+     * Replace the account cache with an empty one holding up to maxEntries account headers (0 = off).
+     */
+    public static void setAccountCacheSize(int maxEntries) {
+        accountCache = new AccountCache(maxEntries);
+    }
+
+    public static AccountCache getAccountCache() {
+        return accountCache;
+    }
+
+    /**
+     * Switch group commit on (maxBatch > 0) or off (0). Postings already queued on the old ledger are
+     * committed before this returns.
+     */
+    public static void setGroupCommit(int maxBatch, long maxWaitMicros) {
+        GroupCommitLedger previous = groupCommitLedger;
+        groupCommitLedger = new GroupCommitLedger(maxBatch, maxWaitMicros);
+        previous.shutdown();
+    }
+
+    public static GroupCommitLedger getGroupCommitLedger() {
+        return groupCommitLedger;
+    }
+
+    /**
+     * Borrow a connection from the pool. Each caller gets its own connection and must close it
+     * when done (use try-with-resources). Closing it returns it to the pool.
+     * Statements created on it are timed and counted in QueryMetrics.
+     */
+    public static Connection getConnection() throws SQLException {
+        return InstrumentedConnection.wrap(getPool().borrow());
+    }
+
+    /**
+     * Shut down the connection pool. Idle connections are closed right away,
+     * connections that are still in use are closed when they are returned.
+     */
     public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        poolLock.lock();
+        try {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
             }
+        } finally {
+            poolLock.unlock();
         }
     }
 
+    public static int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public static long getPoolBorrowTimeoutMillis() {
+        return poolBorrowTimeoutMillis;
+    }
+
     // Getter methods for dbUrl, dbUser, dbPassword
     public static String getDbUrl() {
         return dbUrl;
@@ -112,10 +246,79 @@ public class DBUtil {
     //drop and recreate database tables
     public static void resetTestDatabase() throws SQLException, IOException {
         //execute SQL script to drop database tables
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
             String sql = new String(Files.readAllBytes(Paths.get("src/main/resources/TestDbSetup.sql")));
             stmt.execute(sql);
         }
+        // the tables the cached statements were prepared against are gone
+        getPool().clearStatementCaches();
+        transactionStore.clear();
+        accountCache.clear();
+        runMigrations();
+    }
+
+    /**
+     * Apply any migration scripts that haven't been applied to this database yet.
+     * Applied versions are recorded in schema_migrations, so running this on every startup is safe.
+     * Everything runs in one transaction: either all pending scripts are applied or none are.
+     */
+    public static void runMigrations() throws SQLException, IOException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // held until commit, another node starting at the same time waits here
+                stmt.execute("SELECT pg_advisory_xact_lock(" + MIGRATION_LOCK_KEY + ")");
+                stmt.execute("create table if not exists schema_migrations (" +
+                        "version int primary key, " +
+                        "script varchar(255) not null, " +
+                        "applied_at timestamp not null default now())");
+
+                Set<Integer> applied = new HashSet<>();
+                try (ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations")) {
+                    while (rs.next()) {
+                        applied.add(rs.getInt("version"));
+                    }
+                }
+
+                for (String script : MIGRATIONS) {
+                    int version = migrationVersion(script);
+                    if (applied.contains(version)) {
+                        continue;
+                    }
+                    stmt.execute(readMigration(script));
+                    try (PreparedStatement record = conn.prepareStatement(
+                            "INSERT INTO schema_migrations (version, script) VALUES (?, ?)")) {
+                        record.setInt(1, version);
+                        record.setString(2, script);
+                        record.executeUpdate();
+                    }
+                    System.out.println("Applied migration " + script);
+                }
+                conn.commit();
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // V12__some_name.sql -> 12
+    static int migrationVersion(String script) {
+        int separator = script.indexOf("__");
+        if (!script.startsWith("V") || separator < 2) {
+            throw new IllegalArgumentException("Migration script must be named V<version>__<name>.sql: " + script);
+        }
+        return Integer.parseInt(script.substring(1, separator));
+    }
+
+    private static String readMigration(String script) throws IOException {
+        try (InputStream input = DBUtil.class.getClassLoader().getResourceAsStream(MIGRATION_DIR + script)) {
+            if (input == null) {
+                throw new FileNotFoundException("Migration not found on classpath: " + MIGRATION_DIR + script);
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
     }
 
     public static List<User> insertAndReturnUsers(List<User> usersToInsert) throws SQLException {
@@ -188,10 +391,11 @@ public class DBUtil {
 
     public static void insertBankAccount(BankAccount account) {
         String insertSQL = "INSERT INTO bank_accounts (user_id, account_type, balance) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
             stmt.setInt(1, account.getUserId());
             stmt.setString(2, account.getAccountType());
-            stmt.setBigDecimal(3, account.getBalance());
+            Money.bind(stmt, 3, account.getBalance());
             int rowCount = stmt.executeUpdate();
             if (rowCount == 0) {
                 throw new SQLException("Insert failed, no rows affected.");
@@ -204,18 +408,20 @@ public class DBUtil {
 
     public static void insertTransaction(Transaction tx) {
         String insertSQL = "INSERT INTO transactions (account_number, transaction_type, amount, transaction_date_time, from_account_number, to_account_number) VALUES (?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = getConnection().prepareStatement(insertSQL)) {
-            stmt.setInt(1, Integer.valueOf(tx.getAccountNumber()));
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
+            stmt.setInt(1, tx.getAccountNumber());
             stmt.setString(2, tx.getTransactionType());
-            stmt.setBigDecimal(3, tx.getAmount());
+            Money.bind(stmt, 3, tx.getAmount());
             stmt.setTimestamp(4, tx.getTransactionDateTime());
-            stmt.setInt(5, Integer.valueOf(tx.getFromAccountNumber()));
-            stmt.setInt(6, Integer.valueOf(tx.getToAccountNumber()));
+            stmt.setInt(5, tx.getFromAccountNumber());
+            stmt.setInt(6, tx.getToAccountNumber());
             int rowCount = stmt.executeUpdate();
             if (rowCount == 0) {
                 throw new SQLException("Insert failed, no rows affected.");
             }
             System.out.println(rowCount + " row(s) inserted");
+            transactionStore.invalidate(tx.getAccountNumber());
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -262,66 +468,34 @@ public class DBUtil {
         //fetch all users
         //use their id to generate bank accounts
         //use bank account number to generate transactions
-        
-        try {
-             Connection conn = DBUtil.getConnection();
-            if (conn == null || conn.isClosed()) {
-                throw new SQLException("Unable to establish a valid connection.");
-            }
+        // the pooled connection is returned (not closed) at the end of the try block
+        try (Connection conn = DBUtil.getConnection()) {
             conn.setAutoCommit(false); // Start transaction
-
-            // selct only 10 users
-            String sql = "SELECT * FROM users LIMIT 10";
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    int userId = rs.getInt("user_id");
-                    // Generate bank accounts
-                    List<BankAccount> bankAccounts = generateBankAccounts(5, userId);
-                    // Insert bank accounts
-                    insertBankAccounts(bankAccounts);
-                    // Generate transactions
-                    List<Transaction> transactions = generateTransactions(3, bankAccounts);
-                    // Insert transactions
-                    insertTransactions(transactions);
-                }
-    // Before committing, check if the connection is still open
-    if (conn != null && !conn.isClosed()) {
-        conn.commit(); // Commit transaction
-    }
-    } catch (SQLException e) {
-        if (conn != null) {
             try {
-                // Before rolling back, also check if the connection is still open
-                if (!conn.isClosed()) {
-                    conn.rollback(); // Rollback transaction in case of any failure
+                // selct only 10 users
+                String sql = "SELECT * FROM users LIMIT 10";
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        int userId = rs.getInt("user_id");
+                        // Generate bank accounts
+                        List<BankAccount> bankAccounts = generateBankAccounts(5, userId);
+                        // Insert bank accounts
+                        insertBankAccounts(bankAccounts);
+                        // Generate transactions
+                        List<Transaction> transactions = generateTransactions(3, bankAccounts);
+                        // Insert transactions
+                        insertTransactions(transactions);
+                    }
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace(); // Log rollback exception
-            }
-        }
-        e.printStackTrace(); // Log original exception
-    } finally {
-        try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close(); // Ensure connection is closed
+                conn.commit(); // Commit transaction
+            } catch (SQLException e) {
+                conn.rollback(); // Rollback transaction in case of any failure
+                e.printStackTrace(); // Log original exception
             }
-        } catch (SQLException e) {
-            e.printStackTrace(); // Log exception during cleanup
-        } finally {
-            DBUtil.closeConnection(); // Close connection
-        }
-    }
-    }finally {
-    try {
-        if (connection != null && !connection.isClosed()) {
-            connection.close(); // Close connection
         }
-    } catch (SQLException e) {
-        e.printStackTrace(); // Log exception during cleanup
-    }finally {
-        DBUtil.closeConnection(); }}// Close connection
     }
+
     private static void insertTransactions(List<Transaction> transactions) {
         //batch insert
         //turn off auto commit
@@ -338,12 +512,12 @@ public class DBUtil {
             String insertSQL = "INSERT INTO transactions (account_number, transaction_type, amount, transaction_date_time, from_account_number, to_account_number) VALUES (?, ?, ?, ?, ?, ?)";
             try (PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
                 for (Transaction tx : transactions) {
-                    stmt.setInt(1, Integer.valueOf(tx.getAccountNumber()));
+                    stmt.setInt(1, tx.getAccountNumber());
                     stmt.setString(2, tx.getTransactionType());
-                    stmt.setBigDecimal(3, tx.getAmount());
+                    Money.bind(stmt, 3, tx.getAmount());
                     stmt.setTimestamp(4, tx.getTransactionDateTime());
-                    stmt.setInt(5, Integer.valueOf(tx.getFromAccountNumber()));
-                    stmt.setInt(6, Integer.valueOf(tx.getToAccountNumber()));
+                    stmt.setInt(5, tx.getFromAccountNumber());
+                    stmt.setInt(6, tx.getToAccountNumber());
                     stmt.addBatch();
                 }
                 int[] rowCount = stmt.executeBatch();
@@ -355,6 +529,9 @@ public class DBUtil {
             }
             
             conn.commit(); // Commit transaction
+            for (Transaction tx : transactions) {
+                transactionStore.invalidate(tx.getAccountNumber());
+            }
         } catch (SQLException e) {
             if (conn != null) {
                 try {
@@ -378,22 +555,25 @@ public class DBUtil {
 
     private static List<Transaction> generateTransactions(int i, List<BankAccount> bankAccounts) {
         List<Transaction> listOfTransactions = new ArrayList<>();
-        List<Transaction> listOfDepostiTxes = generateDepositTransactionsForAccount(i, dbPassword);
-        listOfTransactions.addAll(listOfDepostiTxes);
-        List<Transaction> listOfWithdrawalTransactions = generateWithdrawalTransactionsForAccount(i, dbPassword);
-        listOfTransactions.addAll(listOfWithdrawalTransactions);
+        // used to pass dbPassword as the account number, which only compiled because both were Strings
+        for (BankAccount bankAccount : bankAccounts) {
+            List<Transaction> listOfDepostiTxes = generateDepositTransactionsForAccount(i, bankAccount.getAccountNumber());
+            listOfTransactions.addAll(listOfDepostiTxes);
+            List<Transaction> listOfWithdrawalTransactions = generateWithdrawalTransactionsForAccount(i, bankAccount.getAccountNumber());
+            listOfTransactions.addAll(listOfWithdrawalTransactions);
+        }
         return listOfTransactions;
     }
 
-    private static List<Transaction> generateWithdrawalTransactionsForAccount(int i, String accountNumber) {
+    private static List<Transaction> generateWithdrawalTransactionsForAccount(int i, int accountNumber) {
         //generate i number of debit transactions
         List<Transaction> iTxes = new ArrayList<>();
             for(int j = 0; j < i; j++) {
                 Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
-                BigDecimal amount = new BigDecimal(Math.random() * 1000);
+                Money amount = Money.ofCents((long) (Math.random() * 100000));
                 Faker faker = new Faker();
-                String fromAccountNumber = accountNumber;
-                String toAccountNumber = faker.number().digits(7);
+                int fromAccountNumber = accountNumber;
+                int toAccountNumber = faker.number().numberBetween(1000000, 10000000);
                 String transactionType = "withdrawal";
                 Transaction tx = new Transaction(accountNumber, transactionType, amount, timestamp, fromAccountNumber, toAccountNumber);
                 iTxes.add(tx);
@@ -401,15 +581,15 @@ public class DBUtil {
         return iTxes;
     }
 
-    private static List<Transaction> generateDepositTransactionsForAccount(int i, String accountNumber) {
+    private static List<Transaction> generateDepositTransactionsForAccount(int i, int accountNumber) {
         //generate i number of debit transactions
         List<Transaction> iTxes = new ArrayList<>();
             for(int j = 0; j < i; j++) {
                 Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
-                BigDecimal amount = new BigDecimal(Math.random() * 1000);
+                Money amount = Money.ofCents((long) (Math.random() * 100000));
                 Faker faker = new Faker();
-                String fromAccountNumber = faker.number().digits(7);
-                String toAccountNumber = accountNumber;
+                int fromAccountNumber = faker.number().numberBetween(1000000, 10000000);
+                int toAccountNumber = accountNumber;
                 String transactionType = "deposit";
                 Transaction tx = new Transaction(accountNumber, transactionType, amount, timestamp, fromAccountNumber, toAccountNumber);
                 iTxes.add(tx);
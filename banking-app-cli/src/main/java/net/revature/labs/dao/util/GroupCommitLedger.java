@@ -0,0 +1,393 @@
+package net.revature.labs.dao.util;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+
+/**
+ * Group commit for deposits and withdrawals. Callers queue their posting and wait; one writer thread takes
+ * whatever has queued up (up to maxBatch, waiting at most maxWaitMicros for more) and commits all of it in
+ * one database transaction: one locking SELECT, one UPDATE for every balance, one INSERT for every
+ * transaction row. N postings cost one commit (one WAL flush) instead of N.
+ *
+ * Same guarantees as a posting on its own: a caller only gets its result after the commit that contains
+ * its posting, and each posting is accepted or rejected by itself. Postings are applied in the order they
+ * were queued against the locked balances, so two withdrawals in the same batch can't both spend the same
+ * money, and one rejected for insufficient funds doesn't affect the rest. If the batch fails as a whole
+ * (e.g. one amount overflows the column) every posting in it is retried on its own, so only the bad one fails.
+ *
+ * maxBatch 0 = off, BankAccountDAO posts each one in its own statement as before.
+ * maxWaitMicros 0 = never wait: whatever queued while the previous batch was committing is the next batch,
+ * which costs an idle system nothing and batches more the busier it gets.
+ */
+public class GroupCommitLedger {
+    private static final LongAdder batches = new LongAdder();
+    private static final LongAdder postings = new LongAdder();
+    private static final int MAX_RETRIES = 3;
+
+    // same order as BankAccountDAO.transfer locks its two rows, so the two can't deadlock each other
+    private static final String LOCK_SQL =
+        "SELECT b.account_number, b.user_id, b.email, b.account_type, b.balance, " +
+        "       (SELECT array_agg(a.authorized_user_email) FROM authorized_users a WHERE a.account_number = b.account_number) AS authorized_user_emails " +
+        "FROM bank_accounts b WHERE b.account_number = ANY(?) ORDER BY b.account_number FOR UPDATE";
+    // arrays instead of a VALUES list: the SQL is the same for every batch size, so it stays one cached statement
+    private static final String UPDATE_SQL =
+        "UPDATE bank_accounts b SET balance = v.balance::numeric " +
+        "FROM unnest(?::int[], ?::text[]) AS v(account_number, balance) WHERE b.account_number = v.account_number";
+    private static final String INSERT_SQL =
+        "INSERT INTO transactions (account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number) " +
+        "SELECT v.account_number, v.amount::numeric, v.transaction_type, v.transaction_date_time::timestamp, v.account_number, v.account_number " +
+        "FROM unnest(?::int[], ?::text[], ?::text[], ?::text[]) AS v(account_number, amount, transaction_type, transaction_date_time) " +
+        "RETURNING account_number, transaction_id";
+
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Posting> queue;
+    // read = queueing a posting, write = shutting down. Nothing is queued after the writer has been told to stop.
+    private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public GroupCommitLedger(int maxBatch, long maxWaitMicros) {
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        // full queue = callers wait in post(), the database is the bottleneck anyway
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, maxBatch) * 64);
+    }
+
+    public boolean isEnabled() {
+        return maxBatch > 0;
+    }
+
+    /**
+     * Queues the posting and waits until the batch it went into has committed.
+     * @param amount what the transaction row records, positive. A "withdraw" takes it off the balance,
+     *     anything else adds it.
+     * @return the account as of right after this posting (its balance, authorized users, no transactions)
+     * @throws IllegalArgumentException "Account not found", "Insufficient funds" or a non-positive amount,
+     *     nothing was posted
+     */
+    public BankAccount post(int accountNumber, Money amount, String transactionType) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        Posting posting = new Posting(accountNumber, amount, transactionType);
+        shutdownLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Group commit ledger is shut down");
+            }
+            // queued first: a writer that is on its way out sees it and hands over, see run()
+            queue.put(posting);
+            startWriter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted before the posting was queued, nothing was posted", e);
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        try {
+            // not interruptible on purpose: once queued it may commit, the caller has to find out whether it did
+            return posting.result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Posting failed", cause);
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new Thread(this::run, "ledger-group-commit");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Stops taking postings, commits the ones already queued and waits for the writer to finish.
+     */
+    public void shutdown() {
+        shutdownLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        while (true) {
+            Thread current;
+            synchronized (this) {
+                current = writer;
+            }
+            if (current == null) {
+                return;
+            }
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            writeBatches();
+        } finally {
+            // if it died early (interrupted) the next post() starts another writer. One that queued before
+            // writer was cleared found it still set, so pick up whatever is left here.
+            synchronized (this) {
+                writer = null;
+            }
+            if (!queue.isEmpty()) {
+                startWriter();
+            }
+        }
+    }
+
+    private void writeBatches() {
+        List<Posting> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                // wakes up now and then to notice shutdown()
+                Posting first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Posting next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                commitOrSplit(batch);
+            } catch (InterruptedException e) {
+                // nobody interrupts the writer, but if someone does, don't leave callers hanging
+                for (Posting posting : batch) {
+                    posting.result.completeExceptionally(e);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | Error e) {
+                // a bug in here must not kill the writer and hang every caller after it
+                e.printStackTrace();
+                for (Posting posting : batch) {
+                    posting.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commitOrSplit(List<Posting> batch) {
+        try {
+            commitWithRetries(batch);
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            // one bad posting shouldn't fail everybody else's, find it by committing them one at a time
+            for (Posting posting : batch) {
+                try {
+                    commitWithRetries(List.of(posting));
+                } catch (SQLException single) {
+                    posting.result.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void commitWithRetries(List<Posting> batch) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                commit(batch);
+                return;
+            } catch (SQLException e) {
+                // class 40: deadlock or serialization failure, nothing was written, just run it again
+                boolean retryable = e.getSQLState() != null && e.getSQLState().startsWith("40");
+                if (!retryable || attempt == MAX_RETRIES) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void commit(List<Posting> batch) throws SQLException {
+        AccountCache accountCache = DBUtil.getAccountCache();
+        long stamp = accountCache.stamp();
+        // sorted: the lock order, and the order the UPDATE arrays are built in
+        Map<Integer, BankAccount> accounts = new TreeMap<>();
+        Map<Integer, List<String>> authorizedUsers = new HashMap<>();
+        Map<Integer, Long> balances = new TreeMap<>();
+        Map<Integer, Long> versions = new HashMap<>();
+        List<Posting> accepted = new ArrayList<>(batch.size());
+        List<Posting> rejected = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(LOCK_SQL)) {
+                    stmt.setArray(1, conn.createArrayOf("integer", batch.stream().map(p -> p.accountNumber).distinct().toArray()));
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        BankAccount account = BankAccount.fromRow(rs);
+                        Array emails = rs.getArray("authorized_user_emails");
+                        accounts.put(account.getAccountNumber(), account);
+                        authorizedUsers.put(account.getAccountNumber(), emails == null ? List.of() : List.of((String[]) emails.getArray()));
+                    }
+                }
+
+                // the balances are locked, apply the postings in queue order same as one at a time would
+                for (Posting posting : batch) {
+                    BankAccount account = accounts.get(posting.accountNumber);
+                    if (account == null) {
+                        posting.rejection = "Account not found";
+                        rejected.add(posting);
+                        continue;
+                    }
+                    long balance = balances.getOrDefault(posting.accountNumber, account.getBalance().getCents());
+                    long after = balance + posting.signedAmount.getCents();
+                    if (after < 0) {
+                        posting.rejection = "Insufficient funds";
+                        rejected.add(posting);
+                        continue;
+                    }
+                    balances.put(posting.accountNumber, after);
+                    posting.balanceAfter = after;
+                    accepted.add(posting);
+                }
+
+                if (!accepted.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                        Integer[] accountNumbers = new Integer[balances.size()];
+                        String[] newBalances = new String[balances.size()];
+                        int i = 0;
+                        for (Map.Entry<Integer, Long> balance : balances.entrySet()) {
+                            accountNumbers[i] = balance.getKey();
+                            newBalances[i] = Money.ofCents(balance.getValue()).toString();
+                            i++;
+                        }
+                        stmt.setArray(1, conn.createArrayOf("integer", accountNumbers));
+                        stmt.setArray(2, conn.createArrayOf("text", newBalances));
+                        stmt.executeUpdate();
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                        int size = accepted.size();
+                        Integer[] accountNumbers = new Integer[size];
+                        String[] amounts = new String[size];
+                        String[] types = new String[size];
+                        String[] times = new String[size];
+                        for (int i = 0; i < size; i++) {
+                            Posting posting = accepted.get(i);
+                            accountNumbers[i] = posting.accountNumber;
+                            amounts[i] = posting.amount.toString();
+                            types[i] = posting.transactionType;
+                            times[i] = posting.queuedAt.toString();
+                        }
+                        stmt.setArray(1, conn.createArrayOf("integer", accountNumbers));
+                        stmt.setArray(2, conn.createArrayOf("text", amounts));
+                        stmt.setArray(3, conn.createArrayOf("text", types));
+                        stmt.setArray(4, conn.createArrayOf("text", times));
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) {
+                            versions.merge(rs.getInt("account_number"), rs.getLong("transaction_id"), Math::max);
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        batches.increment();
+        postings.add(batch.size());
+
+        // committed: same cache upkeep as a single posting, then let the callers go
+        TransactionStore store = DBUtil.getTransactionStore();
+        for (Map.Entry<Integer, Long> balance : balances.entrySet()) {
+            int accountNumber = balance.getKey();
+            store.invalidate(accountNumber);
+            BankAccount account = accounts.get(accountNumber);
+            account.setBalance(Money.ofCents(balance.getValue()));
+            accountCache.put(AccountCache.Entry.of(account, authorizedUsers.get(accountNumber), versions.getOrDefault(accountNumber, 0L)), stamp);
+        }
+        for (Posting posting : rejected) {
+            posting.result.completeExceptionally(new IllegalArgumentException(posting.rejection));
+        }
+        for (Posting posting : accepted) {
+            BankAccount account = accounts.get(posting.accountNumber);
+            BankAccount result = new BankAccount(account.getUserId(), account.getAccountType(), account.getEmail(),
+                Money.ofCents(posting.balanceAfter), posting.accountNumber, new ArrayList<>());
+            result.addAuthorizedUsers(authorizedUsers.get(posting.accountNumber));
+            posting.result.complete(result);
+        }
+    }
+
+    public static long getBatches() {
+        return batches.sum();
+    }
+
+    public static long getPostings() {
+        return postings.sum();
+    }
+
+    public static void writePrometheus(StringBuilder out) {
+        PrometheusText.counter(out, "db_group_commit_batches_total", "Group commit transactions, each one carrying one or more postings.", getBatches());
+        PrometheusText.counter(out, "db_group_commit_postings_total", "Deposits and withdrawals that went through group commit.", getPostings());
+    }
+
+    private static final class Posting {
+        final int accountNumber;
+        final Money amount;
+        // amount with the sign it has on the balance
+        final Money signedAmount;
+        final String transactionType;
+        // when it was asked for, not when its batch ran
+        final Timestamp queuedAt = Timestamp.valueOf(LocalDateTime.now());
+        final CompletableFuture<BankAccount> result = new CompletableFuture<>();
+        // only touched by the writer thread
+        long balanceAfter;
+        String rejection;
+
+        Posting(int accountNumber, Money amount, String transactionType) {
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+            this.signedAmount = "withdraw".equals(transactionType) ? amount.negate() : amount;
+            this.transactionType = transactionType;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package net.revature.labs.dao.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wraps a connection so every statement it creates is timed and counted in QueryMetrics.
+ *
+ * Connection -> Statement/PreparedStatement -> ResultSet are all proxies: statements time their
+ * execute* calls and remember the type of each bound parameter; result sets count the rows read.
+ * Everything else is passed straight through.
+ */
+final class InstrumentedConnection {
+
+    private InstrumentedConnection() {
+    }
+
+    static Connection wrap(Connection connection) {
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler(
+                        InstrumentedConnection.invoke(connection, method, args), (String) args[0]));
+                case "prepareCall":
+                    return proxy(CallableStatement.class, new StatementHandler(
+                        InstrumentedConnection.invoke(connection, method, args), (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler(
+                        InstrumentedConnection.invoke(connection, method, args), null));
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + connection + "]";
+                default:
+                    return InstrumentedConnection.invoke(connection, method, args);
+            }
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Object statement;
+        private final String sql;
+        private final String queryName;
+        private final QueryMetrics.QueryStats stats;
+        // parameter index -> type name, for the slow query log. Values are never kept.
+        private final Map<Integer, String> parameterTypes = new TreeMap<>();
+        private int batchSize = 0;
+
+        StatementHandler(Object statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+            this.queryName = QueryMetrics.callerName();
+            this.stats = QueryMetrics.statsFor(queryName);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            switch (name) {
+                case "getResultSet":
+                case "getGeneratedKeys":
+                    return wrapResultSet(InstrumentedConnection.invoke(statement, method, args));
+                case "addBatch":
+                    batchSize++;
+                    return InstrumentedConnection.invoke(statement, method, args);
+                case "clearParameters":
+                    parameterTypes.clear();
+                    return InstrumentedConnection.invoke(statement, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + queryName + "]";
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parameterTypes.put((Integer) args[0], parameterType(name, args[1]));
+                    }
+                    return InstrumentedConnection.invoke(statement, method, args);
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            // Statement.execute*(sql) carries its own SQL
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = InstrumentedConnection.invoke(statement, method, args);
+                failed = false;
+                return wrapResultSet(result);
+            } finally {
+                QueryMetrics.recordExecution(queryName, stats, executedSql, System.nanoTime() - start,
+                    parameterShape(), failed);
+                if ("executeBatch".equals(method.getName()) || "executeLargeBatch".equals(method.getName())) {
+                    batchSize = 0;
+                }
+            }
+        }
+
+        private Object wrapResultSet(Object result) {
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, stats));
+            }
+            return result;
+        }
+
+        private String parameterShape() {
+            StringBuilder shape = new StringBuilder();
+            for (Map.Entry<Integer, String> parameter : parameterTypes.entrySet()) {
+                if (shape.length() > 0) {
+                    shape.append(", ");
+                }
+                shape.append(parameter.getKey()).append(':').append(parameter.getValue());
+            }
+            if (batchSize > 0) {
+                shape.append(" x").append(batchSize).append(" batched");
+            }
+            return shape.toString();
+        }
+
+        // setInt(1, 5) -> "int", setObject(1, someBigDecimal) -> "BigDecimal", setNull -> "null"
+        private static String parameterType(String setter, Object value) {
+            if ("setNull".equals(setter) || value == null) {
+                return "null";
+            }
+            if ("setObject".equals(setter)) {
+                return value.getClass().getSimpleName();
+            }
+            return Character.toLowerCase(setter.charAt(3)) + setter.substring(4);
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final QueryMetrics.QueryStats stats;
+
+        ResultSetHandler(ResultSet resultSet, QueryMetrics.QueryStats stats) {
+            this.resultSet = resultSet;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    boolean hasRow = resultSet.next();
+                    if (hasRow) {
+                        stats.rows.increment();
+                    }
+                    return hasRow;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return InstrumentedConnection.invoke(resultSet, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package net.revature.labs.dao.util;
+
+/**
+ * Writes single series in the Prometheus text format, for the components that report a few counters
+ * of their own at /metrics.
+ */
+final class PrometheusText {
+    private PrometheusText() {
+    }
+
+    static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
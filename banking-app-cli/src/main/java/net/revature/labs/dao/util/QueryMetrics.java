@@ -0,0 +1,171 @@
+package net.revature.labs.dao.util;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per query statistics for every statement run through DBUtil.getConnection().
+ *
+ * A query is named after the DAO method that prepared it, e.g. BankAccountDAO.getTransactionsPageForAccount,
+ * found by walking the stack once per prepareStatement. Per name we keep an execution latency histogram,
+ * rows fetched and errors. Executions slower than the threshold go to the "slowquery" logger with the
+ * SQL and the types of the bind parameters (never their values).
+ *
+ * Also counts queries per request on the current thread, see startRequest()/finishRequest().
+ * The caches and the group commit writer report their own counters, see their writePrometheus().
+ */
+public final class QueryMetrics {
+    private static final Logger slowQueryLog = LoggerFactory.getLogger("slowquery");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private static final ConcurrentHashMap<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private static final ReentrantLock scrapeLock = new ReentrantLock();
+    // queries run so far by the request on this thread, null outside a request
+    private static final ThreadLocal<int[]> requestQueryCount = new ThreadLocal<>();
+    private static volatile long slowQueryNanos = 250_000_000L;
+
+    private QueryMetrics() {
+    }
+
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryNanos = millis * 1_000_000L;
+    }
+
+    static QueryStats statsFor(String queryName) {
+        return queries.computeIfAbsent(queryName, name -> new QueryStats());
+    }
+
+    static void recordExecution(String queryName, QueryStats stats, String sql, long elapsedNanos,
+            String parameterShape, boolean failed) {
+        stats.latencyMicros.recordValue(Math.max(1, elapsedNanos / 1000));
+        stats.latencySumNanos.add(elapsedNanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+        int[] count = requestQueryCount.get();
+        if (count != null) {
+            count[0]++;
+        }
+        if (elapsedNanos >= slowQueryNanos) {
+            slowQueryLog.warn("slow query {} took {}ms{} params=[{}] sql={}",
+                queryName, elapsedNanos / 1_000_000, failed ? " (failed)" : "", parameterShape, oneLine(sql));
+        }
+    }
+
+    /**
+     * Start counting the queries run on this thread, e.g. at the start of a request.
+     */
+    public static void startRequest() {
+        requestQueryCount.set(new int[1]);
+    }
+
+    /**
+     * @return queries run on this thread since startRequest(), and stops counting.
+     */
+    public static int finishRequest() {
+        int[] count = requestQueryCount.get();
+        requestQueryCount.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * The DAO method that is preparing a statement: the first frame outside the JDBC plumbing.
+     * Lambdas report the method that declared them.
+     */
+    static String callerName() {
+        Optional<StackWalker.StackFrame> caller = STACK_WALKER.walk(frames -> frames
+            .filter(frame -> !isPlumbing(frame.getClassName()))
+            .findFirst());
+        if (!caller.isPresent()) {
+            return "unknown";
+        }
+        String className = caller.get().getClassName();
+        String method = caller.get().getMethodName();
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', "lambda$".length());
+            method = end > 0 ? method.substring("lambda$".length(), end) : method;
+        }
+        return className.substring(className.lastIndexOf('.') + 1) + "." + method;
+    }
+
+    private static boolean isPlumbing(String className) {
+        return className.startsWith("java.")
+            || className.startsWith("jdk.")
+            || className.startsWith("com.sun.proxy.")
+            || className.startsWith("org.postgresql.")
+            || isClassOrNested(className, QueryMetrics.class)
+            || isClassOrNested(className, InstrumentedConnection.class)
+            || isClassOrNested(className, ConnectionPool.class);
+    }
+
+    // InstrumentedConnection and InstrumentedConnection$StatementHandler, but not InstrumentedConnectionTest
+    private static boolean isClassOrNested(String className, Class<?> type) {
+        String name = type.getName();
+        return className.startsWith(name)
+            && (className.length() == name.length() || className.charAt(name.length()) == '$');
+    }
+
+    private static String oneLine(String sql) {
+        return sql == null ? "" : sql.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Appends db_query_* and db_statement_cache_* series in Prometheus text format.
+     */
+    public static void writePrometheus(StringBuilder out) {
+        scrapeLock.lock();
+        try {
+            Map<String, QueryStats> sorted = new TreeMap<>(queries);
+            out.append("# HELP db_query_seconds Statement execution time by DAO method.\n");
+            out.append("# TYPE db_query_seconds summary\n");
+            for (Map.Entry<String, QueryStats> entry : sorted.entrySet()) {
+                QueryStats stats = entry.getValue();
+                stats.interval = stats.latencyMicros.getIntervalHistogram(stats.interval);
+                stats.total.add(stats.interval);
+                String label = "query=\"" + entry.getKey() + "\"";
+                for (double quantile : QUANTILES) {
+                    out.append("db_query_seconds{").append(label).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(stats.total.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+                }
+                out.append("db_query_seconds_sum{").append(label).append("} ").append(stats.latencySumNanos.sum() / 1e9).append('\n');
+                out.append("db_query_seconds_count{").append(label).append("} ").append(stats.total.getTotalCount()).append('\n');
+            }
+            out.append("# HELP db_query_rows_total Rows read from result sets by DAO method.\n");
+            out.append("# TYPE db_query_rows_total counter\n");
+            for (Map.Entry<String, QueryStats> entry : sorted.entrySet()) {
+                out.append("db_query_rows_total{query=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().rows.sum()).append('\n');
+            }
+            out.append("# HELP db_query_errors_total Statement executions that threw by DAO method.\n");
+            out.append("# TYPE db_query_errors_total counter\n");
+            for (Map.Entry<String, QueryStats> entry : sorted.entrySet()) {
+                out.append("db_query_errors_total{query=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().errors.sum()).append('\n');
+            }
+            StatementCache.writePrometheus(out);
+        } finally {
+            scrapeLock.unlock();
+        }
+    }
+
+    static final class QueryStats {
+        // recording is wait-free, scrapes swap the interval histogram out
+        final Recorder latencyMicros = new Recorder(3);
+        final LongAdder latencySumNanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        // only touched under scrapeLock
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+    }
+}
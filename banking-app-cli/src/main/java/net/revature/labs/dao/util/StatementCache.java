@@ -0,0 +1,178 @@
+package net.revature.labs.dao.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements kept open on one physical connection, keyed by SQL text, least recently used
+ * evicted first.
+ *
+ * The DAOs don't know about it: prepareStatement(sql) on a pooled connection checks a statement out
+ * of here, and close() on it clears its parameters and checks it back in instead of closing it. The
+ * driver only has to parse the SQL once per connection, and once a statement has run prepareThreshold
+ * times pgjdbc switches it to a named server side statement, so Postgres stops re-planning it too.
+ *
+ * Only used by the borrower of the connection, so not thread safe. A statement that is already
+ * checked out (same SQL open twice at once) is simply prepared again and not cached.
+ */
+final class StatementCache {
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final Connection physical;
+    // access ordered, so iteration starts at the least recently used statement
+    private final LinkedHashMap<String, PreparedStatement> idle;
+    private int generation;
+
+    StatementCache(Connection physical, int maxSize, int generation) {
+        this.physical = physical;
+        this.generation = generation;
+        this.idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evictions.increment();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = idle.remove(sql);
+        if (statement != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            statement = physical.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new CachedStatementHandler(sql, statement));
+    }
+
+    // the schema changed under the cached statements (e.g. resetTestDatabase), start over
+    void clearIfStale(int currentGeneration) {
+        if (generation != currentGeneration) {
+            generation = currentGeneration;
+            clear();
+        }
+    }
+
+    void clear() {
+        Iterator<PreparedStatement> statements = idle.values().iterator();
+        while (statements.hasNext()) {
+            closeQuietly(statements.next());
+            statements.remove();
+        }
+    }
+
+    private void checkIn(String sql, PreparedStatement statement) {
+        try {
+            // leave nothing from this borrower behind for the next one
+            ResultSet open = statement.getResultSet();
+            if (open != null) {
+                open.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (statement.getFetchSize() != 0) {
+                statement.setFetchSize(0);
+            }
+            if (statement.getMaxRows() != 0) {
+                statement.setMaxRows(0);
+            }
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        // the same SQL was open twice and the other copy made it back first
+        if (idle.putIfAbsent(sql, statement) != null) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static long getHits() {
+        return hits.sum();
+    }
+
+    static long getMisses() {
+        return misses.sum();
+    }
+
+    static long getEvictions() {
+        return evictions.sum();
+    }
+
+    // part of the db_* series QueryMetrics writes, the cache sits under every prepareStatement
+    static void writePrometheus(StringBuilder out) {
+        PrometheusText.counter(out, "db_statement_cache_hits_total", "prepareStatement calls served from a connection's statement cache.", getHits());
+        PrometheusText.counter(out, "db_statement_cache_misses_total", "prepareStatement calls that had to prepare a new statement.", getMisses());
+        PrometheusText.counter(out, "db_statement_cache_evictions_total", "Cached statements closed to make room for another.", getEvictions());
+    }
+
+    // close() hands the statement back to the cache, everything else goes to the real statement
+    private class CachedStatementHandler implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean returned = false;
+
+        CachedStatementHandler(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        if (statement.isClosed()) {
+                            return null;
+                        }
+                        checkIn(sql, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + sql + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Statement has been closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
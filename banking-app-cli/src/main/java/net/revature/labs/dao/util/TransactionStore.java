@@ -0,0 +1,119 @@
+package net.revature.labs.dao.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.revature.labs.model.TransactionHistory;
+
+/**
+ * Read side copy of account histories, one columnar TransactionHistory per account.
+ *
+ * Bounded by the total number of transactions held, not by accounts: one account with a long history
+ * costs as much as many short ones. Least recently used accounts are dropped first. Capacity 0 = off.
+ *
+ * Coherence: anything that writes to the transactions table calls invalidate(account) AFTER its commit.
+ * A loader takes stamp() before it queries and hands it back to put(); if any invalidation happened in
+ * between the loaded history may already be stale and is not stored. The check and the invalidation
+ * share the lock, so a stale history can't slip in between them.
+ */
+public class TransactionStore {
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final int maxTransactions;
+    // access ordered = LRU. Guarded by synchronized on this, nothing in there blocks.
+    private final LinkedHashMap<Integer, TransactionHistory> histories = new LinkedHashMap<>(16, 0.75f, true);
+    private long transactionCount = 0;
+    private long invalidations = 0;
+
+    public TransactionStore(int maxTransactions) {
+        this.maxTransactions = maxTransactions;
+    }
+
+    public boolean isEnabled() {
+        return maxTransactions > 0;
+    }
+
+    /**
+     * @return the stored history, or null if it has to be loaded
+     */
+    public synchronized TransactionHistory get(int accountNumber) {
+        TransactionHistory history = histories.get(accountNumber);
+        if (history == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return history;
+    }
+
+    /**
+     * Take before loading a history from the database, pass to put() afterwards.
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Stores a freshly loaded history unless something was invalidated since stamp was taken.
+     * Histories bigger than the whole store are not kept.
+     */
+    public synchronized void put(int accountNumber, TransactionHistory history, long stamp) {
+        if (!isEnabled() || stamp != invalidations || history.size() > maxTransactions) {
+            return;
+        }
+        TransactionHistory previous = histories.put(accountNumber, history);
+        if (previous != null) {
+            transactionCount -= previous.size();
+        }
+        transactionCount += history.size();
+        Iterator<TransactionHistory> eldest = histories.values().iterator();
+        while (transactionCount > maxTransactions && eldest.hasNext()) {
+            transactionCount -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized void invalidate(int accountNumber) {
+        invalidations++;
+        TransactionHistory removed = histories.remove(accountNumber);
+        if (removed != null) {
+            transactionCount -= removed.size();
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        histories.clear();
+        transactionCount = 0;
+    }
+
+    public synchronized int accountCount() {
+        return histories.size();
+    }
+
+    public synchronized long transactionCount() {
+        return transactionCount;
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getEvictions() {
+        return evictions.sum();
+    }
+
+    public static void writePrometheus(StringBuilder out) {
+        PrometheusText.counter(out, "db_transaction_store_hits_total", "Account histories served from the in-memory transaction store.", getHits());
+        PrometheusText.counter(out, "db_transaction_store_misses_total", "Account histories the transaction store had to load.", getMisses());
+        PrometheusText.counter(out, "db_transaction_store_evictions_total", "Account histories dropped to stay under the store's transaction limit.", getEvictions());
+    }
+}
@@ -0,0 +1,320 @@
+package net.revature.labs.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.revature.labs.model.Money;
+
+/**
+ * Keeps every balance in memory and decides deposits, withdrawals and transfers without asking the
+ * database. Accounts are split by hash over N shards; each shard has one thread that owns its balances,
+ * fed by a bounded queue, so a balance check and the change it allows can't race anything. Every change
+ * is in the shard's journal file (fsynced, one sync per batch) before the caller hears about it, and is
+ * copied into bank_accounts/transactions afterwards by a background projector.
+ *
+ * A transfer whose accounts are on different shards goes in three steps: RESERVE takes the money out of
+ * the source (a hold, so nothing else can spend it), CREDIT puts it into the destination, then COMMIT
+ * settles the hold, or ABORT gives it back if the credit was refused. A crash between steps leaves a
+ * hold with no COMMIT/ABORT; on start it is committed if some journal has its CREDIT, aborted otherwise.
+ *
+ * Start-up: balances are read from the database (which has everything up to each shard's checkpoint),
+ * the journals are replayed past their checkpoints and the replayed records are projected again.
+ *
+ * The engine has to be the only thing changing balances while it runs, and only one instance may run
+ * against a database. Balances read from the database trail the engine by however far the projector
+ * is behind, usually a batch.
+ *
+ * -Dengine.shards=N turns it on (0 = off, the default: the DAO and row locks do it as before).
+ */
+public class BalanceEngine {
+    static final LongAdder commands = new LongAdder();
+    static final LongAdder journalSyncs = new LongAdder();
+    static final LongAdder projectedRecords = new LongAdder();
+    private static final String LAYOUT_FILE = "shards";
+    private static final long PROJECTION_TIMEOUT_MILLIS = 30_000;
+
+    private static volatile BalanceEngine shared;
+    private static final ReentrantLock sharedLock = new ReentrantLock();
+
+    private final Shard[] shards;
+    private final Path journalDir;
+    private final EngineStore store;
+    private final Projector projector;
+    private final AtomicInteger openTransfers = new AtomicInteger();
+    private final AtomicLong transferIds = new AtomicLong();
+    // read = submitting a command, write = shutting down. Nothing is submitted to a stopped shard.
+    private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    private volatile boolean running;
+
+    BalanceEngine(int shardCount, Path journalDir, int ringSize, int maxBatch, long truncateBytes, EngineStore store) {
+        this.journalDir = journalDir;
+        this.store = store;
+        this.projector = new Projector(store, Math.max(16, shardCount * 4), 1000);
+        this.shards = new Shard[Math.max(0, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, journalDir.resolve("shard-" + i + ".journal"), ringSize, maxBatch, truncateBytes, projector, openTransfers);
+        }
+    }
+
+    public static BalanceEngine fromSystemConfig() {
+        int shardCount = Integer.getInteger("engine.shards", 0);
+        Path journalDir = Paths.get(System.getProperty("engine.journalDir", "journal"));
+        int ringSize = Integer.getInteger("engine.ringSize", 65536);
+        int maxBatch = Integer.getInteger("engine.maxBatch", 1024);
+        long truncateBytes = Long.getLong("engine.truncateBytes", 64L * 1024 * 1024);
+        return new BalanceEngine(shardCount, journalDir, ringSize, maxBatch, truncateBytes, new PostgresEngineStore());
+    }
+
+    public static BalanceEngine disabled() {
+        return new BalanceEngine(0, Paths.get("journal"), 1, 1, 0, null);
+    }
+
+    /**
+     * The engine the services use, configured from system properties and started on first use.
+     */
+    public static BalanceEngine shared() throws SQLException, IOException {
+        BalanceEngine engine = shared;
+        if (engine != null) {
+            return engine;
+        }
+        sharedLock.lock();
+        try {
+            if (shared == null) {
+                BalanceEngine created = fromSystemConfig();
+                created.start();
+                shared = created;
+            }
+            return shared;
+        } finally {
+            sharedLock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return shards.length > 0;
+    }
+
+    /**
+     * Loads the balances, recovers the journals and starts the shards. Does nothing if the engine is off.
+     */
+    public void start() throws SQLException, IOException {
+        if (!isEnabled() || running) {
+            return;
+        }
+        Files.createDirectories(journalDir);
+        checkLayout();
+        store.loadBalances((accountNumber, cents) -> shards[shardOf(accountNumber)].load(accountNumber, cents));
+
+        Set<Long> credited = new HashSet<>();
+        List<List<JournalRecord>> unprojected = new ArrayList<>(shards.length);
+        long maxTransferId = 0;
+        for (Shard shard : shards) {
+            unprojected.add(shard.recover(store.getCheckpoint(shard.getIndex()), credited));
+            maxTransferId = Math.max(maxTransferId, shard.getMaxTransferId());
+        }
+        transferIds.set(maxTransferId);
+
+        // transfers cut off between their legs, counted as open until they are settled below
+        List<JournalRecord> cutOff = new ArrayList<>();
+        for (Shard shard : shards) {
+            cutOff.addAll(shard.openHolds());
+        }
+        openTransfers.addAndGet(cutOff.size());
+
+        projector.start();
+        try {
+            for (Shard shard : shards) {
+                List<JournalRecord> records = unprojected.get(shard.getIndex());
+                if (!records.isEmpty()) {
+                    projector.submit(shard, records);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while recovering the balance journals", e);
+        }
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        running = true;
+
+        for (JournalRecord hold : cutOff) {
+            byte settle = credited.contains(hold.transferId) ? JournalRecord.COMMIT : JournalRecord.ABORT;
+            call(new Command(settle, hold.accountNumber, hold.counterparty, 0, hold.transferId, false));
+            openTransfers.decrementAndGet();
+        }
+    }
+
+    // the journals only make sense with the shard count they were written with
+    private void checkLayout() throws IOException {
+        Path layout = journalDir.resolve(LAYOUT_FILE);
+        if (Files.exists(layout)) {
+            int written = Integer.parseInt(new String(Files.readAllBytes(layout), StandardCharsets.UTF_8).trim());
+            if (written != shards.length) {
+                throw new IllegalStateException("Journals in " + journalDir + " were written with " + written
+                    + " shards, start with -Dengine.shards=" + written);
+            }
+        } else {
+            Files.write(layout, String.valueOf(shards.length).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Adds a signed amount to the balance, deposits positive and withdrawals negative.
+     * @return the balance right after it
+     * @throws IllegalArgumentException "Account not found" or "Insufficient funds", nothing changed
+     */
+    public Money post(int accountNumber, Money signedAmount) throws SQLException {
+        return Money.ofCents(call(new Command(JournalRecord.POST, accountNumber, 0, signedAmount.getCents(), 0, false)).balanceAfter);
+    }
+
+    /**
+     * Moves amount from one account to the other.
+     * @return the source balance right after it
+     * @throws IllegalArgumentException "Account not found", "Destination account does not exist" or
+     *     "Insufficient funds", nothing changed
+     */
+    public Money transfer(int fromAccountNumber, int toAccountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        long transferId = transferIds.incrementAndGet();
+        long cents = amount.getCents();
+        openTransfers.incrementAndGet();
+        try {
+            call(new Command(JournalRecord.RESERVE, fromAccountNumber, toAccountNumber, cents, transferId, false));
+        } catch (IllegalArgumentException e) {
+            openTransfers.decrementAndGet();
+            throw e;
+        }
+        try {
+            call(new Command(JournalRecord.CREDIT, toAccountNumber, fromAccountNumber, cents, transferId, false));
+        } catch (IllegalArgumentException e) {
+            call(new Command(JournalRecord.ABORT, fromAccountNumber, toAccountNumber, 0, transferId, false));
+            openTransfers.decrementAndGet();
+            throw e;
+        }
+        Command committed = call(new Command(JournalRecord.COMMIT, fromAccountNumber, toAccountNumber, 0, transferId, false));
+        // only counted as done once settled. If anything above failed some other way the hold stays open
+        // (and journals stay untruncated) until the next start settles it.
+        openTransfers.decrementAndGet();
+        return Money.ofCents(committed.balanceAfter);
+    }
+
+    /**
+     * @return the current balance, null if the engine doesn't know the account
+     */
+    public Money balance(int accountNumber) throws SQLException {
+        long cents = call(Command.of(Command.BALANCE, accountNumber)).balanceAfter;
+        return cents == IntLongMap.NO_VALUE ? null : Money.ofCents(cents);
+    }
+
+    /**
+     * Starts tracking a new account at 0. Call after its row is inserted.
+     */
+    public void open(int accountNumber) throws SQLException {
+        call(Command.of(JournalRecord.OPEN, accountNumber));
+    }
+
+    /**
+     * Stops tracking the account and waits until the database has every change to it, so the row can
+     * be deleted. Refused if there is money in it, unless force.
+     * @throws IllegalArgumentException "Account not found", "Account is not empty" or "Account has a transfer in progress"
+     */
+    public void close(int accountNumber, boolean force) throws SQLException {
+        Command closed = call(new Command(JournalRecord.CLOSE, accountNumber, 0, 0, 0, force));
+        shards[shardOf(accountNumber)].awaitProjected(closed.sequence, PROJECTION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops taking commands, finishes the queued ones and writes what it can to the database.
+     */
+    public void shutdown() {
+        shutdownLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        projector.stop();
+    }
+
+    int shardOf(int accountNumber) {
+        // scrambled so a run of new account numbers spreads over every shard
+        int h = accountNumber * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    private Command call(Command command) throws SQLException {
+        Shard shard = shards.length == 0 ? null : shards[shardOf(command.accountNumber)];
+        shutdownLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException(isEnabled() ? "Balance engine is not running" : "Balance engine is off");
+            }
+            shard.submit(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted before the command was queued, nothing changed", e);
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        try {
+            // not interruptible on purpose: once queued it may happen, the caller has to find out whether it did
+            return command.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Balance engine command failed", cause);
+        }
+    }
+
+    public static long getCommands() {
+        return commands.sum();
+    }
+
+    public static long getJournalSyncs() {
+        return journalSyncs.sum();
+    }
+
+    public static long getProjectedRecords() {
+        return projectedRecords.sum();
+    }
+
+    /**
+     * Appends the engine's counters in Prometheus text format.
+     */
+    public static void writePrometheus(StringBuilder out) {
+        counter(out, "engine_commands_total", "Commands applied by the in-memory balance engine's shards.", getCommands());
+        counter(out, "engine_journal_syncs_total", "Journal fsyncs, each one covering a batch of shard commands.", getJournalSyncs());
+        counter(out, "engine_projected_records_total", "Journal records written into the database by the projector.", getProjectedRecords());
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
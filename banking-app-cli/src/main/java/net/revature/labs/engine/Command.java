@@ -0,0 +1,38 @@
+package net.revature.labs.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One request to a shard. Kinds are the JournalRecord kinds, plus BALANCE which only reads.
+ * The shard fills in the results and completes done with the command itself, after the journal write
+ * that holds it is on disk.
+ */
+final class Command {
+    static final byte BALANCE = 0;
+
+    final byte kind;
+    final int accountNumber;
+    final int counterparty;
+    final long amountCents;
+    final long transferId;
+    // CLOSE only: close even if there is money in the account (admin delete)
+    final boolean force;
+    final CompletableFuture<Command> done = new CompletableFuture<>();
+
+    // written by the shard thread before done completes
+    long balanceAfter;
+    long sequence;
+
+    Command(byte kind, int accountNumber, int counterparty, long amountCents, long transferId, boolean force) {
+        this.kind = kind;
+        this.accountNumber = accountNumber;
+        this.counterparty = counterparty;
+        this.amountCents = amountCents;
+        this.transferId = transferId;
+        this.force = force;
+    }
+
+    static Command of(byte kind, int accountNumber) {
+        return new Command(kind, accountNumber, 0, 0, 0, false);
+    }
+}
@@ -0,0 +1,30 @@
+package net.revature.labs.engine;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Where the engine's balances come from at start and where its journal is projected to.
+ * PostgresEngineStore in the app, an in-memory one in the tests.
+ */
+interface EngineStore {
+    interface BalanceSink {
+        void accept(int accountNumber, long cents);
+    }
+
+    /**
+     * Every account and its balance, as of the checkpoints.
+     */
+    void loadBalances(BalanceSink sink) throws SQLException;
+
+    /**
+     * Sequence of the last record of this shard that project() has committed, 0 if none.
+     */
+    long getCheckpoint(int shard) throws SQLException;
+
+    /**
+     * Applies the records (in order, all from one shard) and moves the shard's checkpoint to the last
+     * of them, all or nothing.
+     */
+    void project(int shard, List<JournalRecord> records) throws SQLException;
+}
@@ -0,0 +1,125 @@
+package net.revature.labs.engine;
+
+import java.util.Arrays;
+
+/**
+ * int -> long hash map on two primitive arrays, no boxing and no entry objects. Open addressing with
+ * linear probing. Key 0 marks an empty slot, so 0 can't be a key (account numbers never are).
+ *
+ * Not thread safe: each shard owns one and only the shard's thread touches it.
+ */
+final class IntLongMap {
+    static final long NO_VALUE = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int resizeAt;
+
+    IntLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @return the value, or NO_VALUE if the key isn't there
+     */
+    long get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int found = keys[slot];
+            if (found == key) {
+                return values[slot];
+            }
+            if (found == 0) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != NO_VALUE;
+    }
+
+    void put(int key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 can't be a key");
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int found = keys[slot];
+            if (found == key) {
+                values[slot] = value;
+                return;
+            }
+            if (found == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeAt) {
+                    grow();
+                }
+                return;
+            }
+        }
+    }
+
+    void remove(int key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // backward shift: pull later entries of the probe chain into the hole, no tombstones needed
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            // move it if its home slot is not between the hole and where it sits now (cyclically)
+            if (hole <= next ? (home <= hole || home > next) : (home <= hole && home > next)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    // account numbers are close together, scramble them so they don't fill one run of slots
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
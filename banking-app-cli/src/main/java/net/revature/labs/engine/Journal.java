@@ -0,0 +1,109 @@
+package net.revature.labs.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A shard's append-only journal file. Records are buffered by append() and hit the disk in sync(),
+ * one write and one fsync for the whole batch, before any caller in the batch gets an answer.
+ *
+ * Only the shard's thread writes to it.
+ */
+final class Journal implements AutoCloseable {
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    Journal(Path path, int maxBatch) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // a transfer can add a few records per command, grow if a batch doesn't fit
+        this.buffer = ByteBuffer.allocateDirect(JournalRecord.SIZE * Math.max(16, maxBatch * 2));
+    }
+
+    /**
+     * Everything in the file up to the first record that doesn't check out. A crash in the middle of a
+     * write leaves a torn record at the end; it and anything after it is cut off so appends continue
+     * from a clean end. A torn record was never synced, so nobody was told it had happened.
+     */
+    static List<JournalRecord> read(Path path) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(JournalRecord.SIZE * 4096);
+            long validBytes = 0;
+            boolean torn = false;
+            while (!torn && channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= JournalRecord.SIZE) {
+                    JournalRecord record = JournalRecord.readFrom(buffer);
+                    if (record == null) {
+                        torn = true;
+                        break;
+                    }
+                    records.add(record);
+                    validBytes += JournalRecord.SIZE;
+                }
+                buffer.compact();
+            }
+            if (channel.size() > validBytes) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    void append(JournalRecord record) throws IOException {
+        if (buffer.remaining() < JournalRecord.SIZE) {
+            write();
+        }
+        record.writeTo(buffer);
+    }
+
+    /**
+     * Writes what was appended and waits for it to be on disk.
+     */
+    void sync() throws IOException {
+        write();
+        channel.force(false);
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Empties the file. Only when nothing in it is still needed: all of it is in the database and no
+     * transfer that it took part in is still open.
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,96 @@
+package net.revature.labs.engine;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * One entry in a shard's journal. Fixed size, so the journal can be read back without any framing.
+ *
+ * What each kind does to the shard's balances (the projection does exactly the same to bank_accounts):
+ *   POST     balance += amount (signed: deposits positive, withdrawals negative)
+ *   RESERVE  transfer leg 1 on the source: balance -= amount, held under transferId
+ *   CREDIT   transfer leg 2 on the destination: balance += amount
+ *   COMMIT   transfer leg 3 on the source: the hold is spent, balance unchanged
+ *   ABORT    transfer leg 3 when the credit failed: the hold goes back, balance += amount
+ *   OPEN     account starts at 0
+ *   CLOSE    account is gone (only ever at balance 0)
+ */
+final class JournalRecord {
+    static final byte POST = 1;
+    static final byte RESERVE = 2;
+    static final byte CREDIT = 3;
+    static final byte COMMIT = 4;
+    static final byte ABORT = 5;
+    static final byte OPEN = 6;
+    static final byte CLOSE = 7;
+
+    // kind 1 + sequence 8 + account 4 + counterparty 4 + amount 8 + transferId 8 + time 8, then crc 4
+    static final int SIZE = 1 + 8 + 4 + 4 + 8 + 8 + 8 + 4;
+
+    final byte kind;
+    final long sequence;
+    final int accountNumber;
+    // the other account of a transfer, 0 otherwise
+    final int counterparty;
+    final long amountCents;
+    final long transferId;
+    // local time as if it were UTC, same as Timestamp.valueOf(LocalDateTime.now()) elsewhere
+    final long epochMicros;
+
+    JournalRecord(byte kind, long sequence, int accountNumber, int counterparty, long amountCents, long transferId, long epochMicros) {
+        this.kind = kind;
+        this.sequence = sequence;
+        this.accountNumber = accountNumber;
+        this.counterparty = counterparty;
+        this.amountCents = amountCents;
+        this.transferId = transferId;
+        this.epochMicros = epochMicros;
+    }
+
+    static long nowMicros() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + now.getNano() / 1000;
+    }
+
+    Timestamp getTimestamp() {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+            (int) Math.floorMod(epochMicros, 1_000_000L) * 1000, ZoneOffset.UTC));
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.put(kind).putLong(sequence).putInt(accountNumber).putInt(counterparty)
+            .putLong(amountCents).putLong(transferId).putLong(epochMicros);
+        buffer.putInt(crc(buffer, start));
+    }
+
+    /**
+     * @return the record at the buffer's position, or null if it is torn or corrupt (the crc doesn't match)
+     */
+    static JournalRecord readFrom(ByteBuffer buffer) {
+        int start = buffer.position();
+        byte kind = buffer.get();
+        long sequence = buffer.getLong();
+        int accountNumber = buffer.getInt();
+        int counterparty = buffer.getInt();
+        long amountCents = buffer.getLong();
+        long transferId = buffer.getLong();
+        long epochMicros = buffer.getLong();
+        int expected = crc(buffer, start);
+        if (buffer.getInt() != expected || kind < POST || kind > CLOSE) {
+            return null;
+        }
+        return new JournalRecord(kind, sequence, accountNumber, counterparty, amountCents, transferId, epochMicros);
+    }
+
+    private static int crc(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(start).limit(start + SIZE - 4);
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
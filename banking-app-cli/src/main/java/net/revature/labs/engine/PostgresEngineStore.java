@@ -0,0 +1,162 @@
+package net.revature.labs.engine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.Money;
+
+/**
+ * Projects the journal into bank_accounts and transactions, the same rows the DAO writes for a
+ * deposit, withdrawal or transfer. Transaction rows appear when money actually moves: a transfer's
+ * source row on COMMIT, its destination row on CREDIT. A RESERVE (and an ABORT giving it back) only
+ * changes the balance, like the hold it is.
+ */
+class PostgresEngineStore implements EngineStore {
+    private static final String LOAD_SQL = "SELECT account_number, balance FROM bank_accounts";
+    private static final String CHECKPOINT_SQL = "SELECT sequence FROM engine_checkpoints WHERE shard = ?";
+    // arrays instead of a VALUES list: the SQL is the same for every batch size, so it stays one cached statement
+    private static final String UPDATE_SQL =
+        "UPDATE bank_accounts b SET balance = b.balance + v.delta::numeric " +
+        "FROM unnest(?::int[], ?::text[]) AS v(account_number, delta) WHERE b.account_number = v.account_number";
+    private static final String INSERT_SQL =
+        "INSERT INTO transactions (account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number) " +
+        "SELECT v.account_number, v.amount::numeric, v.transaction_type, v.transaction_date_time::timestamp, v.from_account_number, v.to_account_number " +
+        "FROM unnest(?::int[], ?::text[], ?::text[], ?::text[], ?::int[], ?::int[]) " +
+        "AS v(account_number, amount, transaction_type, transaction_date_time, from_account_number, to_account_number)";
+    private static final String SAVE_CHECKPOINT_SQL =
+        "INSERT INTO engine_checkpoints (shard, sequence) VALUES (?, ?) ON CONFLICT (shard) DO UPDATE SET sequence = excluded.sequence";
+
+    @Override
+    public void loadBalances(BalanceSink sink) throws SQLException {
+        try (Connection conn = DBUtil.getConnection()) {
+            // stream it, there can be millions
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+                stmt.setFetchSize(10_000);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    sink.accept(rs.getInt("account_number"), Money.read(rs, "balance").getCents());
+                }
+            } finally {
+                conn.commit();
+            }
+        }
+    }
+
+    @Override
+    public long getCheckpoint(int shard) throws SQLException {
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(CHECKPOINT_SQL)) {
+            stmt.setInt(1, shard);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong("sequence") : 0;
+        }
+    }
+
+    @Override
+    public void project(int shard, List<JournalRecord> records) throws SQLException {
+        // sorted, so two projections touching the same accounts update them in the same order
+        Map<Integer, Long> deltas = new TreeMap<>();
+        List<JournalRecord> rows = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            switch (record.kind) {
+                case JournalRecord.POST:
+                case JournalRecord.CREDIT:
+                case JournalRecord.ABORT:
+                    deltas.merge(record.accountNumber, record.amountCents, Long::sum);
+                    break;
+                case JournalRecord.RESERVE:
+                    deltas.merge(record.accountNumber, -record.amountCents, Long::sum);
+                    break;
+                default:
+                    break;
+            }
+            if (record.kind == JournalRecord.POST || record.kind == JournalRecord.CREDIT || record.kind == JournalRecord.COMMIT) {
+                rows.add(record);
+            }
+        }
+
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!deltas.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                        Integer[] accountNumbers = new Integer[deltas.size()];
+                        String[] amounts = new String[deltas.size()];
+                        int i = 0;
+                        for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                            accountNumbers[i] = delta.getKey();
+                            amounts[i] = Money.ofCents(delta.getValue()).toString();
+                            i++;
+                        }
+                        stmt.setArray(1, conn.createArrayOf("integer", accountNumbers));
+                        stmt.setArray(2, conn.createArrayOf("text", amounts));
+                        stmt.executeUpdate();
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                        int size = rows.size();
+                        Integer[] accountNumbers = new Integer[size];
+                        String[] amounts = new String[size];
+                        String[] types = new String[size];
+                        String[] times = new String[size];
+                        Integer[] fromAccounts = new Integer[size];
+                        Integer[] toAccounts = new Integer[size];
+                        for (int i = 0; i < size; i++) {
+                            JournalRecord record = rows.get(i);
+                            accountNumbers[i] = record.accountNumber;
+                            amounts[i] = Money.ofCents(Math.abs(record.amountCents)).toString();
+                            times[i] = record.getTimestamp().toString();
+                            if (record.kind == JournalRecord.POST) {
+                                types[i] = record.amountCents < 0 ? "withdraw" : "deposit";
+                                fromAccounts[i] = record.accountNumber;
+                                toAccounts[i] = record.accountNumber;
+                            } else {
+                                // COMMIT is written on the source, CREDIT on the destination
+                                types[i] = "transfer";
+                                fromAccounts[i] = record.kind == JournalRecord.COMMIT ? record.accountNumber : record.counterparty;
+                                toAccounts[i] = record.kind == JournalRecord.COMMIT ? record.counterparty : record.accountNumber;
+                            }
+                        }
+                        stmt.setArray(1, conn.createArrayOf("integer", accountNumbers));
+                        stmt.setArray(2, conn.createArrayOf("text", amounts));
+                        stmt.setArray(3, conn.createArrayOf("text", types));
+                        stmt.setArray(4, conn.createArrayOf("text", times));
+                        stmt.setArray(5, conn.createArrayOf("integer", fromAccounts));
+                        stmt.setArray(6, conn.createArrayOf("integer", toAccounts));
+                        stmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(SAVE_CHECKPOINT_SQL)) {
+                    stmt.setInt(1, shard);
+                    stmt.setLong(2, records.get(records.size() - 1).sequence);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        // committed: anything read from these rows before now is stale
+        Set<Integer> touched = new HashSet<>(deltas.keySet());
+        for (JournalRecord record : rows) {
+            touched.add(record.accountNumber);
+        }
+        for (int accountNumber : touched) {
+            DBUtil.getAccountCache().invalidate(accountNumber);
+            DBUtil.getTransactionStore().invalidate(accountNumber);
+        }
+    }
+}
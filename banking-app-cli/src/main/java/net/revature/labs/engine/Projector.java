@@ -0,0 +1,125 @@
+package net.revature.labs.engine;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies journaled changes into the database in the background. One thread, so each shard's records
+ * arrive in journal order; whatever has queued up is written one database transaction per shard.
+ *
+ * The journal is the record of what happened, the database catches up. If a write fails it is retried
+ * until it works; on shutdown it stops trying and the next start re-projects from the checkpoint.
+ */
+final class Projector {
+    private static final int MAX_RECORDS_PER_TRANSACTION = 10_000;
+
+    private final EngineStore store;
+    private final long retryMillis;
+    // full = shards wait, the engine can't get further ahead of the database than this
+    private final BlockingQueue<Batch> queue;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    Projector(EngineStore store, int capacity, long retryMillis) {
+        this.store = store;
+        this.retryMillis = retryMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    void start() {
+        thread = new Thread(this::run, "balance-projector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void submit(Shard shard, List<JournalRecord> records) throws InterruptedException {
+        for (int from = 0; from < records.size(); from += MAX_RECORDS_PER_TRANSACTION) {
+            queue.put(new Batch(shard, records.subList(from, Math.min(records.size(), from + MAX_RECORDS_PER_TRANSACTION))));
+        }
+    }
+
+    /**
+     * Writes what is queued (unless the database keeps failing) and stops the thread.
+     */
+    void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Batch> batches = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Batch first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batches.add(first);
+                queue.drainTo(batches);
+                Map<Shard, List<JournalRecord>> byShard = new LinkedHashMap<>();
+                for (Batch batch : batches) {
+                    List<JournalRecord> records = byShard.computeIfAbsent(batch.shard, s -> new ArrayList<>());
+                    if (records.size() + batch.records.size() > MAX_RECORDS_PER_TRANSACTION) {
+                        if (!project(batch.shard, records)) {
+                            return;
+                        }
+                        records.clear();
+                    }
+                    records.addAll(batch.records);
+                }
+                for (Map.Entry<Shard, List<JournalRecord>> entry : byShard.entrySet()) {
+                    if (!entry.getValue().isEmpty() && !project(entry.getKey(), entry.getValue())) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batches.clear();
+            }
+        }
+    }
+
+    // false = gave up at shutdown. Nothing after it may be written either, the checkpoint would skip it.
+    private boolean project(Shard shard, List<JournalRecord> records) throws InterruptedException {
+        while (true) {
+            try {
+                store.project(shard.getIndex(), records);
+                BalanceEngine.projectedRecords.add(records.size());
+                shard.projected(records.get(records.size() - 1).sequence);
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                if (!running) {
+                    // still in the journal, the next start writes it
+                    queue.clear();
+                    return false;
+                }
+                Thread.sleep(retryMillis);
+            }
+        }
+    }
+
+    private static final class Batch {
+        final Shard shard;
+        final List<JournalRecord> records;
+
+        Batch(Shard shard, List<JournalRecord> records) {
+            this.shard = shard;
+            this.records = records;
+        }
+    }
+}
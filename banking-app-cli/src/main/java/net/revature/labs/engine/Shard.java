@@ -0,0 +1,384 @@
+package net.revature.labs.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One partition of the accounts. Its thread is the only one that reads or writes its balances, so
+ * checking and changing a balance needs no lock: commands are applied one after another in the order
+ * they came off the ring.
+ *
+ * Each turn of the loop takes everything queued (up to maxBatch), applies it, appends a journal record
+ * per change and syncs the journal once. Only then are the callers answered and the records handed to
+ * the projector, so nobody hears about a change that a crash could lose.
+ */
+final class Shard {
+    private final int index;
+    private final Path journalPath;
+    private final int maxBatch;
+    private final long truncateBytes;
+    private final Projector projector;
+    // transfers started and not yet committed or aborted, across all shards (see truncateIfDone)
+    private final AtomicInteger openTransfers;
+    private final BlockingQueue<Command> ring;
+    private final IntLongMap balances = new IntLongMap(1024);
+    // open transfers this shard is the source of, by transferId -> their RESERVE record
+    private final Map<Long, JournalRecord> holds = new HashMap<>();
+
+    private Journal journal;
+    private long sequence;
+    private long maxTransferId;
+    private volatile long projectedSequence;
+    private volatile boolean running = true;
+    // set when the journal can't be written, every command after that is refused
+    private volatile IOException failure;
+    private Thread thread;
+
+    Shard(int index, Path journalPath, int ringSize, int maxBatch, long truncateBytes, Projector projector, AtomicInteger openTransfers) {
+        this.index = index;
+        this.journalPath = journalPath;
+        this.maxBatch = maxBatch;
+        this.truncateBytes = truncateBytes;
+        this.projector = projector;
+        this.openTransfers = openTransfers;
+        this.ring = new ArrayBlockingQueue<>(ringSize);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    // before start() only: balances as of the database checkpoint
+    void load(int accountNumber, long cents) {
+        balances.put(accountNumber, cents);
+    }
+
+    /**
+     * Before start() only. Replays the journal past the checkpoint on top of the loaded balances and opens
+     * it for appending. Records up to the checkpoint are already in the loaded balances, they only tell
+     * which transfers are still open.
+     * @param credited gets the transferId of every CREDIT in the journal
+     * @return the records the database doesn't have yet
+     */
+    List<JournalRecord> recover(long checkpoint, Set<Long> credited) throws IOException {
+        List<JournalRecord> unprojected = new ArrayList<>();
+        for (JournalRecord record : Journal.read(journalPath)) {
+            sequence = Math.max(sequence, record.sequence);
+            maxTransferId = Math.max(maxTransferId, record.transferId);
+            if (record.kind == JournalRecord.CREDIT) {
+                credited.add(record.transferId);
+            }
+            if (record.sequence > checkpoint) {
+                applyEffect(record);
+                unprojected.add(record);
+            } else if (record.kind == JournalRecord.RESERVE) {
+                holds.put(record.transferId, record);
+            } else if (record.kind == JournalRecord.COMMIT || record.kind == JournalRecord.ABORT) {
+                holds.remove(record.transferId);
+            }
+        }
+        sequence = Math.max(sequence, checkpoint);
+        projectedSequence = checkpoint;
+        journal = new Journal(journalPath, maxBatch);
+        return unprojected;
+    }
+
+    // before start() only
+    List<JournalRecord> openHolds() {
+        return new ArrayList<>(holds.values());
+    }
+
+    long getMaxTransferId() {
+        return maxTransferId;
+    }
+
+    void start() {
+        thread = new Thread(this::run, "balance-shard-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the command. BalanceEngine makes sure nothing is submitted after stop().
+     */
+    void submit(Command command) throws InterruptedException {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IllegalStateException("Balance shard " + index + " stopped after a journal write failed", failed);
+        }
+        ring.put(command);
+    }
+
+    /**
+     * Applies what is already queued, then stops the thread.
+     */
+    void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Called by the projector once everything up to sequence is committed in the database.
+     */
+    void projected(long sequence) {
+        projectedSequence = sequence;
+    }
+
+    void awaitProjected(long sequence, long timeoutMillis) throws SQLException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (projectedSequence < sequence) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new SQLException("Timed out waiting for balance shard " + index + " to reach the database");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for balance shard " + index + " to reach the database", e);
+            }
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatch);
+        List<JournalRecord> records = new ArrayList<>(maxBatch);
+        while (running || !ring.isEmpty()) {
+            try {
+                // wakes up now and then to notice stop() and to see if the journal can be emptied
+                Command first = ring.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    truncateIfDone();
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, maxBatch - 1);
+                if (failure != null) {
+                    for (Command command : batch) {
+                        command.done.completeExceptionally(new IllegalStateException("Balance shard " + index + " stopped after a journal write failed", failure));
+                    }
+                    continue;
+                }
+                List<RuntimeException> rejections = new ArrayList<>();
+                try {
+                    for (Command command : batch) {
+                        JournalRecord record = null;
+                        try {
+                            record = apply(command);
+                            rejections.add(null);
+                        } catch (RuntimeException e) {
+                            // nothing changed, apply() checks everything before it touches a balance
+                            rejections.add(e);
+                        }
+                        if (record != null) {
+                            journal.append(record);
+                            records.add(record);
+                        }
+                    }
+                    if (!records.isEmpty()) {
+                        journal.sync();
+                        BalanceEngine.journalSyncs.increment();
+                    }
+                } catch (IOException e) {
+                    // the balances in memory are ahead of the disk now, nothing this shard says can be trusted.
+                    // A restart rebuilds it from the database and whatever did make it into the journal.
+                    e.printStackTrace();
+                    failure = e;
+                    for (Command command : batch) {
+                        command.done.completeExceptionally(new IllegalStateException("Balance shard " + index + " journal write failed", e));
+                    }
+                    continue;
+                }
+                BalanceEngine.commands.add(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    RuntimeException rejection = rejections.get(i);
+                    if (rejection != null) {
+                        batch.get(i).done.completeExceptionally(rejection);
+                    } else {
+                        batch.get(i).done.complete(batch.get(i));
+                    }
+                }
+                if (!records.isEmpty()) {
+                    projector.submit(this, new ArrayList<>(records));
+                }
+            } catch (InterruptedException e) {
+                // nobody interrupts a shard, but if someone does, don't leave callers hanging
+                for (Command command : batch) {
+                    command.done.completeExceptionally(e);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * Checks the command against the balances and, if it is allowed, changes them.
+     * @return what to journal, null if nothing changed
+     * @throws IllegalArgumentException if it isn't allowed, nothing changed
+     */
+    private JournalRecord apply(Command command) {
+        int accountNumber = command.accountNumber;
+        long amount = command.amountCents;
+        long balance = balances.get(accountNumber);
+        switch (command.kind) {
+            case Command.BALANCE:
+                command.balanceAfter = balance;
+                return null;
+            case JournalRecord.POST:
+                requireAccount(balance);
+                if (sum(balance, amount) < 0) {
+                    throw new IllegalArgumentException("Insufficient funds");
+                }
+                break;
+            case JournalRecord.RESERVE:
+                requireAccount(balance);
+                if (balance < amount) {
+                    throw new IllegalArgumentException("Insufficient funds");
+                }
+                break;
+            case JournalRecord.CREDIT:
+                if (balance == IntLongMap.NO_VALUE) {
+                    throw new IllegalArgumentException("Destination account does not exist");
+                }
+                sum(balance, amount);
+                break;
+            case JournalRecord.COMMIT:
+            case JournalRecord.ABORT: {
+                // the leg that settles a hold is about the hold, not about what the caller passed in
+                JournalRecord hold = holds.get(command.transferId);
+                if (hold == null) {
+                    throw new IllegalStateException("No open transfer " + command.transferId);
+                }
+                if (command.kind == JournalRecord.ABORT) {
+                    sum(balances.get(hold.accountNumber), hold.amountCents);
+                }
+                JournalRecord record = new JournalRecord(command.kind, ++sequence, hold.accountNumber, hold.counterparty,
+                    hold.amountCents, hold.transferId, JournalRecord.nowMicros());
+                applyEffect(record);
+                command.balanceAfter = balances.get(hold.accountNumber);
+                command.sequence = record.sequence;
+                return record;
+            }
+            case JournalRecord.OPEN:
+                if (balance != IntLongMap.NO_VALUE) {
+                    // already known, e.g. loaded at start after the row was inserted
+                    command.balanceAfter = balance;
+                    command.sequence = sequence;
+                    return null;
+                }
+                break;
+            case JournalRecord.CLOSE:
+                requireAccount(balance);
+                if (balance != 0 && !command.force) {
+                    throw new IllegalArgumentException("Account is not empty");
+                }
+                for (JournalRecord hold : holds.values()) {
+                    if (hold.accountNumber == accountNumber) {
+                        throw new IllegalArgumentException("Account has a transfer in progress");
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown command " + command.kind);
+        }
+        JournalRecord record = new JournalRecord(command.kind, ++sequence, accountNumber, command.counterparty,
+            amount, command.transferId, JournalRecord.nowMicros());
+        applyEffect(record);
+        long after = balances.get(accountNumber);
+        command.balanceAfter = after == IntLongMap.NO_VALUE ? 0 : after;
+        command.sequence = record.sequence;
+        return record;
+    }
+
+    // checked before anything changes, so a balance that would overflow is a refusal, not a wrapped number
+    private static long sum(long balance, long cents) {
+        try {
+            return Math.addExact(balance, cents);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Balance would overflow");
+        }
+    }
+
+    private static void requireAccount(long balance) {
+        if (balance == IntLongMap.NO_VALUE) {
+            throw new IllegalArgumentException("Account not found");
+        }
+    }
+
+    // what a record does to the balances, the same whether it is happening now or being replayed
+    private void applyEffect(JournalRecord record) {
+        switch (record.kind) {
+            case JournalRecord.POST:
+            case JournalRecord.CREDIT:
+                add(record.accountNumber, record.amountCents);
+                break;
+            case JournalRecord.RESERVE:
+                add(record.accountNumber, -record.amountCents);
+                holds.put(record.transferId, record);
+                break;
+            case JournalRecord.COMMIT:
+                holds.remove(record.transferId);
+                break;
+            case JournalRecord.ABORT:
+                holds.remove(record.transferId);
+                add(record.accountNumber, record.amountCents);
+                break;
+            case JournalRecord.OPEN:
+                if (!balances.containsKey(record.accountNumber)) {
+                    balances.put(record.accountNumber, 0);
+                }
+                break;
+            case JournalRecord.CLOSE:
+                balances.remove(record.accountNumber);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record " + record.kind);
+        }
+    }
+
+    private void add(int accountNumber, long cents) {
+        long balance = balances.get(accountNumber);
+        // apply() has ruled out an overflow. On replay one means the journal is wrong, so start-up fails.
+        balances.put(accountNumber, Math.addExact(balance == IntLongMap.NO_VALUE ? 0 : balance, cents));
+    }
+
+    // Empties the journal once the database has all of it. Not while any transfer is open anywhere:
+    // a CREDIT in here is how recovery knows to commit its transfer rather than abort it, and it has to
+    // stay until the source shard has journaled the COMMIT.
+    private void truncateIfDone() {
+        try {
+            if (failure == null && holds.isEmpty() && openTransfers.get() == 0
+                    && projectedSequence >= sequence && journal.size() >= truncateBytes) {
+                journal.truncate();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package net.revature.labs.model;
 
-import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -9,6 +8,8 @@ import java.util.List;
 import java.util.Random;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class BankAccount {
@@ -19,10 +20,12 @@ public class BankAccount {
     // thus fields are final except for balance
     // TODO: add a test to confirm that account details cannot be modified after creation. Assert taht balance can be updated.
 
-    private final Integer userId;
+    // ids are plain ints like the SERIAL columns they come from, no parsing or boxing per request
+    private final int userId;
     private final String accountType;
-    private BigDecimal balance;
-    private final String accountNumber;
+    private Money balance;
+    // still a string in JSON so existing clients don't notice, see getAccountNumber()
+    private final int accountNumber;
     private final String email;
     //transactions table
     private List<Transaction> transactions;
@@ -31,7 +34,7 @@ public class BankAccount {
 
 
 
-    public void setBalance(BigDecimal balance) {
+    public void setBalance(Money balance) {
         this.balance = balance;
     }
 
@@ -45,20 +48,21 @@ public class BankAccount {
 
     @JsonCreator
     public BankAccount(
-            @JsonProperty("userId") String userId, 
+            @JsonProperty("userId") int userId, 
             @JsonProperty("accountType") String accountType, 
             @JsonProperty("email") String email, 
-            @JsonProperty("balance") BigDecimal balance, 
-            @JsonProperty("accountNumber") String accountNumber, 
+            @JsonProperty("balance") Money balance, 
+            @JsonProperty("accountNumber") int accountNumber, 
             @JsonProperty("transactions") List<Transaction> transactions,
             @JsonProperty("authorizedUserEmails") List<String> authorizedUserEmails
             ){
-                this.userId = Integer.parseInt(userId);
+                this.userId = userId;
                 this.accountType = accountType;
                 this.email = email;
                 this.balance = balance;
                 this.accountNumber = accountNumber;
-                this.transactions = transactions;
+                // responses leave it out unless it was asked for (see getTransactions()), read that back as empty
+                this.transactions = transactions == null ? new ArrayList<>() : transactions;
                 this.authorizedUserEmails = authorizedUserEmails;
     }
 
@@ -67,7 +71,7 @@ public class BankAccount {
             userId = randomUserId();
         };
         this.userId = userId;
-        this.balance = new BigDecimal(0);
+        this.balance = Money.ZERO;
         this.accountType = accountType;
         // accountNumber is a 10 digit number random
         this.accountNumber = randomAccountNumber();
@@ -85,22 +89,22 @@ public class BankAccount {
     //     this.authorizedUserEmails = new ArrayList<>();
     // }
 
-    private String randomAccountNumber() {
-        // accountNumber is a 10 digit number random
-        return String.valueOf(1000000000L + new Random().nextInt(900000000));
+    private int randomAccountNumber() {
+        // accountNumber is a 10 digit number random, still small enough for an int
+        return 1000000000 + new Random().nextInt(900000000);
     }
 
     public BankAccount(User foundUser, String accountType) {
         this.userId=foundUser.getUserId();
         this.email = foundUser.getEmail();
-        this.balance = new BigDecimal(0);
+        this.balance = Money.ZERO;
         this.accountType = accountType;
         this.accountNumber = randomAccountNumber();
         this.authorizedUserEmails = new ArrayList<>();
         this.transactions = new ArrayList<Transaction>();
     }
 
-    public BankAccount(int userId, String accountType, String email, BigDecimal balance, String accountNumber,
+    public BankAccount(int userId, String accountType, String email, Money balance, int accountNumber,
             List<Transaction> transactions) {
         this.userId = userId;
         this.accountType = accountType;
@@ -110,15 +114,15 @@ public class BankAccount {
         this.transactions = transactions;
         this.authorizedUserEmails = new ArrayList<>();
     }
-    private Integer randomUserId() {
+    private int randomUserId() {
         return (int) (Math.random()*100000);
     }
 
-    public BigDecimal getBalance() {
+    public Money getBalance() {
         return this.balance;
     }
 
-    public Integer getUserId() {
+    public int getUserId() {
         return this.userId;
     }
 
@@ -126,56 +130,56 @@ public class BankAccount {
         return this.accountType;
     }
 
-    public void deposit(BigDecimal amount, String fromAccountNumber) {
-        this.balance = this.balance.add(amount);
-        String accountNumber = this.accountNumber;
+    public void deposit(Money amount, int fromAccountNumber) {
+        this.balance = this.balance.plus(amount);
+        int accountNumber = this.accountNumber;
         String transactionType = "Deposit";
-        String toAccountNumber = this.accountNumber;
+        int toAccountNumber = this.accountNumber;
         Timestamp transactionDateTime = new Timestamp(System.currentTimeMillis());
         Transaction newTx = new Transaction(accountNumber, transactionType, amount, transactionDateTime, fromAccountNumber, toAccountNumber);
         this.transactions.add(newTx);
     }
 
-    public boolean withdraw(BigDecimal amount) {
-        if(this.balance.compareTo(amount) < 0){
+    public boolean withdraw(Money amount) {
+        if(this.balance.isLessThan(amount)){
             return false;
         }
-        this.balance = this.balance.subtract(amount);
+        this.balance = this.balance.minus(amount);
         return true;
     }
 
-    public String getAccountNumber() {
+    // serialized as a string, the API has always sent account numbers that way. Reads accept either.
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public int getAccountNumber() {
         return this.accountNumber;
     }
     public String getEmail() {
         return this.email;
     }
+    // null = not loaded for this response, the field is left out instead of sent as null
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public List<Transaction> getTransactions() {
         return this.transactions;
     }
 
     public static List<BankAccount> fromResultSet(ResultSet rs) throws SQLException {
         List<BankAccount> accounts = new ArrayList<>();
-        String accountType;
-        String accountNumber;
-        BigDecimal balance;
-        int userId;
-        String email;
-        List<Transaction> transactions;
-        BankAccount account;
         while (rs.next()) {
-            accountNumber = String.valueOf(rs.getInt("account_number"));
-            accountType = rs.getString("account_type");
-            balance = rs.getBigDecimal("balance");
-            userId = rs.getInt("user_id");
-            email = rs.getString("email");
-            transactions = new ArrayList<>();
-            account = new BankAccount(userId, accountType, email, balance, accountNumber, transactions);
-            accounts.add(account);
+            accounts.add(fromRow(rs));
         }
         return accounts;
     }
 
+    // maps the current row of a bank_accounts result set. Does not move the cursor.
+    public static BankAccount fromRow(ResultSet rs) throws SQLException {
+        int accountNumber = rs.getInt("account_number");
+        String accountType = rs.getString("account_type");
+        Money balance = Money.read(rs, "balance");
+        int userId = rs.getInt("user_id");
+        String email = rs.getString("email");
+        return new BankAccount(userId, accountType, email, balance, accountNumber, new ArrayList<>());
+    }
+
     public void addSharedUser(String email) {
         this.authorizedUserEmails.add(email);
     }
@@ -184,12 +188,7 @@ public class BankAccount {
     }
   
     public void addTransactions(List<Transaction> transactionsForBankAccount) {
-        // this.transactions.addAll(transactionsForBankAccount);
-        transactionsForBankAccount.forEach(tx -> {
-            System.out.println("Adding transaction to account: " + tx);
-            System.out.println("Transactionss: " + this.transactions);
-            this.transactions.add(tx);
-        });
+        this.transactions.addAll(transactionsForBankAccount);
     }
     public void addAuthorizedUsers(List<String> authorizedUsersForBankAccount) {
         this.authorizedUserEmails.addAll(authorizedUsersForBankAccount);
@@ -0,0 +1,111 @@
+package net.revature.labs.model;
+
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An account's transactions, fetched a page at a time the first time they are touched.
+ *
+ * Nothing is loaded until someone looks. get(i) and iterating load only as many pages as they need;
+ * size() has to know where the end is, so it loads everything (Jackson does that when it serializes the list).
+ * Pages are keyset pages on transaction_id, so loading page n costs the same as loading page 1.
+ *
+ * Not thread safe, it belongs to one BankAccount in one request.
+ */
+public class LazyTransactionList extends AbstractList<Transaction> {
+    private final int accountNumber;
+    private final int pageSize;
+    private final TransactionPager pager;
+    private final List<Transaction> loaded = new ArrayList<>();
+    private int lastTransactionId = 0;
+    private boolean exhausted = false;
+    private int pagesLoaded = 0;
+
+    public LazyTransactionList(int accountNumber, int pageSize, TransactionPager pager) {
+        this.accountNumber = accountNumber;
+        this.pageSize = pageSize;
+        this.pager = pager;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        ensureLoaded(index);
+        return loaded.get(index);
+    }
+
+    @Override
+    public int size() {
+        while (!exhausted) {
+            loadNextPage();
+        }
+        return loaded.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        ensureLoaded(0);
+        return loaded.isEmpty();
+    }
+
+    // BankAccount.deposit() appends to its history, the new one goes after everything already in the database
+    @Override
+    public boolean add(Transaction transaction) {
+        size();
+        return loaded.add(transaction);
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                ensureLoaded(cursor);
+                return cursor < loaded.size();
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return loaded.get(cursor++);
+            }
+        };
+    }
+
+    /**
+     * How many round trips this list has made so far.
+     */
+    public int getPagesLoaded() {
+        return pagesLoaded;
+    }
+
+    private void ensureLoaded(int index) {
+        while (index >= loaded.size() && !exhausted) {
+            loadNextPage();
+        }
+    }
+
+    private void loadNextPage() {
+        List<Transaction> page;
+        try {
+            page = pager.page(accountNumber, lastTransactionId, pageSize);
+        } catch (SQLException e) {
+            // a half loaded history would look like a complete one, so don't pretend
+            throw new IllegalStateException("Could not load transactions for account " + accountNumber, e);
+        }
+        pagesLoaded++;
+        loaded.addAll(page);
+        if (page.size() < pageSize) {
+            exhausted = true;
+        } else {
+            lastTransactionId = page.get(page.size() - 1).getTransactionId();
+        }
+    }
+}
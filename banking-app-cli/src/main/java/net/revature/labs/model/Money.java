@@ -0,0 +1,218 @@
+package net.revature.labs.model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * An amount of money as a whole number of cents, matching the decimal(10,2) columns.
+ *
+ * Immutable. Arithmetic is plain long math and throws ArithmeticException instead of wrapping
+ * around on overflow. Amounts with more than 2 decimal places are rejected rather than rounded.
+ *
+ * In JSON it is still a number with 2 decimals (e.g. "balance": 1500.00), so the API looks the same
+ * as it did with BigDecimal. Requests may send the amount as a number or a string.
+ * BigDecimal is only used at the JDBC boundary, see read() and bind().
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    public static Money of(BigDecimal amount) {
+        BigDecimal scaled;
+        try {
+            scaled = amount.setScale(2);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount: " + amount.toPlainString() + ". At most 2 decimal places are allowed.");
+        }
+        try {
+            return ofCents(scaled.unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount: " + amount.toPlainString() + ". Amount is out of range.");
+        }
+    }
+
+    /**
+     * Parses "12", "12.5", "-12.50" etc. without going through BigDecimal.
+     * Anything else (exponents...) falls back to BigDecimal parsing.
+     */
+    public static Money parse(String amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        String text = amount.trim();
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long units = 0;
+        int unitDigits = 0;
+        while (i < length && isDigit(text.charAt(i)) && unitDigits < 16) {
+            units = units * 10 + (text.charAt(i) - '0');
+            unitDigits++;
+            i++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(text.charAt(i)) && fractionDigits < 2) {
+                fraction = fraction * 10 + (text.charAt(i) - '0');
+                fractionDigits++;
+                i++;
+            }
+        }
+        if (i != length || unitDigits + fractionDigits == 0) {
+            // too many digits, an exponent or just garbage: let BigDecimal decide (and range check)
+            try {
+                return of(new BigDecimal(text));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid amount: " + amount);
+            }
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        // at most 16 digits before the point: 9999999999999999.99 is still well below Long.MAX_VALUE cents
+        long cents = units * 100 + fraction;
+        return ofCents(negative ? -cents : cents);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    public Money abs() {
+        return cents < 0 ? negate() : this;
+    }
+
+    public int signum() {
+        return Long.signum(cents);
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return cents < other.cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // the column value, or null if it is SQL NULL
+    public static Money read(ResultSet rs, String column) throws SQLException {
+        BigDecimal value = rs.getBigDecimal(column);
+        return value == null ? null : of(value);
+    }
+
+    public static void bind(PreparedStatement stmt, int index, Money amount) throws SQLException {
+        stmt.setBigDecimal(index, amount.toBigDecimal());
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    // 1500.00, -0.05
+    @Override
+    public String toString() {
+        long whole = Math.abs(cents / 100);
+        long fraction = Math.abs(cents % 100);
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        text.append(whole).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            // written as a JSON number, same as BigDecimal was
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return ofCents(Math.multiplyExact(p.getLongValue(), 100L));
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_STRING) {
+                // the number as written, never via double
+                return parse(p.getText());
+            }
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+        }
+    }
+}
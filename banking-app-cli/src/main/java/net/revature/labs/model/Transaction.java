@@ -1,22 +1,26 @@
 package net.revature.labs.model;
 
-import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class Transaction {
     // - transactions are are only allowed to be created once(via constructor) and inserted once. 
     // No updates ever to transactions table. 
     // Transactions are immutable and for historical purposes. Thus all are final and have no setters.
-    private Integer transactionId;
-    private final String accountNumber;
+    // 0 until the row has been inserted and the database has handed out an id
+    private int transactionId;
+    private final int accountNumber;
     private final String transactionType;//deposit or withdrawal
-    private final BigDecimal amount;
+    private final Money amount;
     private final Timestamp transactionDateTime;
-    private final String fromAccountNumber;
-    private final String toAccountNumber;
+    // 0 when the column is NULL
+    private final int fromAccountNumber;
+    private final int toAccountNumber;
 
 
     // public Transaction(String accountNumber, String transactionType, BigDecimal amount, Timestamp transactionDateTime,
@@ -30,12 +34,12 @@ public class Transaction {
     // }
     
     @JsonCreator
-    public Transaction(@JsonProperty("accountNumber") String accountNumber, 
+    public Transaction(@JsonProperty("accountNumber") int accountNumber, 
                        @JsonProperty("transactionType") String transactionType, 
-                       @JsonProperty("amount") BigDecimal amount, 
+                       @JsonProperty("amount") Money amount, 
                        @JsonProperty("transactionDateTime") Timestamp transactionDateTime,
-                       @JsonProperty("fromAccountNumber") String fromAccountNumber, 
-                       @JsonProperty("toAccountNumber") String toAccountNumber) {
+                       @JsonProperty("fromAccountNumber") int fromAccountNumber, 
+                       @JsonProperty("toAccountNumber") int toAccountNumber) {
         this.accountNumber = accountNumber;
         this.transactionType = transactionType;
         this.amount = amount;
@@ -47,11 +51,11 @@ public class Transaction {
 
    
     
-    public Transaction(String transactionId, String accountNumber, String transactionType, BigDecimal amount,
-            Timestamp transactionDateTime, String fromAccountNumber,
-            String toAccountNumber) {
+    public Transaction(int transactionId, int accountNumber, String transactionType, Money amount,
+            Timestamp transactionDateTime, int fromAccountNumber,
+            int toAccountNumber) {
 
-        this.transactionId = Integer.parseInt(transactionId);
+        this.transactionId = transactionId;
         this.accountNumber = accountNumber;
         this.transactionType = transactionType;
         this.amount = amount;
@@ -61,11 +65,24 @@ public class Transaction {
 
     }
 
+    // maps the current row of a transactions result set. Does not move the cursor.
+    public static Transaction fromRow(ResultSet rs) throws SQLException {
+        // getInt reads NULL as 0, which is what the model uses for "no account"
+        int transactionId = rs.getInt("transaction_id");
+        int accountNumber = rs.getInt("account_number");
+        String transactionType = rs.getString("transaction_type");
+        Money amount = Money.read(rs, "amount");
+        Timestamp transactionDateTime = rs.getTimestamp("transaction_date_time");
+        int fromAccountNumber = rs.getInt("from_account_number");
+        int toAccountNumber = rs.getInt("to_account_number");
+        return new Transaction(transactionId, accountNumber, transactionType, amount, transactionDateTime, fromAccountNumber, toAccountNumber);
+    }
+
     public String getTransactionType() {
         return this.transactionType;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return this.amount;
     }
 
@@ -73,19 +90,23 @@ public class Transaction {
         return transactionDateTime;
     }
 
-    public Integer getTransactionId() {
+    public int getTransactionId() {
         return transactionId;
     }
 
-    public String getFromAccountNumber() {
+    // account numbers go out as strings like they always have
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public int getFromAccountNumber() {
         return fromAccountNumber;
     }
 
-    public String getToAccountNumber() {
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public int getToAccountNumber() {
         return toAccountNumber;
     }
 
-    public String getAccountNumber() {
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public int getAccountNumber() {
         return accountNumber;
     }
 }
@@ -0,0 +1,180 @@
+package net.revature.labs.model;
+
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One account's transactions kept column by column in primitive arrays instead of one Transaction per row.
+ *
+ * A Transaction with its Timestamp and Money is ~100 bytes of heap spread over 3 objects. Here a row is
+ * 4 (id) + 8 (cents) + 8 (time) + 4 + 4 (counterparties) + 1 (type) = 29 bytes in 6 arrays, and the GC
+ * sees 6 objects per account no matter how long its history is.
+ *
+ * It is a read-only List<Transaction>: get(i) builds a Transaction view from the columns on demand, so
+ * it can go straight into BankAccount and out through Jackson. Views are not cached, keep the one you got
+ * if you need it twice.
+ *
+ * Fill it with append() on one thread, then share it. It is never modified after that.
+ */
+public final class TransactionHistory extends AbstractList<Transaction> implements RandomAccess {
+    // type strings are a handful of values repeated on every row, store an index into this instead.
+    // Append only, so a code never changes meaning. Guarded by synchronized on TYPE_NAMES for writes.
+    private static final List<String> TYPE_NAMES = new ArrayList<>(List.of("deposit", "withdraw", "withdrawal", "transfer", "Deposit"));
+    private static volatile String[] typeNames = TYPE_NAMES.toArray(new String[0]);
+    private static final byte NO_TYPE = -1;
+
+    private final int accountNumber;
+    private int size;
+    private int[] transactionIds;
+    private long[] cents;
+    // epoch micros, not millis: Postgres timestamps carry microseconds and the views should match the rows exactly
+    private long[] epochMicros;
+    // 0 = NULL, same as Transaction
+    private int[] fromAccountNumbers;
+    private int[] toAccountNumbers;
+    private byte[] types;
+
+    public TransactionHistory(int accountNumber, int expectedSize) {
+        int capacity = Math.max(expectedSize, 4);
+        this.accountNumber = accountNumber;
+        this.transactionIds = new int[capacity];
+        this.cents = new long[capacity];
+        this.epochMicros = new long[capacity];
+        this.fromAccountNumbers = new int[capacity];
+        this.toAccountNumbers = new int[capacity];
+        this.types = new byte[capacity];
+    }
+
+    public void append(int transactionId, String transactionType, long amountCents, Timestamp transactionDateTime,
+            int fromAccountNumber, int toAccountNumber) {
+        if (size == transactionIds.length) {
+            grow();
+        }
+        transactionIds[size] = transactionId;
+        cents[size] = amountCents;
+        epochMicros[size] = toEpochMicros(transactionDateTime);
+        fromAccountNumbers[size] = fromAccountNumber;
+        toAccountNumbers[size] = toAccountNumber;
+        types[size] = typeCode(transactionType);
+        size++;
+    }
+
+    public void append(Transaction tx) {
+        append(tx.getTransactionId(), tx.getTransactionType(), tx.getAmount().getCents(), tx.getTransactionDateTime(),
+            tx.getFromAccountNumber(), tx.getToAccountNumber());
+    }
+
+    private void grow() {
+        int capacity = transactionIds.length + (transactionIds.length >> 1);
+        transactionIds = Arrays.copyOf(transactionIds, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+        epochMicros = Arrays.copyOf(epochMicros, capacity);
+        fromAccountNumbers = Arrays.copyOf(fromAccountNumbers, capacity);
+        toAccountNumbers = Arrays.copyOf(toAccountNumbers, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+
+    /**
+     * Drops the spare capacity left by growing. Call it once loading is done.
+     */
+    public void trimToSize() {
+        if (size < transactionIds.length) {
+            transactionIds = Arrays.copyOf(transactionIds, size);
+            cents = Arrays.copyOf(cents, size);
+            epochMicros = Arrays.copyOf(epochMicros, size);
+            fromAccountNumbers = Arrays.copyOf(fromAccountNumbers, size);
+            toAccountNumbers = Arrays.copyOf(toAccountNumbers, size);
+            types = Arrays.copyOf(types, size);
+        }
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Transaction(transactionIds[index], accountNumber, typeName(types[index]), Money.ofCents(cents[index]),
+            fromEpochMicros(epochMicros[index]), fromAccountNumbers[index], toAccountNumbers[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+
+    // column accessors for callers that only need one field, no view is built
+
+    public int getTransactionId(int index) {
+        checkIndex(index);
+        return transactionIds[index];
+    }
+
+    public long getAmountCents(int index) {
+        checkIndex(index);
+        return cents[index];
+    }
+
+    public long getEpochMicros(int index) {
+        checkIndex(index);
+        return epochMicros[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    static byte typeCode(String transactionType) {
+        if (transactionType == null) {
+            return NO_TYPE;
+        }
+        String[] names = typeNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(transactionType)) {
+                return (byte) i;
+            }
+        }
+        synchronized (TYPE_NAMES) {
+            int code = TYPE_NAMES.indexOf(transactionType);
+            if (code < 0) {
+                if (TYPE_NAMES.size() > Byte.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too many transaction types, cannot store " + transactionType);
+                }
+                TYPE_NAMES.add(transactionType);
+                typeNames = TYPE_NAMES.toArray(new String[0]);
+                code = TYPE_NAMES.size() - 1;
+            }
+            return (byte) code;
+        }
+    }
+
+    static String typeName(byte code) {
+        return code == NO_TYPE ? null : typeNames[code];
+    }
+
+    static long toEpochMicros(Timestamp timestamp) {
+        if (timestamp == null) {
+            return Long.MIN_VALUE;
+        }
+        // getTime() already includes the millis part of the nanos
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    static Timestamp fromEpochMicros(long micros) {
+        if (micros == Long.MIN_VALUE) {
+            return null;
+        }
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+        timestamp.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+        return timestamp;
+    }
+}
@@ -0,0 +1,13 @@
+package net.revature.labs.model;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads one page of an account's transactions: up to limit rows with transaction_id > afterTransactionId,
+ * in transaction_id order. Used by LazyTransactionList.
+ */
+@FunctionalInterface
+public interface TransactionPager {
+    List<Transaction> page(int accountNumber, int afterTransactionId, int limit) throws SQLException;
+}
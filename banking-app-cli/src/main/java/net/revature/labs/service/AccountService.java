@@ -1,46 +1,91 @@
 package net.revature.labs.service;
 
 import net.revature.labs.dao.BankAccountDAO;
+import net.revature.labs.dao.RowHandler;
+import net.revature.labs.dao.TransactionCursor;
+import net.revature.labs.dao.TransactionFilter;
+import net.revature.labs.engine.BalanceEngine;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.List;
 
 public class AccountService {
     private BankAccountDAO accountDAO;
+    // when it is on, balances live in the engine and the database follows (see BalanceEngine)
+    private BalanceEngine balanceEngine;
     public AccountService() throws SQLException, IOException, ClassNotFoundException {
-        this.accountDAO = new BankAccountDAO();
+        this(new BankAccountDAO(), BalanceEngine.shared());
+    }
+
+    public AccountService(BankAccountDAO accountDAO, BalanceEngine balanceEngine) {
+        this.accountDAO = accountDAO;
+        this.balanceEngine = balanceEngine;
     }
 
     public BankAccount createBankAccount(String userEmail, String accountType) throws SQLException {
-        return accountDAO.createBankAccount(userEmail, accountType);
+        BankAccount account = accountDAO.createBankAccount(userEmail, accountType);
+        if (balanceEngine.isEnabled() && account != null) {
+            balanceEngine.open(account.getAccountNumber());
+        }
+        return account;
     }
 
     public List<BankAccount> getAllAccountsByUserEmail(String userEmail) throws SQLException {
-        return accountDAO.getAllAccountsByUserEmail(userEmail);
+        return withEngineBalances(accountDAO.getAllAccountsByUserEmail(userEmail));
     }
-    public void deposit(BankAccount bankAccount, BigDecimal amount) throws NumberFormatException, SQLException{
-        accountDAO.deposit(bankAccount, amount);
+    public BankAccount deposit(BankAccount bankAccount, Money amount) throws NumberFormatException, SQLException{
+        if (balanceEngine.isEnabled()) {
+            BankAccount updatedBankAccount = depositToAccount(bankAccount.getAccountNumber(), amount);
+            bankAccount.setBalance(updatedBankAccount.getBalance());
+            return updatedBankAccount;
+        }
+        return accountDAO.deposit(bankAccount, amount);
     }
 
 
-    public List<Transaction> getTransactionHistory(String email) {
-        return null;
+    public List<Transaction> getTransactionHistory(int accountNumber, TransactionFilter filter, TransactionCursor after, int limit) throws SQLException {
+        return accountDAO.getTransactionHistory(accountNumber, filter, after, limit);
     }
 
-    public void deleteAccount(int id) {
+    public BankAccount getAccount(int accountNumber) throws SQLException {
+        return withEngineBalance(accountDAO.getAccount(accountNumber));
+    }
 
+    // the row's balance can trail the engine's by whatever the projector hasn't written yet
+    private BankAccount withEngineBalance(BankAccount account) throws SQLException {
+        if (balanceEngine.isEnabled() && account != null) {
+            Money balance = balanceEngine.balance(account.getAccountNumber());
+            if (balance != null) {
+                account.setBalance(balance);
+            }
+        }
+        return account;
     }
 
-    public BankAccount getAccount(String accountNumber) {
-        return accountDAO.getAccount(accountNumber);
+    private List<BankAccount> withEngineBalances(List<BankAccount> accounts) throws SQLException {
+        for (BankAccount account : accounts) {
+            withEngineBalance(account);
+        }
+        return accounts;
     }
 
-    public void transfer(int id, int id1, BigDecimal bigDecimal) {
+    // the account as of right after a posting the engine made. Its history comes from the database and
+    // may not have that posting in it yet.
+    private BankAccount accountAfterPosting(int accountNumber, Money balance) {
+        BankAccount account = accountDAO.getAccount(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found");
+        }
+        account.setBalance(balance);
+        return account;
+    }
+
+    public void transfer(int id, int id1, Money amount) {
 
     }
 
@@ -51,7 +96,7 @@ public class AccountService {
         return null;
     }
 
-    public void transferByEmail(String email, String email1, BigDecimal bigDecimal) {
+    public void transferByEmail(String email, String email1, Money amount) {
     }
 
     public Boolean doesAccountExistByEmail(String userEmail) {
@@ -61,38 +106,103 @@ public class AccountService {
     public BankAccount createAccount(BankAccount account) throws SQLException {
         String userEmail = account.getEmail();
         String accountType = account.getAccountType();
-        BankAccount addedAccount = accountDAO.createBankAccount(userEmail, accountType);
+        BankAccount addedAccount = createBankAccount(userEmail, accountType);
         return addedAccount;
     }
 
     public void deposit(BankAccount bankAccount, String amount) throws NumberFormatException, SQLException {
-        accountDAO.deposit(bankAccount, BigDecimal.valueOf(Long.valueOf(amount)));
+        deposit(bankAccount, Money.parse(amount));
     }
 
-    public void deleteAccount(String accountNumber) {
+    public void deleteAccount(int accountNumber) throws SQLException {
+        if (balanceEngine.isEnabled()) {
+            // refused unless the balance is 0, and returns once the database has every change to the account
+            balanceEngine.close(accountNumber, false);
+            accountDAO.deleteAccount(accountNumber);
+            return;
+        }
         BankAccount account = accountDAO.getAccount(accountNumber);
-        if(account.getBalance().compareTo(BigDecimal.ZERO) == 0){
+        if(account.getBalance().isZero()){
             accountDAO.deleteAccount(accountNumber);
         }else{
             throw new IllegalArgumentException("Account is not empty");
         }
     }
 
-    public void withdraw(BankAccount foundBankAccount, BigDecimal amount) {
-        accountDAO.withdraw(foundBankAccount, amount);   
+    public BankAccount withdraw(BankAccount foundBankAccount, Money amount) throws SQLException {
+        if (balanceEngine.isEnabled()) {
+            BankAccount updatedBankAccount = withdrawFromAccount(foundBankAccount.getAccountNumber(), amount);
+            foundBankAccount.setBalance(updatedBankAccount.getBalance());
+            return updatedBankAccount;
+        }
+        return accountDAO.withdraw(foundBankAccount, amount);
+    }
+
+    public BankAccount depositToAccount(int accountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }
+        if (balanceEngine.isEnabled()) {
+            return accountAfterPosting(accountNumber, balanceEngine.post(accountNumber, amount));
+        }
+        return accountDAO.depositToAccount(accountNumber, amount);
     }
 
-    public List<BankAccount> getAllAccounts() {
-        return accountDAO.getAllAccounts();
+    public BankAccount withdrawFromAccount(int accountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        if (balanceEngine.isEnabled()) {
+            return accountAfterPosting(accountNumber, balanceEngine.post(accountNumber, amount.negate()));
+        }
+        return accountDAO.withdrawFromAccount(accountNumber, amount);
+    }
+
+    public List<BankAccount> getAllAccounts() throws SQLException {
+        return withEngineBalances(accountDAO.getAllAccounts());
     }
 
     public List<Transaction> getAllTransactions() {
         return accountDAO.getAllTransactions();
     }
 
-    public void deleteAccountForAdmin(String accountNumber, User user) {
+    public void deleteAccountForAdmin(int accountNumber, User user) throws SQLException {
        if(user.isAdmin()){
+            if (balanceEngine.isEnabled()) {
+                // admins can delete an account with money in it, same as without the engine
+                balanceEngine.close(accountNumber, true);
+            }
             accountDAO.deleteAccount(accountNumber);
        }
     }
+
+    public List<BankAccount> getAccountsPage(int afterAccountNumber, int limit) throws SQLException {
+        return withEngineBalances(accountDAO.getAccountsPage(afterAccountNumber, limit));
+    }
+
+    public List<Transaction> getTransactionsPage(int afterTransactionId, int limit) {
+        return accountDAO.getTransactionsPage(afterTransactionId, limit);
+    }
+
+    public List<Transaction> getTransactionsPageForAccount(int accountNumber, int afterTransactionId, int limit) throws SQLException {
+        return accountDAO.getTransactionsPageForAccount(accountNumber, afterTransactionId, limit);
+    }
+
+    public void streamAllAccounts(RowHandler<BankAccount> handler) throws SQLException, IOException {
+        if (!balanceEngine.isEnabled()) {
+            accountDAO.streamAllAccounts(handler);
+            return;
+        }
+        accountDAO.streamAllAccounts(account -> {
+            try {
+                handler.handle(withEngineBalance(account));
+            } catch (SQLException e) {
+                throw new IOException("Could not read the balance of account " + account.getAccountNumber(), e);
+            }
+        });
+    }
+
+    public void streamAllTransactions(RowHandler<Transaction> handler) throws SQLException, IOException {
+        accountDAO.streamAllTransactions(handler);
+    }
 }
@@ -0,0 +1,34 @@
+package net.revature.labs.service;
+
+/**
+ * The claims carried by a signed 'Auth' cookie. Created by AuthTokenService once the signature checked out.
+ */
+public class AuthToken {
+    private final int userId;
+    private final boolean isAdmin;
+    private final long expiresAtSeconds;
+    private final String tokenId;
+
+    public AuthToken(int userId, boolean isAdmin, long expiresAtSeconds, String tokenId) {
+        this.userId = userId;
+        this.isAdmin = isAdmin;
+        this.expiresAtSeconds = expiresAtSeconds;
+        this.tokenId = tokenId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public boolean isAdmin() {
+        return isAdmin;
+    }
+
+    public long getExpiresAtSeconds() {
+        return expiresAtSeconds;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+}
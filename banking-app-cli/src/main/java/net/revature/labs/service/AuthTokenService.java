@@ -0,0 +1,138 @@
+package net.revature.labs.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.revature.labs.model.User;
+
+/**
+ * Issues and verifies stateless, HMAC-SHA256 signed auth tokens.
+ *
+ * Token format: base64url(payload) + "." + base64url(hmac(payload))
+ * where payload is "userId:isAdmin:expiresAtEpochSeconds:tokenId".
+ *
+ * Any node that has the same secret can verify a token on its own, without the database
+ * or shared session state. Configure the secret with -Dauth.secret=... or the AUTH_TOKEN_SECRET
+ * environment variable; and the revocation file with -Dauth.revocation.file=...
+ */
+public class AuthTokenService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final RevocationList revocationList;
+    private final SecureRandom random = new SecureRandom();
+    // Mac is not thread safe and expensive to set up, so each thread keeps its own
+    private final ThreadLocal<Mac> macs;
+
+    public AuthTokenService(byte[] secret, long ttlSeconds, RevocationList revocationList) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.revocationList = revocationList;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public static AuthTokenService fromSystemConfig() {
+        String secret = System.getProperty("auth.secret", System.getenv("AUTH_TOKEN_SECRET"));
+        byte[] secretBytes;
+        if (secret == null || secret.isEmpty()) {
+            // tokens from this process will not verify on other nodes or after a restart
+            System.err.println("No auth.secret configured, using a random secret for this process.");
+            secretBytes = new byte[32];
+            new SecureRandom().nextBytes(secretBytes);
+        } else {
+            secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        long ttlSeconds = Long.parseLong(System.getProperty("auth.ttlSeconds", "86400"));
+        String revocationFile = System.getProperty("auth.revocation.file");
+        RevocationList revocationList = revocationFile == null
+            ? RevocationList.empty()
+            : new RevocationList(Paths.get(revocationFile), 5000);
+        return new AuthTokenService(secretBytes, ttlSeconds, revocationList);
+    }
+
+    public String issue(User user) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        byte[] tokenIdBytes = new byte[9];
+        random.nextBytes(tokenIdBytes);
+        String tokenId = ENCODER.encodeToString(tokenIdBytes);
+        String payload = user.getUserId() + ":" + (user.isAdmin() ? 1 : 0) + ":" + expiresAt + ":" + tokenId;
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.US_ASCII));
+        return encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload));
+    }
+
+    /**
+     * @return the token's claims if the signature is valid, it has not expired and it is not revoked; otherwise null.
+     */
+    public AuthToken verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        String encodedPayload = token.substring(0, dot);
+        byte[] signature;
+        try {
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // constant time comparison, so the time taken doesn't leak how much of the signature matched
+        if (!MessageDigest.isEqual(sign(encodedPayload), signature)) {
+            return null;
+        }
+
+        AuthToken authToken = parsePayload(encodedPayload);
+        if (authToken == null || authToken.getExpiresAtSeconds() < System.currentTimeMillis() / 1000) {
+            return null;
+        }
+        if (revocationList.isRevoked(authToken)) {
+            return null;
+        }
+        return authToken;
+    }
+
+    private AuthToken parsePayload(String encodedPayload) {
+        try {
+            String payload = new String(DECODER.decode(encodedPayload), StandardCharsets.US_ASCII);
+            String[] parts = payload.split(":", 4);
+            if (parts.length != 4) {
+                return null;
+            }
+            return new AuthToken(Integer.parseInt(parts[0]), "1".equals(parts[1]), Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        Mac mac = macs.get();
+        return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Unable to set up " + ALGORITHM, e);
+        }
+    }
+
+    public RevocationList getRevocationList() {
+        return revocationList;
+    }
+}
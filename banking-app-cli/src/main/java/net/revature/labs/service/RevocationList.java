@@ -0,0 +1,98 @@
+package net.revature.labs.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Revoked auth tokens, read from a plain text file so it can be changed without a restart.
+ *
+ * One entry per line:
+ *   token:<tokenId>   revokes a single token
+ *   user:<userId>     revokes every token issued to that user
+ * Blank lines and lines starting with # are ignored.
+ *
+ * The file is re-read when its modification time changes, checked at most once per reloadIntervalMillis.
+ */
+public final class RevocationList {
+    private final Path file;
+    private final long reloadIntervalMillis;
+    // replaced as a whole on reload, so readers never need a lock
+    private volatile Set<String> revokedTokenIds = Set.of();
+    private volatile Set<Integer> revokedUserIds = Set.of();
+    private volatile long lastCheckedAt = 0;
+    private volatile long lastModified = -1;
+    // not synchronized: reload does file I/O, which would pin a virtual thread holding a monitor
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    public RevocationList(Path file, long reloadIntervalMillis) {
+        this.file = file;
+        this.reloadIntervalMillis = reloadIntervalMillis;
+        reload();
+    }
+
+    // no file configured: nothing is ever revoked
+    public static RevocationList empty() {
+        return new RevocationList(null, Long.MAX_VALUE);
+    }
+
+    public boolean isRevoked(AuthToken token) {
+        reloadIfChanged();
+        return revokedUserIds.contains(token.getUserId()) || revokedTokenIds.contains(token.getTokenId());
+    }
+
+    private void reloadIfChanged() {
+        long now = System.currentTimeMillis();
+        if (file == null || now - lastCheckedAt < reloadIntervalMillis) {
+            return;
+        }
+        lastCheckedAt = now;
+        try {
+            if (Files.exists(file) && Files.getLastModifiedTime(file).toMillis() != lastModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Re-read the file now. Keeps the previous list if the file can't be read.
+     */
+    public void reload() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            List<String> lines = Files.readAllLines(file);
+            Set<String> tokenIds = new HashSet<>();
+            Set<Integer> userIds = new HashSet<>();
+            for (String line : lines) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("token:")) {
+                    tokenIds.add(line.substring("token:".length()).trim());
+                } else if (line.startsWith("user:")) {
+                    userIds.add(Integer.parseInt(line.substring("user:".length()).trim()));
+                } else {
+                    System.err.println("Ignoring unknown revocation entry: " + line);
+                }
+            }
+            revokedTokenIds = Set.copyOf(tokenIds);
+            revokedUserIds = Set.copyOf(userIds);
+            lastModified = modified;
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+}
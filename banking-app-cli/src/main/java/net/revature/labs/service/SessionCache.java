@@ -0,0 +1,103 @@
+package net.revature.labs.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.revature.labs.model.User;
+
+/**
+ * In-memory cache of logged in users keyed by their auth token (the 'Auth' cookie value).
+ *
+ * Bounded: once maxEntries is reached the least recently used session is dropped.
+ * TTL: a session is only trusted for ttlMillis after it was cached, then it has to be looked up again.
+ * A dropped or expired session is not a logout, it just costs one database lookup to re-cache.
+ * Every put carries a stamp taken before the user was read; a put that raced an invalidation is dropped,
+ * so a lookup that read the user before an update or delete can't cache the old row after it.
+ */
+public class SessionCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    // access ordered LinkedHashMap = LRU. Guarded by synchronized on this. The critical sections
+    // never block, so a virtual thread holding the monitor doesn't pin its carrier for long.
+    private final LinkedHashMap<String, Session> sessions;
+    private long invalidations = 0;
+
+    public SessionCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > SessionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Take before reading the user from the database, pass to put() afterwards.
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    public synchronized void put(String token, User user, long stamp) {
+        if (token == null || user == null || stamp != invalidations) {
+            return;
+        }
+        sessions.put(token, new Session(user, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * @return the cached user for this token, or null if there is no live session for it.
+     */
+    public synchronized User get(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.expiresAt < System.currentTimeMillis()) {
+            sessions.remove(token);
+            return null;
+        }
+        return session.user;
+    }
+
+    public synchronized void invalidate(String token) {
+        invalidations++;
+        sessions.remove(token);
+    }
+
+    // drop every session belonging to this user, e.g. after their details (email, admin flag) changed
+    public synchronized void invalidateUser(int userId) {
+        invalidations++;
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().user.getUserId() == userId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        sessions.clear();
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private static class Session {
+        private final User user;
+        private final long expiresAt;
+
+        Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
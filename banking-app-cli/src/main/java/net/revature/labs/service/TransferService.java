@@ -0,0 +1,89 @@
+package net.revature.labs.service;
+
+import net.revature.labs.dao.BankAccountDAO;
+import net.revature.labs.engine.BalanceEngine;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Transfers money between two bank accounts.
+ * Both legs of the transfer run in one database transaction (see BankAccountDAO.transfer),
+ * and transfers that lose a serialization or deadlock race in postgres are retried.
+ * With the balance engine on, the engine moves the money instead and there is nothing to retry.
+ */
+public class TransferService {
+    // postgres SQLSTATEs that mean "your transaction lost a race, try it again"
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    private final BankAccountDAO accountDAO;
+    private final int maxRetries;
+    private final BalanceEngine balanceEngine;
+
+    public TransferService() throws ClassNotFoundException, SQLException, IOException {
+        this(new BankAccountDAO(), 3, BalanceEngine.shared());
+    }
+
+    public TransferService(BankAccountDAO accountDAO, int maxRetries) {
+        this(accountDAO, maxRetries, BalanceEngine.disabled());
+    }
+
+    public TransferService(BankAccountDAO accountDAO, int maxRetries, BalanceEngine balanceEngine) {
+        this.accountDAO = accountDAO;
+        this.maxRetries = maxRetries;
+        this.balanceEngine = balanceEngine;
+    }
+
+    /**
+     * Move amount from one account to another and return the updated source account.
+     * Throws IllegalArgumentException if the transfer is not allowed (bad amount, missing account, insufficient funds).
+     */
+    public BankAccount transfer(int fromAccountNumber, int toAccountNumber, Money amount) throws SQLException {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        if (fromAccountNumber == toAccountNumber) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (balanceEngine.isEnabled()) {
+            Money balance = balanceEngine.transfer(fromAccountNumber, toAccountNumber, amount);
+            BankAccount sourceAccount = accountDAO.getAccount(fromAccountNumber);
+            // the row is gone (closed right after the transfer emptied it) or couldn't be read
+            if (sourceAccount == null) {
+                throw new IllegalArgumentException("Account not found");
+            }
+            sourceAccount.setBalance(balance);
+            return sourceAccount;
+        }
+        int attempt = 0;
+        while (true) {
+            try {
+                return accountDAO.transfer(fromAccountNumber, toAccountNumber, amount);
+            } catch (SQLException e) {
+                attempt++;
+                if (!isRetryable(e) || attempt > maxRetries) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    static boolean isRetryable(SQLException e) {
+        String sqlState = e.getSQLState();
+        return SERIALIZATION_FAILURE.equals(sqlState) || DEADLOCK_DETECTED.equals(sqlState);
+    }
+
+    // small randomized wait so the transactions that collided don't collide again right away
+    private void backOff(int attempt) throws SQLException {
+        try {
+            Thread.sleep((long) (Math.random() * 10 * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying transfer", e);
+        }
+    }
+}
@@ -4,13 +4,20 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
+import net.revature.labs.dao.RowHandler;
 import net.revature.labs.dao.UserDAOImpl;
 import net.revature.labs.model.User;
 
 public class UserService {
     private UserDAOImpl userDAOImpl;
+    // auth token -> logged in user, so authenticating a request doesn't need the database
+    private SessionCache sessionCache;
+    private static final int MAX_SESSIONS = 10000;
+    private static final long SESSION_TTL_MILLIS = 30 * 60 * 1000;
+
     public UserService() throws ClassNotFoundException, SQLException, IOException  {
         this.userDAOImpl = new UserDAOImpl();
+        this.sessionCache = new SessionCache(MAX_SESSIONS, SESSION_TTL_MILLIS);
     }
     public User registerUser(User user) throws ClassNotFoundException, SQLException, IOException {
         User registeredUser = userDAOImpl.registerUser(user);
@@ -20,16 +27,77 @@ public class UserService {
        return userDAOImpl.loginUser(email, password);
     }
 
+    // taken by the login handler before loginUser, see SessionCache
+    public long sessionStamp() {
+        return sessionCache.stamp();
+    }
+
+    // called by the login handler with the token it hands out in the 'Auth' cookie
+    public void startSession(String authToken, User user, long sessionStamp) {
+        sessionCache.put(authToken, user, sessionStamp);
+    }
+
     public Boolean validateCookie(String userEmailCookie) {
-       String userEmail = userEmailCookie;
-        return userDAOImpl.doesUserAccountExist(userEmail);
+        return getUserForCookie(userEmailCookie) != null;
+    }
+
+    /**
+     * Resolve the 'Auth' cookie to the logged in user. Served from the session cache;
+     * only the first request for a token (or one after the session expired) goes to the database.
+     * @return the user, or null if the cookie doesn't belong to any user
+     */
+    public User getUserForCookie(String userEmailCookie) {
+        if (userEmailCookie == null) {
+            return null;
+        }
+        User user = sessionCache.get(userEmailCookie);
+        if (user != null) {
+            return user;
+        }
+        long stamp = sessionCache.stamp();
+        try {
+            user = userDAOImpl.getUserByEmail(userEmailCookie);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        sessionCache.put(userEmailCookie, user, stamp);
+        return user;
     }
+
+    // Same as getUserForCookie but for a signed token whose claims have already been verified,
+    // so on a cache miss the user is looked up by id.
+    public User getUserForToken(String authToken, int userId) {
+        User user = sessionCache.get(authToken);
+        if (user == null) {
+            long stamp = sessionCache.stamp();
+            user = userDAOImpl.getUserById(userId);
+            sessionCache.put(authToken, user, stamp);
+        }
+        return user;
+    }
+
     public User updateUser(User user) throws SQLException {
-        return userDAOImpl.updateUserAndReturnUser(user);
+        User updatedUser = userDAOImpl.updateUserAndReturnUser(user);
+        // email or admin flag may have changed, cached sessions for this user are stale. Only after the
+        // write: invalidating before it would let a lookup re-cache the old row in between
+        sessionCache.invalidateUser(user.getUserId());
+        return updatedUser;
     }
     public User updateUserById(int ownerUserId, User user) throws SQLException {
-        return userDAOImpl.updateUserById(ownerUserId, user);        
+        User updatedUser = userDAOImpl.updateUserById(ownerUserId, user);
+        sessionCache.invalidateUser(ownerUserId);
+        return updatedUser;
     }
+    public void deleteUserByEmail(String email) throws SQLException {
+        User user = userDAOImpl.getUserByEmail(email);
+        userDAOImpl.deleteUserByEmail(email);
+        if (user != null) {
+            sessionCache.invalidateUser(user.getUserId());
+        }
+    }
+    // The accounts nested in these users have the balance from the database. With the balance engine on it
+    // can trail by whatever the projector hasn't written yet; /admin/accounts and /account/{n} have the engine's.
     public List<User> getAllUsers() {
         return userDAOImpl.getAllUsers();
     }
@@ -39,4 +107,10 @@ public class UserService {
     public User getUserById(int ownerUserId) {
         return userDAOImpl.getUserById(ownerUserId);
     }
+    public List<User> getUsersPage(int afterUserId, int limit) throws SQLException {
+        return userDAOImpl.getUsersPage(afterUserId, limit);
+    }
+    public void streamAllUsers(RowHandler<User> handler) throws SQLException, IOException {
+        userDAOImpl.streamAllUsers(handler);
+    }
 }
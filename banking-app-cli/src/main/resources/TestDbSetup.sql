@@ -2,6 +2,8 @@
     drop table if exists bank_accounts CASCADE;
     drop table if exists transactions CASCADE;
     drop table if exists authorized_users CASCADE;
+    drop table if exists schema_migrations CASCADE;
+    drop table if exists engine_checkpoints CASCADE;
     create table users(
         user_id SERIAL primary key,
         name varchar(255) not null,
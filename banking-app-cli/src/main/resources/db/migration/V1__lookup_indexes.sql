@@ -0,0 +1,21 @@
+-- Secondary indexes for the columns the DAOs filter on. Without them every lookup
+-- below is a sequential scan of the whole table.
+
+-- findTransactionsForBankAccount, the ledger history in postToLedger, UserDAOImpl's
+-- account_number = ANY(?). Leading column serves the equality filter, the second one
+-- lets per-account history come back in date order without a sort.
+create index if not exists idx_transactions_account_date
+    on transactions (account_number, transaction_date_time);
+
+-- findAuthorizedUsersForBankAccount and the array_agg in postToLedger.
+-- Carries the email so the lookup is an index only scan.
+create index if not exists idx_authorized_users_account_email
+    on authorized_users (account_number, authorized_user_email);
+
+-- getAccountsByEmail, getAllAccountsByUserEmail, doesAccountExistByEmail
+create index if not exists idx_bank_accounts_email
+    on bank_accounts (email);
+
+-- UserDAOImpl.loadBankAccountsForUsers (user_id = ANY(?))
+create index if not exists idx_bank_accounts_user_id
+    on bank_accounts (user_id);
@@ -0,0 +1,10 @@
+-- Keyset index for the account history endpoint (BankAccountDAO.getTransactionHistory).
+-- Its ORDER BY transaction_date_time DESC, transaction_id DESC and the
+-- (transaction_date_time, transaction_id) < cursor condition are both a backward range scan
+-- of this index, so a page deep in the history costs the same as the first one.
+create index if not exists idx_transactions_account_date_id
+    on transactions (account_number, transaction_date_time, transaction_id);
+
+-- Same leading columns, everything V1's index was used for this one serves too.
+-- One less index to maintain on every ledger insert.
+drop index if exists idx_transactions_account_date;
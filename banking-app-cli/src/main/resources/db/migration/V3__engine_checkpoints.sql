@@ -0,0 +1,7 @@
+-- How far each balance engine shard's journal has been written into bank_accounts/transactions
+-- (PostgresEngineStore). Moved in the same transaction as the rows it covers, so after a crash
+-- the journal records past it are exactly the ones the database is missing.
+create table if not exists engine_checkpoints (
+    shard int primary key,
+    sequence bigint not null
+);
@@ -5,10 +5,14 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.revature.labs.controller.BankingAPIController;
+import net.revature.labs.controller.ExecutionMode;
+import net.revature.labs.dao.UserDAOImpl;
 import net.revature.labs.dao.util.DBUtil;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
+import net.revature.labs.service.AuthTokenService;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -20,16 +24,18 @@ import org.junit.jupiter.api.TestInstance;
 import util.TestUtil;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 // Separation of Cleanup Logic:
 //  @AfterEach for cleaning up test-specific resources, 
@@ -40,10 +46,14 @@ public class BankingAPITest {
     private BankingAPIController bankingAPIController;
     private HttpClient webClient;
     private ObjectMapper objectMapper;
+    // email -> the Auth cookie its login got back
+    private final Map<String, String> authCookies = new HashMap<>();
 
     @BeforeAll
     public static void setUp() throws InterruptedException, SQLException, IOException, ClassNotFoundException {
         TestUtil.setEnvironmentToTest();
+        // a fixed secret, so a test can sign a token of its own that the server accepts
+        System.setProperty("auth.secret", "banking-api-test-secret");
         DBUtil.resetTestDatabase();
        Thread.sleep(1000); // ensure the environment is ready
     }
@@ -134,9 +144,9 @@ public class BankingAPITest {
             // String accountNumber;
         assertEquals(loggedInUser.getUserId(), createdAccount.getUserId());
         assertEquals("checking", createdAccount.getAccountType());
-        assertEquals(new BigDecimal("0"), createdAccount.getBalance());
+        assertEquals(Money.parse("0"), createdAccount.getBalance());
         assertEquals(loggedInUser.getEmail(), createdAccount.getEmail());
-        assertEquals(10, createdAccount.getAccountNumber().length());
+        assertEquals(10, String.valueOf(createdAccount.getAccountNumber()).length());
         //verify account has list of transactions
         //verify account has list of authorized users
         assertEquals(0, createdAccount.getTransactions().size());
@@ -163,25 +173,25 @@ public class BankingAPITest {
                 // verify the transaction details
 
             //deposit some money using the account number on url path: account/deposit/{accountNumber}
-            BigDecimal amount = new BigDecimal("1500");
+            Money amount = Money.parse("1500");
             BankAccount accountAfterDeposit = depositIntoAccount(createdAccount.getAccountNumber(), loggedInUser.getEmail(), amount);
             
              
             assertEquals("checking", accountAfterDeposit.getAccountType());
             assertEquals("rich@jane.com", accountAfterDeposit.getEmail());
-            assertEquals(new BigDecimal("1500.00"), accountAfterDeposit.getBalance());
-            assertEquals(10, accountAfterDeposit.getAccountNumber().length());
+            assertEquals(Money.parse("1500.00"), accountAfterDeposit.getBalance());
+            assertEquals(10, String.valueOf(accountAfterDeposit.getAccountNumber()).length());
             assertEquals(1, accountAfterDeposit.getTransactions().size());
 
             //verify transaction details
             assertEquals(1, accountAfterDeposit.getTransactions().size());
             assertEquals(createdAccount.getAccountNumber(), accountAfterDeposit.getTransactions().get(0).getAccountNumber());
             assertEquals("deposit", accountAfterDeposit.getTransactions().get(0).getTransactionType());
-            assertEquals(new BigDecimal("1500"), accountAfterDeposit.getTransactions().get(0).getAmount());
-            assertEquals(10, accountAfterDeposit.getTransactions().get(0).getFromAccountNumber().length());
-            assertEquals(10, accountAfterDeposit.getTransactions().get(0).getAccountNumber().length());
-            assertEquals(new BigDecimal("1500"), accountAfterDeposit.getTransactions().get(0).getAmount());
-            assertEquals(10, accountAfterDeposit.getTransactions().get(0).getToAccountNumber().length());
+            assertEquals(Money.parse("1500"), accountAfterDeposit.getTransactions().get(0).getAmount());
+            assertEquals(10, String.valueOf(accountAfterDeposit.getTransactions().get(0).getFromAccountNumber()).length());
+            assertEquals(10, String.valueOf(accountAfterDeposit.getTransactions().get(0).getAccountNumber()).length());
+            assertEquals(Money.parse("1500"), accountAfterDeposit.getTransactions().get(0).getAmount());
+            assertEquals(10, String.valueOf(accountAfterDeposit.getTransactions().get(0).getToAccountNumber()).length());
             //verfify the  tx toNumber
             assertEquals(createdAccount.getAccountNumber(), accountAfterDeposit.getTransactions().get(0).getToAccountNumber());
             //assert tx date is from today. ignore time
@@ -190,6 +200,9 @@ public class BankingAPITest {
             
             //verify user cant delete account with non zero balance
             testUserCantDeleteAccountWithNonZeroBalance(accountAfterDeposit, loggedInUser);
+
+            //verify user cant deposit a negative amount
+            testUserCantDepositNegativeAmount(accountAfterDeposit, loggedInUser);
            
            
             // test that user can Withdraw positive dollar amounts from a bank account, reducing the balance
@@ -204,11 +217,11 @@ public class BankingAPITest {
             //verify the account balance is reduced
 
             //withdraw some money using the account number on url path: account/withdraw/{accountNumber}
-            BigDecimal withdrawalAmount = new BigDecimal("500.00");
+            Money withdrawalAmount = Money.parse("500.00");
             HttpRequest withdrawRequest = HttpRequest.newBuilder()
                 .uri(URI.create("http://localhost:7000/account/withdraw/" + accountAfterDeposit.getAccountNumber()))
                 .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-                .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+                .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
                 .POST(HttpRequest.BodyPublishers.ofString("{" +
                     "\"amount\": \""+ withdrawalAmount + "\", " + // Convert BigDecimal to String
                     "\"fromAccountNumber\": \"" + accountAfterDeposit.getAccountNumber() + "\"" + // Ensure accountNumber is treated as a string
@@ -235,7 +248,7 @@ public class BankingAPITest {
             assertEquals("checking", accountAfterWithdrawal.getAccountType());
             //verify balance is reduced by the amount withdrawn
             // assertEquals(new BigDecimal("1000.00"), accountAfterWithdrawal.getBalance());
-            assertEquals(withdrawalAmount, accountAfterDeposit.getBalance().subtract(accountAfterWithdrawal.getBalance()));
+            assertEquals(withdrawalAmount, accountAfterDeposit.getBalance().minus(accountAfterWithdrawal.getBalance()));
             //try withdraawing a negative amount
             //verify the account is not deleted and a message is in the response body
             //response message is "Cannot withdraw negative amount"
@@ -245,11 +258,11 @@ public class BankingAPITest {
     private void testUserCantWithdrawNegativeAmount(BankAccount accountAfterWithdrawal, User loggedInUser) {
         //try withdrawing a negative amount
         //verify the response message is "Cannot withdraw negative amount"
-        BigDecimal negativeAmount = new BigDecimal("-500");
+        Money negativeAmount = Money.parse("-500");
         HttpRequest withdrawRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/withdraw/" + accountAfterWithdrawal.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .POST(HttpRequest.BodyPublishers.ofString("{" +
                 "\"amount\": \""+ negativeAmount + "\", " + // Convert BigDecimal to String
                 "\"fromAccountNumber\": \"" + accountAfterWithdrawal.getAccountNumber() + "\"" + // Ensure accountNumber is treated as a string
@@ -267,6 +280,30 @@ public class BankingAPITest {
         assertEquals("Cannot withdraw negative amount", withdrawResponse.body());
     }
         
+    private void testUserCantDepositNegativeAmount(BankAccount accountAfterDeposit, User loggedInUser) {
+        //try depositing a negative amount
+        //verify the response message is "Deposit amount must be positive"
+        Money negativeAmount = Money.parse("-500");
+        HttpRequest depositRequest = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/account/deposit/" + accountAfterDeposit.getAccountNumber()))
+            .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
+            .POST(HttpRequest.BodyPublishers.ofString("{" +
+                "\"amount\": \""+ negativeAmount + "\"" +
+            "}"))
+            .build();
+        HttpResponse<String> depositResponse = null;
+        try {
+            depositResponse = webClient.send(depositRequest, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+        System.out.println("response body: " + depositResponse.body());
+        //Assert
+        assertEquals(400, depositResponse.statusCode());
+        assertEquals("Deposit amount must be positive", depositResponse.body());
+    }
+
     private void testUserCantDeleteAccountWithNonZeroBalance(BankAccount updatedAccount, User loggedInUser) {
         //try to delete the account
         //verify the account is not deleted
@@ -276,7 +313,7 @@ public class BankingAPITest {
         HttpRequest deleteRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/" + updatedAccount.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .DELETE()
             .build();   
         HttpResponse<String> deleteResponse = null;
@@ -317,7 +354,7 @@ public class BankingAPITest {
         HttpRequest updateRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/user/update/" + loggedInUser.getUserId()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .PUT(HttpRequest.BodyPublishers.ofString("{" +
                 "\"name\":\"" + fancyUser.getName() + "\", " +
                 "\"email\": \"" + fancyUser.getEmail() + "\", " +
@@ -372,7 +409,7 @@ public class BankingAPITest {
         HttpRequest deleteRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/" + createdAccount.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .DELETE()
             .build();   
         HttpResponse<String> deleteResponse = webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
@@ -394,7 +431,7 @@ public class BankingAPITest {
         HttpRequest getAccountsRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/" + createdAccount.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .GET()
             .build();   
         HttpResponse<String> getAccountsResponse = null;
@@ -408,7 +445,7 @@ public class BankingAPITest {
         // assertEquals(200, getAccountsResponse.statusCode());
         //verify the account is not in the list of accounts
         //verify the account is not in the database
-        assertEquals(false, getAccountsResponse.body().contains(createdAccount.getAccountNumber()));
+        assertEquals(false, getAccountsResponse.body().contains(String.valueOf(createdAccount.getAccountNumber())));
     }
     
     @Test
@@ -432,17 +469,17 @@ public class BankingAPITest {
          BankAccount senderAccount = createBankAccount(loggedInUser, "checking");
         BankAccount receiverAccount = createBankAccount(loggedInUser, "savings");
         //deposit some money
-        depositIntoAccount(senderAccount.getAccountNumber(), loggedInUser.getEmail(), new BigDecimal("1500"));
+        depositIntoAccount(senderAccount.getAccountNumber(), loggedInUser.getEmail(), Money.parse("1500"));
         //transfer some money
         //verify the source account balance is reduced
         //verify the destination account balance is increased
         
         //transfer some money using the account number on url path: account/transfer/{accountNumber}
-        BigDecimal transferAmount = new BigDecimal("500.00");
+        Money transferAmount = Money.parse("500.00");
         HttpRequest transferRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/transfer/" + senderAccount.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .POST(HttpRequest.BodyPublishers.ofString("{" +
                 "\"amount\": \""+ transferAmount.toString() + "\", " + // Convert BigDecimal to String
                 "\"fromAccountNumber\": \"" + senderAccount.getAccountNumber() + "\", " + // Ensure accountNumber is treated as a string
@@ -464,21 +501,23 @@ public class BankingAPITest {
         }
         //Assert
         //verify balance is reduced by the amount transferred
-        assertEquals(new BigDecimal("1000.00"), senderAccountAfterTransfer.getBalance());
+        assertEquals(Money.parse("1000.00"), senderAccountAfterTransfer.getBalance());
+        //the history isn't sent back, it is paged from /account/{n}/transactions
+        assertFalse(senderTransferResponse.body().contains("\"transactions\""));
         //verify the destination account balance is increased
         testGetAccountBalanceIsIncreased(receiverAccount, loggedInUser, transferAmount);
     }
 
 
     private void testGetAccountBalanceIsIncreased(BankAccount receiverAccount, User loggedInUser,
-            BigDecimal transferAmount) throws JsonMappingException, JsonProcessingException {
+            Money transferAmount) throws JsonMappingException, JsonProcessingException {
         
         //get the account details
         //verify the account balance is increased
         HttpRequest getAccountRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/" + receiverAccount.getAccountNumber()))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
             .GET()
             .build();
         HttpResponse<String> getAccountResponse = null;
@@ -521,7 +560,7 @@ public class BankingAPITest {
           //create a bank account
           BankAccount adminAccount = createBankAccount(loggedInAdminUser, "checking");
           //deposit some money
-          depositIntoAccount(adminAccount.getAccountNumber(), loggedInAdminUser.getEmail(), new BigDecimal("1500"));
+          depositIntoAccount(adminAccount.getAccountNumber(), loggedInAdminUser.getEmail(), Money.parse("1500"));
 
         //get all users
         //verify the list of users
@@ -536,12 +575,39 @@ public class BankingAPITest {
         List<Transaction> allTransactions = fetchAllTransactions(loggedInAdminUser);
         assertTrue(allTransactions.size() > 0);
     }
+
+    @Test
+    void metrics_endpoint_reports_latency_per_route_in_prometheus_format() throws IOException, InterruptedException {
+        // Arrange
+        User registeredUser = registerAsUser(new User("Metric Mary", "metric@mary.com", "3334445555", "password", false));
+        loginAsUser(registeredUser);
+
+        // Act
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/metrics"))
+            .GET()
+            .build();
+        HttpResponse<String> metricsResponse = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, metricsResponse.statusCode());
+        String body = metricsResponse.body();
+        assertTrue(body.contains("# TYPE http_server_requests_seconds summary"));
+        assertTrue(body.contains("http_server_requests_seconds_count{method=\"POST\",route=\"/user/login\",status=\"200\"}"));
+        assertTrue(body.contains("http_server_requests_in_flight"));
+        //the database and engine components each add their own series
+        assertTrue(body.contains("# TYPE db_query_seconds summary"));
+        assertTrue(body.contains("db_account_cache_hits_total"));
+        assertTrue(body.contains("engine_commands_total"));
+        //the DB work limiter is only installed on virtual threads
+        assertEquals(BankingAPIController.getExecutionMode() == ExecutionMode.VIRTUAL, body.contains("db_work_in_flight"));
+    }
     
     private List<Transaction> fetchAllTransactions(User loggedInAdmin) throws IOException, InterruptedException {
         HttpRequest getTransactionsRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/admin/transactions"))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInAdmin.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInAdmin.getEmail())) // the signed token /user/login handed out
             .GET()
             .build();
         HttpResponse<String> getTransactionsResponse = webClient.send(getTransactionsRequest, HttpResponse.BodyHandlers.ofString());
@@ -553,7 +619,7 @@ public class BankingAPITest {
        HttpRequest getAccountsRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/admin/accounts"))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInAdmin.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInAdmin.getEmail())) // the signed token /user/login handed out
             .GET()
             .build();
         HttpResponse<String> getAccountsResponse = webClient.send(getAccountsRequest, HttpResponse.BodyHandlers.ofString());
@@ -565,7 +631,7 @@ public class BankingAPITest {
       HttpRequest getUsersRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/admin/users"))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + loggedInAdmin.getEmail()) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(loggedInAdmin.getEmail())) // the signed token /user/login handed out
             .GET()
             .build();
         HttpResponse<String> getUsersResponse = webClient.send(getUsersRequest, HttpResponse.BodyHandlers.ofString());
@@ -573,6 +639,65 @@ public class BankingAPITest {
         List<User> users = objectMapper.readValue(getUsersResponse.body(), new TypeReference<List<User>>(){});
         return users;
     }
+    @Test
+    void a_cookie_that_is_just_an_email_is_rejected() throws IOException, InterruptedException {
+        // Arrange
+        //a real, logged in user with an account, then a request that only knows their email
+        User registeredUser = registerAsUser(new User("Eve Email", "eve@email.com", "5550001111", "password", false));
+        User loggedInUser = loginAsUser(registeredUser);
+        BankAccount createdAccount = createBankAccount(loggedInUser, "checking");
+        HttpRequest getRequest = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/account/" + createdAccount.getAccountNumber()))
+            .header("Cookie", "Auth=" + loggedInUser.getEmail())
+            .GET()
+            .build();
+
+        // Act
+        HttpResponse<String> response = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(401, response.statusCode());
+    }
+    @Test
+    void a_valid_token_for_a_deleted_user_is_rejected() throws IOException, InterruptedException, SQLException, ClassNotFoundException {
+        // Arrange
+        //the token is signed and unexpired, but nobody is behind it anymore (and it was never in the session cache)
+        User registeredUser = registerAsUser(new User("Gone Girl", "gone@girl.com", "5550002222", "password", false));
+        new UserDAOImpl().deleteUserByEmail(registeredUser.getEmail());
+        String token = AuthTokenService.fromSystemConfig().issue(registeredUser);
+        HttpRequest createRequest = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/account/create"))
+            .header("Content-Type", "application/json")
+            .header("Cookie", "Auth=" + token)
+            .POST(HttpRequest.BodyPublishers.ofString("{" +
+                "\"userEmail\": \"" + registeredUser.getEmail() + "\", " +
+                "\"accountType\": \"checking\"" +
+            "}"))
+            .build();
+
+        // Act
+        HttpResponse<String> response = webClient.send(createRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(401, response.statusCode());
+    }
+    @Test
+    void a_malformed_json_body_is_a_bad_request() throws IOException, InterruptedException {
+        // Arrange
+        //not JSON at all, so Jackson fails while parsing rather than while mapping
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/user/register"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"name\": \"Mal Formed\", \"email\": "))
+            .build();
+
+        // Act
+        HttpResponse<String> response = webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(400, response.statusCode());
+    }
+
     // -=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=--=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-
     // -=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=--=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-
     // -=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=--=-=-=-=-=-==--=-=-=-=-==-=-=--=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-
@@ -602,6 +727,12 @@ public class BankingAPITest {
         if(loginResponse.statusCode() >= 200 && loginResponse.statusCode() < 300){
             // ok to parse the response body
             loggedInUser = objectMapper.readValue(loginResponse.body(), User.class);
+            for (String setCookie : loginResponse.headers().allValues("Set-Cookie")) {
+                if (setCookie.startsWith("Auth=")) {
+                    authCookies.put(registeredUser.getEmail(), setCookie.split(";", 2)[0]);
+                    authCookies.put(loggedInUser.getEmail(), setCookie.split(";", 2)[0]);
+                }
+            }
         } else{
             // its an error
             // lets see what the error is
@@ -611,6 +742,14 @@ public class BankingAPITest {
         return loggedInUser;
     }
 
+    private String authCookie(String email) {
+        String cookie = authCookies.get(email);
+        if (cookie == null) {
+            throw new IllegalStateException(email + " hasn't logged in");
+        }
+        return cookie;
+    }
+
     private User registerAsUser(User guestUser) throws IOException, InterruptedException{
         HttpRequest postRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/user/register"))
@@ -643,9 +782,9 @@ public class BankingAPITest {
         HttpRequest createBankAccountPostRequest = HttpRequest.newBuilder()
         .uri(URI.create("http://localhost:7000/account/create"))
         .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-        .header("Cookie", "Auth=" + loggedInUser.getEmail()) // Add the Auth cookie with userEmail
+        .header("Cookie", authCookie(loggedInUser.getEmail())) // the signed token /user/login handed out
         .POST(HttpRequest.BodyPublishers.ofString("{" +
-            "\"userEmail\":" + loggedInUser.getEmail() + ", " +
+            "\"userEmail\": \"" + loggedInUser.getEmail() + "\", " +
             "\"accountType\": \"" + accountType + "\"" +
         "}"))
         .build();
@@ -669,12 +808,12 @@ public class BankingAPITest {
         assertEquals(200, createBankAccountResponse.statusCode());
         return createdAccount;
     }
-    private BankAccount depositIntoAccount(String accountNumber, String emailAuthCookie, BigDecimal amount) throws IOException, InterruptedException {
+    private BankAccount depositIntoAccount(int accountNumber, String emailAuthCookie, Money amount) throws IOException, InterruptedException {
         System.out.println(amount.toString());
         HttpRequest depositRequest = HttpRequest.newBuilder()
             .uri(URI.create("http://localhost:7000/account/deposit/" + accountNumber))
             .header("Content-Type", "application/json") // Ensure the server knows to expect JSON
-            .header("Cookie", "Auth=" + emailAuthCookie) // Add the Auth cookie with userEmail
+            .header("Cookie", authCookie(emailAuthCookie)) // the signed token /user/login handed out
             .POST(HttpRequest.BodyPublishers.ofString("{" +
                 "\"amount\": \""+ amount.toString() + "\", " + // Convert BigDecimal to String
                 "\"fromAccountNumber\": \"" + accountNumber + "\"" + // Ensure accountNumber is treated as a string
@@ -693,8 +832,9 @@ public class BankingAPITest {
                 int userId = jsonResponse.getInt("userId");
                 String accountType = jsonResponse.getString("accountType");
                 String email = jsonResponse.getString("email");
-                BigDecimal balance = new BigDecimal(jsonResponse.getBigDecimal("balance").toString());
-                String acctNumber = jsonResponse.getString("accountNumber");
+                Money balance = Money.of(jsonResponse.getBigDecimal("balance"));
+                // account numbers are still strings on the wire
+                int acctNumber = Integer.parseInt(jsonResponse.getString("accountNumber"));
                 List<Transaction> extractedTransactions = objectMapper.readValue(jsonResponse.getJSONArray("transactions").toString(), new TypeReference<List<Transaction>>(){});
                 updatedAccount = new BankAccount(userId, accountType, email, balance, acctNumber, extractedTransactions);
       
@@ -0,0 +1,74 @@
+package net.revature.labs;
+
+import java.util.Arrays;
+
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.User;
+import net.revature.labs.service.AccountService;
+import net.revature.labs.service.UserService;
+import util.TestUtil;
+
+/**
+ * Times the get-account and deposit paths with the per connection statement cache off and on,
+ * and prints throughput and latency for each.
+ *
+ * Not part of the test suite, run it by hand against the test database:
+ *   java -cp ... net.revature.labs.StatementCacheComparison [iterations]
+ * Defaults to 20000 iterations per path after a 5000 iteration warmup. Single threaded on purpose,
+ * this measures the per call cost of preparing statements, not contention.
+ */
+public class StatementCacheComparison {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        TestUtil.setEnvironmentToTest();
+        DBUtil.resetTestDatabase();
+        int accountNumber = seedAccount();
+        AccountService accountService = new AccountService();
+
+        for (int cacheSize : new int[] {0, 64}) {
+            DBUtil.closeConnection();
+            DBUtil.setStatementCacheSize(cacheSize);
+            String label = cacheSize == 0 ? "uncached" : "cached";
+
+            run(label + " getAccount", iterations / 4, iterations, () -> accountService.getAccount(accountNumber));
+            run(label + " deposit", iterations / 4, iterations,
+                () -> accountService.depositToAccount(accountNumber, Money.parse("1.00")));
+        }
+        DBUtil.resetTestDatabase();
+        DBUtil.closeConnection();
+    }
+
+    private static int seedAccount() throws Exception {
+        UserService userService = new UserService();
+        AccountService accountService = new AccountService();
+        userService.registerUser(new User("Cache Test", "cache@test.com", "5550000000", "password", false));
+        BankAccount account = accountService.createBankAccount("cache@test.com", "checking");
+        return account.getAccountNumber();
+    }
+
+    private static void run(String name, int warmup, int iterations, Call call) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            call.run();
+        }
+        long[] latencies = new long[iterations];
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long sent = System.nanoTime();
+            call.run();
+            latencies[i] = System.nanoTime() - sent;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-20s throughput=%.0f ops/s p50=%.3fms p99=%.3fms%n",
+            name, iterations / (elapsedNanos / 1e9),
+            latencies[iterations / 2] / 1e6, latencies[(int) (iterations * 0.99)] / 1e6);
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,139 @@
+package net.revature.labs;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.revature.labs.controller.BankingAPIController;
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.User;
+import net.revature.labs.service.AccountService;
+import net.revature.labs.service.UserService;
+import util.TestUtil;
+
+/**
+ * Runs the same burst of concurrent clients against the API in platform thread mode and then in
+ * virtual thread mode, and prints throughput, latency and error counts for each.
+ *
+ * Not part of the test suite, run it by hand against the test database:
+ *   java -cp ... net.revature.labs.VirtualThreadLoadComparison [clients] [requestsPerClient]
+ * Defaults to 10000 clients doing 5 GET /account/{n} each. Virtual mode needs JDK 21+, on older
+ * JDKs the second run falls back to platform threads (the server logs it).
+ * 10k concurrent clients means up to 10k sockets, raise `ulimit -n` first.
+ */
+public class VirtualThreadLoadComparison {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        TestUtil.setEnvironmentToTest();
+        DBUtil.resetTestDatabase();
+        int accountNumber = seedAccount();
+
+        for (String mode : new String[] {"platform", "virtual"}) {
+            System.setProperty("server.threads", mode);
+            new BankingAPIController();
+            try {
+                run(mode, clients, requestsPerClient, accountNumber);
+            } finally {
+                BankingAPIController.stopAPI();
+            }
+        }
+        DBUtil.resetTestDatabase();
+        DBUtil.closeConnection();
+    }
+
+    private static int seedAccount() throws Exception {
+        UserService userService = new UserService();
+        AccountService accountService = new AccountService();
+        userService.registerUser(new User("Load Test", "load@test.com", "5550000000", "password", false));
+        BankAccount account = accountService.createBankAccount("load@test.com", "checking");
+        accountService.depositToAccount(account.getAccountNumber(), Money.parse("100.00"));
+        return account.getAccountNumber();
+    }
+
+    // the API only takes the signed token it hands out at login, not the email
+    private static String login(HttpClient client) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/user/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"load@test.com\",\"password\":\"password\"}"))
+            .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        for (String cookie : response.headers().allValues("Set-Cookie")) {
+            if (cookie.startsWith("Auth=")) {
+                return cookie.split(";", 2)[0];
+            }
+        }
+        throw new IllegalStateException("Login failed: " + response.statusCode());
+    }
+
+    private static void run(String mode, int clients, int requestsPerClient, int accountNumber) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:7000/account/" + accountNumber))
+            .header("Cookie", login(client))
+            .timeout(Duration.ofSeconds(60))
+            .GET()
+            .build();
+
+        int total = clients * requestsPerClient;
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger busy = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        CompletableFuture<?>[] running = new CompletableFuture<?>[clients];
+        for (int c = 0; c < clients; c++) {
+            // each client sends its requests one after another, all clients at once
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int r = 0; r < requestsPerClient; r++) {
+                chain = chain.thenCompose(ignored -> {
+                    long sent = System.nanoTime();
+                    return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, error) -> {
+                            latencies[next.getAndIncrement()] = System.nanoTime() - sent;
+                            if (error != null) {
+                                failed.incrementAndGet();
+                            } else if (response.statusCode() == 200) {
+                                ok.incrementAndGet();
+                            } else if (response.statusCode() == 503) {
+                                busy.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                            return null;
+                        });
+                });
+            }
+            running[c] = chain;
+        }
+        CompletableFuture.allOf(running).join();
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] sorted = Arrays.copyOf(latencies, next.get());
+        Arrays.sort(sorted);
+        System.out.printf("%-8s mode=%s clients=%d requests=%d ok=%d busy(503)=%d failed=%d%n",
+            mode, BankingAPIController.getExecutionMode(), clients, total, ok.get(), busy.get(), failed.get());
+        System.out.printf("%-8s throughput=%.0f req/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+            mode, total / (elapsedNanos / 1e9),
+            percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), percentileMillis(sorted, 1.0));
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
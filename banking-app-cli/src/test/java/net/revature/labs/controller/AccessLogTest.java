@@ -0,0 +1,67 @@
+package net.revature.labs.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessLogTest {
+
+    @Test
+    public void testCookieHeaderAndPasswordAreRedacted() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = new AccessLog(1.0, 512, 16, lines::add);
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("cookie", "Auth=secret-token");
+
+        accessLog.request("POST", "/user/login", headers, "{\"email\":\"john@doe.com\",\"password\":\"hunter2\"}");
+        accessLog.drain();
+
+        assertEquals(1, lines.size());
+        String line = lines.get(0);
+        assertTrue(line.contains("Content-Type=application/json"));
+        assertFalse(line.contains("secret-token"));
+        assertFalse(line.contains("hunter2"));
+        assertTrue(line.contains("john@doe.com"));
+    }
+
+    @Test
+    public void testLongBodyIsTruncated() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = new AccessLog(1.0, 10, 16, lines::add);
+
+        accessLog.response("GET", "/admin/users", 200, "x".repeat(100));
+        accessLog.drain();
+
+        assertTrue(lines.get(0).endsWith("xxxxxxxxxx...(100 chars)"));
+    }
+
+    @Test
+    public void testFullBufferDropsInsteadOfBlocking() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = new AccessLog(1.0, 512, 4, lines::add);
+
+        for (int i = 0; i < 6; i++) {
+            accessLog.response("GET", "/account/" + i, 200, null);
+        }
+
+        assertEquals(2, accessLog.getDroppedCount());
+        assertEquals(4, accessLog.drain());
+        //the drop is reported after the buffered lines
+        assertEquals("access log buffer full, dropped 2 lines", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testZeroSampleRateNeverSamples() {
+        AccessLog accessLog = new AccessLog(0.0, 512, 16, line -> { });
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(accessLog.shouldSample());
+        }
+    }
+}
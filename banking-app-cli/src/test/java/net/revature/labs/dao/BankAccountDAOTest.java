@@ -1,19 +1,29 @@
 package net.revature.labs.dao;
 
 import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.dao.util.GroupCommitLedger;
+import net.revature.labs.dao.util.TransactionStore;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.LazyTransactionList;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 import util.TestUtil;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -74,7 +84,7 @@ public class BankAccountDAOTest {
         assertNotNull(createdBankAccount);
         assertEquals(userEmail, createdBankAccount.getEmail());
         assertEquals("checking", createdBankAccount.getAccountType());
-        assertEquals(new BigDecimal(0), createdBankAccount.getBalance());
+        assertEquals(Money.ZERO, createdBankAccount.getBalance());
         assertNotNull(createdBankAccount.getAccountNumber());
         assertEquals (10, String.valueOf(createdBankAccount.getAccountNumber()).length());
         assertEquals(0, createdBankAccount.getTransactions().size());
@@ -126,7 +136,7 @@ public class BankAccountDAOTest {
         assertNotNull(bankAccountList.get(0).getAccountNumber());
         assertEquals (10, String.valueOf(bankAccountList.get(0).getAccountNumber()).length());
         assertEquals(0, bankAccountList.get(0).getTransactions().size());
-        assertEquals(0, bankAccountList.get(0).getBalance().intValue());
+        assertEquals(0, bankAccountList.get(0).getBalance().getCents());
         assertEquals(userEmail, bankAccountList.get(0).getEmail());
         assertEquals("checking", bankAccountList.get(0).getAccountType());
         //assert on the list of authorized users for the first account in the list is 0
@@ -166,6 +176,256 @@ public class BankAccountDAOTest {
 
     }
 
+    @Test void testGetTransactionsPageWalksWithKeysetCursor() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        //register a user, create an account and make 3 deposits
+        String email = "pager@pages.com";
+        userDAO.registerUser(new User("Page Turner", email, "3335557777", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        bankAccountDAO.deposit(bankAccount, Money.parse("1.00"));
+        bankAccountDAO.deposit(bankAccount, Money.parse("2.00"));
+        bankAccountDAO.deposit(bankAccount, Money.parse("3.00"));
+
+        //Act
+        //page through the transactions 2 at a time using the last transaction id as the cursor
+        List<Transaction> firstPage = bankAccountDAO.getTransactionsPage(0, 2);
+        int cursor = firstPage.get(firstPage.size() - 1).getTransactionId();
+        List<Transaction> secondPage = bankAccountDAO.getTransactionsPage(cursor, 2);
+
+        //Assert
+        //pages are in id order and don't overlap
+        assertEquals(2, firstPage.size());
+        assertFalse(secondPage.isEmpty());
+        assertTrue(firstPage.get(0).getTransactionId() < firstPage.get(1).getTransactionId());
+        assertTrue(secondPage.get(0).getTransactionId() > cursor);
+    }
+
+    @Test void testDepositAndWithdrawReturnUpdatedAccount() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "ledger@post.com";
+        userDAO.registerUser(new User("Led Ger", email, "2224446666", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "savings");
+
+        //Act
+        BankAccount afterDeposit = bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("100.00"));
+        BankAccount afterWithdrawal = bankAccountDAO.withdrawFromAccount(bankAccount.getAccountNumber(), Money.parse("40.00"));
+
+        //Assert
+        //balances are applied on top of each other and each result carries just the posting it made
+        assertEquals(Money.parse("100.00"), afterDeposit.getBalance());
+        assertEquals(1, afterDeposit.getTransactions().size());
+        assertEquals(Money.parse("60.00"), afterWithdrawal.getBalance());
+        assertEquals(1, afterWithdrawal.getTransactions().size());
+        assertEquals("withdraw", afterWithdrawal.getTransactions().get(0).getTransactionType());
+        assertEquals(Money.parse("40.00"), afterWithdrawal.getTransactions().get(0).getAmount());
+        assertEquals(2, bankAccountDAO.getAccount(bankAccount.getAccountNumber()).getTransactions().size());
+    }
+
+    @Test void testOverdraftIsRejectedAndBalanceUnchanged() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "over@draft.com";
+        userDAO.registerUser(new User("Over Draft", email, "2224446667", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("10.00"));
+
+        //Act and Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> bankAccountDAO.withdrawFromAccount(bankAccount.getAccountNumber(), Money.parse("10.01")));
+        assertEquals("Insufficient funds", exception.getMessage());
+        BankAccount foundAccount = bankAccountDAO.getAccount(bankAccount.getAccountNumber());
+        assertEquals(Money.parse("10.00"), foundAccount.getBalance());
+        assertEquals(1, foundAccount.getTransactions().size());
+    }
+
+    @Test void testNegativeDepositIsRejectedAndNothingIsRecorded() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "negative@deposit.com";
+        userDAO.registerUser(new User("Neg Ative", email, "2224446669", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("10.00"));
+
+        //Act and Assert
+        //a negative deposit would pass the overdraft check and show up as a positive 'deposit' row
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("-5.00")));
+        assertEquals("Deposit amount must be positive", exception.getMessage());
+        assertThrows(IllegalArgumentException.class,
+            () -> bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.ZERO));
+        BankAccount foundAccount = bankAccountDAO.getAccount(bankAccount.getAccountNumber());
+        assertEquals(Money.parse("10.00"), foundAccount.getBalance());
+        assertEquals(1, foundAccount.getTransactions().size());
+    }
+
+    @Test void testTransactionStoreServesHistoryAndSeesNewPostings() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        //turn the in-memory transaction store on and give the account some history
+        String email = "store@columns.com";
+        userDAO.registerUser(new User("Colum Nar", email, "2224446668", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("10.00"));
+        DBUtil.setTransactionStoreCapacity(1000);
+        try {
+            //Act
+            BankAccount firstRead = bankAccountDAO.getAccount(bankAccount.getAccountNumber());
+            assertEquals(1, firstRead.getTransactions().size());
+            long hitsBefore = TransactionStore.getHits();
+            BankAccount secondRead = bankAccountDAO.getAccount(bankAccount.getAccountNumber());
+            int secondReadSize = secondRead.getTransactions().size();
+            long hitsAfter = TransactionStore.getHits();
+            bankAccountDAO.depositToAccount(bankAccount.getAccountNumber(), Money.parse("5.00"));
+            BankAccount afterDeposit = bankAccountDAO.getAccount(bankAccount.getAccountNumber());
+
+            //Assert
+            //the second read is served from the store, the deposit invalidates it
+            assertEquals(1, secondReadSize);
+            assertTrue(hitsAfter > hitsBefore);
+            assertEquals(2, afterDeposit.getTransactions().size());
+            Transaction posted = afterDeposit.getTransactions().get(1);
+            assertEquals(Money.parse("5.00"), posted.getAmount());
+            assertEquals("deposit", posted.getTransactionType());
+            assertEquals(bankAccount.getAccountNumber(), posted.getAccountNumber());
+        } finally {
+            DBUtil.setTransactionStoreCapacity(0);
+        }
+    }
+
+    @Test void testTransactionsArePagedInOnlyWhenRead() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "lazy@pages.com";
+        userDAO.registerUser(new User("Lazy Pages", email, "2224446667", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        int accountNumber = bankAccount.getAccountNumber();
+        for (int i = 0; i < 5; i++) {
+            bankAccountDAO.depositToAccount(accountNumber, Money.parse("1.00"));
+        }
+
+        //Act
+        BankAccount foundAccount = bankAccountDAO.getAccount(accountNumber);
+        LazyTransactionList transactions = (LazyTransactionList) foundAccount.getTransactions();
+        int pagesBeforeRead = transactions.getPagesLoaded();
+        List<Transaction> firstPage = bankAccountDAO.getTransactionsPageForAccount(accountNumber, 0, 2);
+        List<Transaction> secondPage = bankAccountDAO.getTransactionsPageForAccount(accountNumber,
+            firstPage.get(1).getTransactionId(), 2);
+
+        //Assert
+        //the balance comes back without touching the transactions table
+        assertEquals(Money.parse("5.00"), foundAccount.getBalance());
+        assertEquals(0, pagesBeforeRead);
+        assertEquals(5, transactions.size());
+        assertEquals(2, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertTrue(secondPage.get(0).getTransactionId() > firstPage.get(1).getTransactionId());
+    }
+
+    @Test void testAccountCacheStaysCoherentUnderConcurrentDeposits() throws Exception {
+        //Arrange
+        String email = "cache@coherent.com";
+        userDAO.registerUser(new User("Cache Coherent", email, "2224446669", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        int accountNumber = bankAccount.getAccountNumber();
+        bankAccountDAO.getAccount(accountNumber);
+
+        //Act
+        //8 threads post deposits at the same time, each one writes its result through to the cache
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<BankAccount>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            results.add(pool.submit(() -> bankAccountDAO.depositToAccount(accountNumber, Money.parse("1.00"))));
+        }
+        for (Future<BankAccount> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        //Assert
+        //whatever order they finished in, the cache holds the last balance
+        assertEquals(Money.parse("40.00"), bankAccountDAO.getAccount(accountNumber).getBalance());
+        assertEquals(40, bankAccountDAO.getAccount(accountNumber).getTransactions().size());
+    }
+
+    @Test void testGroupCommitKeepsEveryPostingsOwnOutcome() throws Exception {
+        //Arrange
+        String email = "group@commit.com";
+        userDAO.registerUser(new User("Group Commit", email, "2224446665", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        int accountNumber = bankAccount.getAccountNumber();
+        bankAccountDAO.getAccount(accountNumber);
+        DBUtil.setGroupCommit(16, 2000);
+        long batchesBefore = GroupCommitLedger.getBatches();
+        try {
+            //Act
+            //40 deposits of 1.00 and 60 withdrawals of 1.00 at once: whatever order they land in, exactly
+            //40 withdrawals can be covered and the rest have to fail without touching the balance
+            ExecutorService pool = Executors.newFixedThreadPool(16);
+            List<Future<BankAccount>> deposits = new ArrayList<>();
+            List<Future<BankAccount>> withdrawals = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                deposits.add(pool.submit(() -> bankAccountDAO.depositToAccount(accountNumber, Money.parse("1.00"))));
+            }
+            for (Future<BankAccount> deposit : deposits) {
+                deposit.get(30, TimeUnit.SECONDS);
+            }
+            for (int i = 0; i < 60; i++) {
+                withdrawals.add(pool.submit(() -> bankAccountDAO.withdrawFromAccount(accountNumber, Money.parse("1.00"))));
+            }
+            int insufficient = 0;
+            for (Future<BankAccount> withdrawal : withdrawals) {
+                try {
+                    withdrawal.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertEquals("Insufficient funds", e.getCause().getMessage());
+                    insufficient++;
+                }
+            }
+            pool.shutdown();
+
+            //Assert
+            assertEquals(20, insufficient);
+            assertEquals(Money.parse("0.00"), bankAccountDAO.getAccount(accountNumber).getBalance());
+            assertEquals(80, bankAccountDAO.getAccount(accountNumber).getTransactions().size());
+            //fewer commits than postings
+            assertTrue(GroupCommitLedger.getBatches() - batchesBefore < 100);
+            IllegalArgumentException notFound = assertThrows(IllegalArgumentException.class,
+                () -> bankAccountDAO.depositToAccount(1, Money.parse("1.00")));
+            assertEquals("Account not found", notFound.getMessage());
+        } finally {
+            DBUtil.setGroupCommit(0, 0);
+        }
+    }
+
+    @Test void testGroupCommitWriterIsReplacedIfItDies() throws Exception {
+        //Arrange
+        String email = "writer@restart.com";
+        userDAO.registerUser(new User("Writer Restart", email, "2224446664", "password", false));
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(email, "checking");
+        int accountNumber = bankAccount.getAccountNumber();
+        DBUtil.setGroupCommit(16, 0);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            bankAccountDAO.depositToAccount(accountNumber, Money.parse("1.00"));
+            //the writer stops when it is interrupted
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("ledger-group-commit")) {
+                    thread.interrupt();
+                    thread.join(5000);
+                }
+            }
+
+            //Act
+            //on another thread, so a posting nobody picks up fails the test instead of hanging it
+            Future<BankAccount> deposit = pool.submit(() -> bankAccountDAO.depositToAccount(accountNumber, Money.parse("1.00")));
+            BankAccount afterDeposit = deposit.get(30, TimeUnit.SECONDS);
+
+            //Assert
+            //a new writer took it, and the result carries no history
+            assertEquals(Money.parse("2.00"), afterDeposit.getBalance());
+            assertEquals(0, afterDeposit.getTransactions().size());
+        } finally {
+            pool.shutdownNow();
+            DBUtil.setGroupCommit(0, 0);
+        }
+    }
+
     @Test void testDeleteAccountByEmail() throws SQLException {
         //Arrange
         //Act
@@ -0,0 +1,94 @@
+package net.revature.labs.dao;
+
+import net.revature.labs.dao.util.DBUtil;
+import util.TestUtil;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks the hot DAO lookups are planned as index scans once the migrations have run.
+public class SchemaIndexTest {
+
+    @BeforeAll
+    public static void setup() throws SQLException, IOException {
+        TestUtil.setEnvironmentToTest();
+        DBUtil.resetTestDatabase();
+    }
+
+    @AfterAll
+    public static void tearDown() throws SQLException, IOException {
+        DBUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void testMigrationsAreAppliedOnlyOnce() throws SQLException, IOException {
+        //Arrange - resetTestDatabase already ran them once
+
+        //Act
+        DBUtil.runMigrations();
+
+        //Assert
+        try (Connection conn = DBUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT count(*) FROM schema_migrations WHERE version = 1")) {
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testTransactionsForAccountUseIndex() throws SQLException {
+        String plan = explain("SELECT * FROM transactions WHERE account_number = 1");
+        assertTrue(plan.contains("idx_transactions_account_date_id"), plan);
+    }
+
+    @Test
+    public void testTransactionHistoryPageIsAnOrderedIndexRange() throws SQLException {
+        String plan = explain("SELECT * FROM transactions WHERE account_number = 1 " +
+            "AND (transaction_date_time, transaction_id) < ('2024-05-01 10:00', 100) " +
+            "ORDER BY transaction_date_time DESC, transaction_id DESC LIMIT 100");
+        assertTrue(plan.contains("idx_transactions_account_date_id"), plan);
+        //read in index order, no sort of the whole account
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    public void testAuthorizedUsersForAccountUseIndex() throws SQLException {
+        String plan = explain("SELECT authorized_user_email FROM authorized_users WHERE account_number = 1");
+        assertTrue(plan.contains("idx_authorized_users_account_email"), plan);
+    }
+
+    @Test
+    public void testAccountsByEmailUseIndex() throws SQLException {
+        String plan = explain("SELECT * FROM bank_accounts WHERE email = 'john@doe.com'");
+        assertTrue(plan.contains("idx_bank_accounts_email"), plan);
+    }
+
+    // The test tables are nearly empty, so the planner would pick a seq scan anyway.
+    // Turning seq scans off shows whether an index *can* serve the query.
+    private String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = DBUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.execute("SET LOCAL enable_seqscan = off");
+            try (ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            conn.rollback();
+        }
+        assertFalse(plan.toString().contains("Seq Scan"), plan.toString());
+        return plan.toString();
+    }
+}
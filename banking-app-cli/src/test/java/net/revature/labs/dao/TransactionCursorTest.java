@@ -0,0 +1,35 @@
+package net.revature.labs.dao;
+
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionCursorTest {
+
+    @Test
+    public void testRoundTripKeepsMicroseconds() {
+        //Arrange
+        Timestamp time = Timestamp.valueOf("2024-05-01 10:15:30.123456");
+        TransactionCursor cursor = new TransactionCursor(time, 42);
+
+        //Act
+        TransactionCursor decoded = TransactionCursor.decode(cursor.encode());
+
+        //Assert
+        assertEquals(time, decoded.getTransactionDateTime());
+        assertEquals(42, decoded.getTransactionId());
+        //safe in a query string as is
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void testGarbageIsRejected() {
+        //Act and Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> TransactionCursor.decode("not a cursor"));
+        assertEquals("Invalid cursor: not a cursor", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode("bm8gc2VwYXJhdG9y"));
+    }
+}
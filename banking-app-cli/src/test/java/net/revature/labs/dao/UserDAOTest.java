@@ -1,5 +1,7 @@
 package net.revature.labs.dao;
 import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.User;
 import util.TestUtil;
 
@@ -9,6 +11,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -175,4 +178,26 @@ class UserDAOTest{
         User loggedInUser = userDAO.loginUser("john@example.com' OR '1'='1", "wrongpassword");
         assertNull(loggedInUser);
     }
+
+    @Test
+    void testGetAllUsersLoadsEachTransactionOnce() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        //register a user with a bank account that has one deposit
+        User user = new User("Mary Jane", "mary@jane.com", "5101234567", "password", false);
+        userDAO.registerUser(user);
+        BankAccountDAO bankAccountDAO = new BankAccountDAO();
+        BankAccount bankAccount = bankAccountDAO.createBankAccount(user.getEmail(), "checking");
+        bankAccountDAO.deposit(bankAccount, Money.parse("25.00"));
+
+        //Act
+        List<User> users = userDAO.getAllUsers();
+
+        //Assert
+        //accounts and transactions are stitched onto the right user, and the deposit is not loaded twice
+        User foundUser = users.stream().filter(u -> u.getEmail().equals(user.getEmail())).findFirst().orElse(null);
+        assertNotNull(foundUser);
+        assertEquals(1, foundUser.getBankAccounts().size());
+        assertEquals(bankAccount.getAccountNumber(), foundUser.getBankAccounts().get(0).getAccountNumber());
+        assertEquals(1, foundUser.getBankAccounts().get(0).getTransactions().size());
+    }
 }
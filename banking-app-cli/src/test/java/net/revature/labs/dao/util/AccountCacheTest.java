@@ -0,0 +1,127 @@
+package net.revature.labs.dao.util;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountCacheTest {
+
+    private static AccountCache.Entry entry(int accountNumber, String balance, long version) {
+        return new AccountCache.Entry(accountNumber, 1, "a@b.com", "checking", Money.parse(balance), List.of("c@d.com"), version);
+    }
+
+    @Test
+    public void testCachedHeaderBuildsAFreshAccountEveryTime() {
+        AccountCache cache = new AccountCache(10);
+        cache.put(entry(1, "10.00", 1), cache.stamp());
+
+        BankAccount first = cache.get(1).toBankAccount();
+        first.setBalance(Money.parse("99.00"));
+        BankAccount second = cache.get(1).toBankAccount();
+
+        assertEquals(Money.parse("10.00"), second.getBalance());
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testOlderVersionNeverReplacesNewer() {
+        //Arrange
+        //two writers to the same account finish out of order
+        AccountCache cache = new AccountCache(10);
+        long stamp = cache.stamp();
+
+        //Act
+        cache.put(entry(1, "20.00", 8), stamp);
+        cache.put(entry(1, "10.00", 7), stamp);
+
+        //Assert
+        assertEquals(Money.parse("20.00"), cache.get(1).getBalance());
+    }
+
+    @Test
+    public void testPutRacingAnInvalidationIsDropped() {
+        AccountCache cache = new AccountCache(10);
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+
+        cache.put(entry(1, "10.00", 1), stamp);
+
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void testEntryWithoutAuthorizedUsersKeepsTheCachedOnes() {
+        //Arrange
+        AccountCache cache = new AccountCache(10);
+        cache.put(entry(1, "10.00", 1), cache.stamp());
+        AccountCache.Entry transferred = new AccountCache.Entry(1, 1, "a@b.com", "checking", Money.parse("5.00"), null, 2);
+
+        //Act
+        cache.put(transferred, cache.stamp());
+        cache.put(new AccountCache.Entry(2, 1, "a@b.com", "checking", Money.parse("5.00"), null, 3), cache.stamp());
+
+        //Assert
+        //account 2 was never loaded, there is nothing to take its authorized users from
+        assertEquals(Money.parse("5.00"), cache.get(1).getBalance());
+        assertEquals(List.of("c@d.com"), cache.get(1).getAuthorizedUserEmails());
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void testWriteThroughOfAnUncachedAccountStillTurnsAwayAStaleRead() {
+        //Arrange
+        //a reader loads account 1 at version 1, then a transfer commits version 2 before the reader puts
+        AccountCache cache = new AccountCache(10);
+        long readerStamp = cache.stamp();
+        cache.put(new AccountCache.Entry(1, 1, "a@b.com", "checking", Money.parse("5.00"), null, 2), cache.stamp());
+
+        //Act
+        cache.put(entry(1, "10.00", 1), readerStamp);
+
+        //Assert
+        assertNull(cache.get(1));
+        //the next load sees version 2 and is cached as usual
+        cache.put(entry(1, "5.00", 2), cache.stamp());
+        assertEquals(Money.parse("5.00"), cache.get(1).getBalance());
+    }
+
+    @Test
+    public void testOneOffLookupsDontFlushAccountsReadTwice() {
+        //Arrange
+        //5 entries: 4 protected, 1 on probation
+        AccountCache cache = new AccountCache(5);
+        for (int accountNumber = 1; accountNumber <= 4; accountNumber++) {
+            cache.put(entry(accountNumber, "1.00", 1), cache.stamp());
+            cache.get(accountNumber);
+        }
+
+        //Act
+        //a scan over accounts nobody reads again
+        for (int accountNumber = 100; accountNumber < 200; accountNumber++) {
+            cache.put(entry(accountNumber, "1.00", 1), cache.stamp());
+        }
+
+        //Assert
+        for (int accountNumber = 1; accountNumber <= 4; accountNumber++) {
+            assertNotNull(cache.get(accountNumber));
+        }
+        assertNotNull(cache.get(199));
+        assertNull(cache.get(100));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testDisabledCacheKeepsNothing() {
+        AccountCache cache = new AccountCache(0);
+
+        cache.put(entry(1, "10.00", 1), cache.stamp());
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(1));
+    }
+}
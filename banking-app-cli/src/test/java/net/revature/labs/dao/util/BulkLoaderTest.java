@@ -0,0 +1,114 @@
+package net.revature.labs.dao.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.copy.CopyIn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkLoaderTest {
+
+    private static BulkLoader loader(long seed, double skew) {
+        BulkLoader loader = BulkLoader.fromArgs(new String[] { "users=1000", "transactions=100000", "seed=" + seed, "skew=" + skew });
+        loader.prepare(LocalDateTime.of(2024, 1, 1, 0, 0));
+        return loader;
+    }
+
+    @Test
+    public void testSameSeedSameLedger() throws IOException {
+        //Arrange
+        BulkLoader first = loader(7, 1.0);
+        BulkLoader second = loader(7, 1.0);
+        BulkLoader otherSeed = loader(8, 1.0);
+
+        //Act and Assert
+        //the balance copied with the account has to match the transactions copied later
+        boolean anyDifferent = false;
+        for (int account = 0; account < 1000; account++) {
+            long balance = first.ledger(account, null);
+            assertEquals(balance, second.ledger(account, null));
+            assertTrue(balance >= 0);
+            anyDifferent |= balance != otherSeed.ledger(account, null);
+        }
+        assertTrue(anyDifferent);
+    }
+
+    @Test
+    public void testRanksArePermutationOfTheAccounts() {
+        //Arrange
+        BulkLoader loader = loader(42, 1.0);
+
+        //Act
+        Set<Integer> ranks = new HashSet<>();
+        for (int account = 0; account < 1000; account++) {
+            ranks.add(loader.rank(account));
+        }
+
+        //Assert
+        assertEquals(1000, ranks.size());
+        assertTrue(ranks.contains(1));
+        assertTrue(ranks.contains(1000));
+    }
+
+    @Test
+    public void testSkewPutsMostTransactionsOnFewAccounts() {
+        //Arrange
+        BulkLoader skewed = loader(42, 1.2);
+        BulkLoader uniform = loader(42, 0);
+
+        //Act
+        long total = 0;
+        long busiest = 0;
+        for (int account = 0; account < 1000; account++) {
+            long expected = skewed.expectedTransactions(account);
+            total += expected;
+            busiest = Math.max(busiest, expected);
+        }
+
+        //Assert
+        //about 100000 over all accounts either way, but the top account alone gets a big slice of it
+        assertTrue(total > 95_000 && total <= 100_000, "total " + total);
+        assertTrue(busiest > 20_000, "busiest " + busiest);
+        assertEquals(100, uniform.expectedTransactions(0));
+        assertEquals(100, uniform.expectedTransactions(999));
+    }
+
+    @Test
+    public void testCopyRowsAreCsv() throws IOException {
+        //Arrange
+        //a CopyIn that only keeps what was written to it
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        CopyIn copyIn = (CopyIn) Proxy.newProxyInstance(CopyIn.class.getClassLoader(), new Class<?>[] { CopyIn.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("writeToCopy")) {
+                    written.write((byte[]) args[0], (int) args[1], (int) args[2]);
+                }
+                return null;
+            });
+        BulkLoader.CopyWriter out = new BulkLoader.CopyWriter(copyIn);
+
+        //Act
+        out.field(1900000000).field("deposit").cents(507).timestamp(1_714_558_530_123_456L).field(99).lastField(100);
+        out.field("x").lastCents(99);
+        out.flush();
+
+        //Assert
+        assertEquals("1900000000,deposit,5.07,2024-05-01T10:15:30.123456,99,100\nx,0.99\n",
+            new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBadSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BulkLoader.fromArgs(new String[] { "users=0" }));
+        assertThrows(IllegalArgumentException.class, () -> BulkLoader.fromArgs(new String[] { "skew=-1" }));
+        assertThrows(IllegalArgumentException.class, () -> BulkLoader.fromArgs(new String[] { "rows" }));
+        assertThrows(IllegalArgumentException.class, () -> BulkLoader.fromArgs(new String[] { "colour=blue" }));
+    }
+}
@@ -0,0 +1,67 @@
+package net.revature.labs.dao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstrumentedConnectionTest {
+
+    @Test
+    public void testQueryIsNamedAfterCallingMethodAndRowsAreCounted() throws SQLException {
+        //Arrange
+        QueryMetrics.startRequest();
+
+        //Act
+        findThreeRows();
+        findThreeRows();
+
+        //Assert
+        assertEquals(2, QueryMetrics.finishRequest());
+        StringBuilder scrape = new StringBuilder();
+        QueryMetrics.writePrometheus(scrape);
+        assertTrue(scrape.toString().contains("db_query_rows_total{query=\"InstrumentedConnectionTest.findThreeRows\"} 6"), scrape.toString());
+        assertTrue(scrape.toString().contains("db_query_seconds_count{query=\"InstrumentedConnectionTest.findThreeRows\"} 2"), scrape.toString());
+    }
+
+    @Test
+    public void testQueriesOutsideARequestAreNotCounted() throws SQLException {
+        findThreeRows();
+
+        assertEquals(0, QueryMetrics.finishRequest());
+    }
+
+    private void findThreeRows() throws SQLException {
+        try (Connection conn = InstrumentedConnection.wrap(fakeConnection(3));
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM transactions WHERE account_number = ? AND amount > ?")) {
+            stmt.setInt(1, 1);
+            stmt.setBigDecimal(2, BigDecimal.ONE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                //read nothing, the rows are counted by the proxy
+            }
+        }
+    }
+
+    // a connection whose statements return rowCount empty rows
+    private static Connection fakeConnection(int rowCount) {
+        int[] remaining = {rowCount};
+        ResultSet rs = fake(ResultSet.class, (proxy, method, args) ->
+            "next".equals(method.getName()) ? remaining[0]-- > 0 : null);
+        PreparedStatement stmt = fake(PreparedStatement.class, (proxy, method, args) ->
+            "executeQuery".equals(method.getName()) ? rs : null);
+        return fake(Connection.class, (proxy, method, args) ->
+            "prepareStatement".equals(method.getName()) ? stmt : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+}
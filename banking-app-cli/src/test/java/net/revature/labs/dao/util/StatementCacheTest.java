@@ -0,0 +1,133 @@
+package net.revature.labs.dao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    private final List<FakeStatement> prepared = new ArrayList<>();
+
+    @Test
+    public void testClosedStatementIsReusedForTheSameSql() throws SQLException {
+        //Arrange
+        StatementCache cache = new StatementCache(fakeConnection(), 4, 0);
+
+        //Act
+        PreparedStatement first = cache.prepare("SELECT 1");
+        first.setInt(1, 5);
+        first.close();
+        PreparedStatement second = cache.prepare("SELECT 1");
+
+        //Assert
+        assertEquals(1, prepared.size());
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        assertEquals(1, prepared.get(0).clearParametersCalls);
+        assertFalse(prepared.get(0).closed);
+    }
+
+    @Test
+    public void testSameSqlOpenTwiceGetsTwoStatements() throws SQLException {
+        //Arrange
+        StatementCache cache = new StatementCache(fakeConnection(), 4, 0);
+
+        //Act
+        PreparedStatement first = cache.prepare("SELECT 1");
+        PreparedStatement second = cache.prepare("SELECT 1");
+        first.close();
+        second.close();
+
+        //Assert
+        assertEquals(2, prepared.size());
+        assertFalse(prepared.get(0).closed);
+        assertTrue(prepared.get(1).closed, "only one copy is kept");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+        //Arrange
+        StatementCache cache = new StatementCache(fakeConnection(), 2, 0);
+        cache.prepare("SELECT 1").close();
+        cache.prepare("SELECT 2").close();
+        cache.prepare("SELECT 1").close();
+
+        //Act
+        cache.prepare("SELECT 3").close();
+
+        //Assert
+        assertEquals(3, prepared.size());
+        assertFalse(prepared.get(0).closed, "SELECT 1 was used most recently");
+        assertTrue(prepared.get(1).closed, "SELECT 2 was least recently used");
+        assertFalse(prepared.get(2).closed);
+    }
+
+    @Test
+    public void testNewGenerationClosesCachedStatements() throws SQLException {
+        //Arrange
+        StatementCache cache = new StatementCache(fakeConnection(), 4, 0);
+        cache.prepare("SELECT 1").close();
+
+        //Act
+        cache.clearIfStale(1);
+        cache.prepare("SELECT 1").close();
+
+        //Assert
+        assertEquals(2, prepared.size());
+        assertTrue(prepared.get(0).closed);
+    }
+
+    @Test
+    public void testUsingAClosedStatementThrows() throws SQLException {
+        StatementCache cache = new StatementCache(fakeConnection(), 4, 0);
+        PreparedStatement stmt = cache.prepare("SELECT 1");
+        stmt.close();
+
+        assertThrows(SQLException.class, () -> stmt.setInt(1, 1));
+    }
+
+    private Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                if ("prepareStatement".equals(method.getName())) {
+                    FakeStatement fake = new FakeStatement();
+                    prepared.add(fake);
+                    return fake.proxy();
+                }
+                return null;
+            });
+    }
+
+    // records what the cache does to the real statement
+    private static class FakeStatement {
+        private boolean closed = false;
+        private int clearParametersCalls = 0;
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed = true;
+                            return null;
+                        case "isClosed":
+                            return closed;
+                        case "clearParameters":
+                            clearParametersCalls++;
+                            return null;
+                        case "getFetchSize":
+                        case "getMaxRows":
+                            return 0;
+                        default:
+                            return null;
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package net.revature.labs.dao.util;
+
+import org.junit.jupiter.api.Test;
+
+import net.revature.labs.model.TransactionHistory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionStoreTest {
+
+    private static TransactionHistory history(int accountNumber, int transactions) {
+        TransactionHistory history = new TransactionHistory(accountNumber, transactions);
+        for (int i = 0; i < transactions; i++) {
+            history.append(i + 1, "deposit", 100, null, accountNumber, accountNumber);
+        }
+        return history;
+    }
+
+    @Test
+    public void testStoredHistoryIsReturned() {
+        TransactionStore store = new TransactionStore(100);
+        TransactionHistory history = history(1, 3);
+
+        store.put(1, history, store.stamp());
+
+        assertSame(history, store.get(1));
+        assertNull(store.get(2));
+        assertEquals(3, store.transactionCount());
+    }
+
+    @Test
+    public void testLoadRacingAnInvalidationIsNotStored() {
+        //Arrange
+        //a loader takes its stamp, then a write lands before it can store what it read
+        TransactionStore store = new TransactionStore(100);
+        long stamp = store.stamp();
+        store.invalidate(1);
+
+        //Act
+        store.put(1, history(1, 3), stamp);
+
+        //Assert
+        assertNull(store.get(1));
+    }
+
+    @Test
+    public void testInvalidateDropsTheAccount() {
+        TransactionStore store = new TransactionStore(100);
+        store.put(1, history(1, 3), store.stamp());
+        store.put(2, history(2, 3), store.stamp());
+
+        store.invalidate(1);
+
+        assertNull(store.get(1));
+        assertNotNull(store.get(2));
+        assertEquals(3, store.transactionCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAccountsAreEvictedByTransactionCount() {
+        //Arrange
+        TransactionStore store = new TransactionStore(10);
+        store.put(1, history(1, 4), store.stamp());
+        store.put(2, history(2, 4), store.stamp());
+        store.get(1);
+
+        //Act
+        //3 more transactions don't fit, account 2 was used least recently
+        store.put(3, history(3, 3), store.stamp());
+
+        //Assert
+        assertNotNull(store.get(1));
+        assertNull(store.get(2));
+        assertNotNull(store.get(3));
+        assertEquals(7, store.transactionCount());
+    }
+
+    @Test
+    public void testDisabledStoreKeepsNothing() {
+        TransactionStore store = new TransactionStore(0);
+
+        store.put(1, history(1, 1), store.stamp());
+
+        assertFalse(store.isEnabled());
+        assertNull(store.get(1));
+    }
+}
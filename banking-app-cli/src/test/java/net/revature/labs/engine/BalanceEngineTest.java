@@ -0,0 +1,306 @@
+package net.revature.labs.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import net.revature.labs.model.Money;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BalanceEngineTest {
+
+    // stands in for the database: the balances the engine starts from and where the journal is projected to
+    static class MemoryStore implements EngineStore {
+        final Map<Integer, Long> balances = new ConcurrentHashMap<>();
+        final Map<Integer, Long> checkpoints = new ConcurrentHashMap<>();
+        volatile boolean failing;
+
+        @Override
+        public void loadBalances(BalanceSink sink) {
+            balances.forEach(sink::accept);
+        }
+
+        @Override
+        public long getCheckpoint(int shard) {
+            return checkpoints.getOrDefault(shard, 0L);
+        }
+
+        @Override
+        public void project(int shard, List<JournalRecord> records) throws SQLException {
+            if (failing) {
+                throw new SQLException("database is down");
+            }
+            // same balance effects as PostgresEngineStore
+            for (JournalRecord record : records) {
+                switch (record.kind) {
+                    case JournalRecord.POST:
+                    case JournalRecord.CREDIT:
+                    case JournalRecord.ABORT:
+                        balances.merge(record.accountNumber, record.amountCents, Long::sum);
+                        break;
+                    case JournalRecord.RESERVE:
+                        balances.merge(record.accountNumber, -record.amountCents, Long::sum);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            checkpoints.put(shard, records.get(records.size() - 1).sequence);
+        }
+    }
+
+    private static BalanceEngine engine(Path dir, MemoryStore store) {
+        return new BalanceEngine(4, dir, 1024, 64, 0, store);
+    }
+
+    // a pair of existing accounts that live on different shards
+    private static int[] accountsOnDifferentShards(BalanceEngine engine) {
+        for (int to = 2; ; to++) {
+            if (engine.shardOf(1) != engine.shardOf(to)) {
+                return new int[] {1, to};
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentPostingsAllLandOnceInTheEngineAndTheStore() throws Exception {
+        //Arrange
+        MemoryStore store = new MemoryStore();
+        for (int account = 1; account <= 8; account++) {
+            store.balances.put(account, 0L);
+        }
+        BalanceEngine engine = engine(Files.createTempDirectory("engine"), store);
+        engine.start();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        //Act
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            done.add(pool.submit(() -> {
+                for (int i = 0; i < 800; i++) {
+                    engine.post(1 + i % 8, Money.parse("1.00"));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        Money engineBalance = engine.balance(3);
+        engine.shutdown();
+
+        //Assert
+        //8 threads * 800 postings spread over 8 accounts = 800 each
+        assertEquals(Money.parse("800.00"), engineBalance);
+        for (int account = 1; account <= 8; account++) {
+            assertEquals(80_000L, store.balances.get(account).longValue());
+        }
+        assertTrue(BalanceEngine.getJournalSyncs() > 0);
+    }
+
+    @Test
+    public void testConcurrentWithdrawalsCantOverdraw() throws Exception {
+        //Arrange
+        MemoryStore store = new MemoryStore();
+        store.balances.put(1, 1000L);
+        BalanceEngine engine = engine(Files.createTempDirectory("engine"), store);
+        engine.start();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        //Act
+        List<Future<?>> done = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            done.add(pool.submit(() -> {
+                try {
+                    engine.post(1, Money.parse("-1.00"));
+                    accepted.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    assertEquals("Insufficient funds", e.getMessage());
+                    refused.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        Money balance = engine.balance(1);
+        engine.shutdown();
+
+        //Assert
+        assertEquals(10, accepted.get());
+        assertEquals(40, refused.get());
+        assertTrue(balance.isZero());
+        assertEquals(0L, store.balances.get(1).longValue());
+    }
+
+    @Test
+    public void testCrossShardTransferMovesTheMoneyExactlyOnce() throws Exception {
+        //Arrange
+        MemoryStore store = new MemoryStore();
+        BalanceEngine engine = engine(Files.createTempDirectory("engine"), store);
+        int[] accounts = accountsOnDifferentShards(engine);
+        int from = accounts[0];
+        int to = accounts[1];
+        store.balances.put(from, 5000L);
+        store.balances.put(to, 0L);
+        engine.start();
+
+        //Act
+        Money sourceAfter = engine.transfer(from, to, Money.parse("20.00"));
+        IllegalArgumentException tooMuch = assertThrows(IllegalArgumentException.class,
+            () -> engine.transfer(from, to, Money.parse("40.00")));
+        IllegalArgumentException nowhere = assertThrows(IllegalArgumentException.class,
+            () -> engine.transfer(from, 999_999, Money.parse("1.00")));
+        Money sourceBalance = engine.balance(from);
+        Money destinationBalance = engine.balance(to);
+        engine.shutdown();
+
+        //Assert
+        assertEquals(Money.parse("30.00"), sourceAfter);
+        assertEquals("Insufficient funds", tooMuch.getMessage());
+        //the hold taken for the refused credit was given back
+        assertEquals("Destination account does not exist", nowhere.getMessage());
+        assertEquals(Money.parse("30.00"), sourceBalance);
+        assertEquals(Money.parse("20.00"), destinationBalance);
+        assertEquals(3000L, store.balances.get(from).longValue());
+        assertEquals(2000L, store.balances.get(to).longValue());
+    }
+
+    @Test
+    public void testABalanceThatWouldOverflowIsRefused() throws Exception {
+        //Arrange
+        MemoryStore store = new MemoryStore();
+        BalanceEngine engine = engine(Files.createTempDirectory("engine"), store);
+        int[] accounts = accountsOnDifferentShards(engine);
+        int from = accounts[0];
+        int full = accounts[1];
+        store.balances.put(from, 5000L);
+        store.balances.put(full, Long.MAX_VALUE - 100);
+        engine.start();
+
+        //Act
+        Money topped = engine.post(full, Money.parse("1.00"));
+        IllegalArgumentException deposit = assertThrows(IllegalArgumentException.class,
+            () -> engine.post(full, Money.parse("0.01")));
+        IllegalArgumentException transfer = assertThrows(IllegalArgumentException.class,
+            () -> engine.transfer(from, full, Money.parse("0.01")));
+        Money fullBalance = engine.balance(full);
+        Money sourceBalance = engine.balance(from);
+        engine.shutdown();
+
+        //Assert
+        //refused instead of wrapping around to a negative balance, and the transfer's hold was given back
+        assertEquals(Money.ofCents(Long.MAX_VALUE), topped);
+        assertEquals("Balance would overflow", deposit.getMessage());
+        assertEquals("Balance would overflow", transfer.getMessage());
+        assertEquals(Money.ofCents(Long.MAX_VALUE), fullBalance);
+        assertEquals(Money.parse("50.00"), sourceBalance);
+    }
+
+    @Test
+    public void testRestartReplaysWhatTheStoreNeverGot() throws Exception {
+        //Arrange
+        Path dir = Files.createTempDirectory("engine");
+        MemoryStore store = new MemoryStore();
+        store.balances.put(1, 0L);
+        store.balances.put(2, 10_000L);
+        store.failing = true;
+        BalanceEngine first = engine(dir, store);
+        first.start();
+        first.post(1, Money.parse("12.34"));
+        first.transfer(2, 1, Money.parse("50.00"));
+        first.shutdown();
+
+        //Act
+        store.failing = false;
+        BalanceEngine second = engine(dir, store);
+        second.start();
+        Money one = second.balance(1);
+        Money two = second.balance(2);
+        second.shutdown();
+
+        //Assert
+        assertEquals(Money.parse("62.34"), one);
+        assertEquals(Money.parse("50.00"), two);
+        assertEquals(6234L, store.balances.get(1).longValue());
+        assertEquals(5000L, store.balances.get(2).longValue());
+    }
+
+    @Test
+    public void testRestartSettlesTransfersCutOffBetweenLegs() throws Exception {
+        //Arrange
+        Path dir = Files.createTempDirectory("engine");
+        MemoryStore store = new MemoryStore();
+        BalanceEngine layout = engine(dir, store);
+        int[] accounts = accountsOnDifferentShards(layout);
+        int from = accounts[0];
+        int to = accounts[1];
+        store.balances.put(from, 10_000L);
+        store.balances.put(to, 0L);
+        //transfer 7 crashed after its RESERVE, transfer 8 after its CREDIT
+        long now = JournalRecord.nowMicros();
+        try (Journal source = new Journal(dir.resolve("shard-" + layout.shardOf(from) + ".journal"), 4);
+             Journal destination = new Journal(dir.resolve("shard-" + layout.shardOf(to) + ".journal"), 4)) {
+            source.append(new JournalRecord(JournalRecord.RESERVE, 1, from, to, 1000, 7, now));
+            source.append(new JournalRecord(JournalRecord.RESERVE, 2, from, to, 2500, 8, now));
+            source.sync();
+            destination.append(new JournalRecord(JournalRecord.CREDIT, 1, to, from, 2500, 8, now));
+            destination.sync();
+        }
+
+        //Act
+        BalanceEngine engine = engine(dir, store);
+        engine.start();
+        Money source = engine.balance(from);
+        Money destination = engine.balance(to);
+        engine.shutdown();
+
+        //Assert
+        //7 is aborted (its 10.00 comes back), 8 is committed
+        assertEquals(Money.parse("75.00"), source);
+        assertEquals(Money.parse("25.00"), destination);
+        assertEquals(7500L, store.balances.get(from).longValue());
+        assertEquals(2500L, store.balances.get(to).longValue());
+    }
+
+    @Test
+    public void testTornJournalTailIsCutOff() throws IOException {
+        //Arrange
+        Path path = Files.createTempDirectory("engine").resolve("shard-0.journal");
+        try (Journal journal = new Journal(path, 4)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(new JournalRecord(JournalRecord.POST, i, 1, 0, 100 * i, 0, JournalRecord.nowMicros()));
+            }
+            journal.sync();
+        }
+        //a crash halfway through writing the fourth
+        Files.write(path, new byte[JournalRecord.SIZE / 2], StandardOpenOption.APPEND);
+
+        //Act
+        List<JournalRecord> records = Journal.read(path);
+
+        //Assert
+        assertEquals(3, records.size());
+        assertEquals(300, records.get(2).amountCents);
+        assertEquals(3L * JournalRecord.SIZE, Files.size(path));
+    }
+}
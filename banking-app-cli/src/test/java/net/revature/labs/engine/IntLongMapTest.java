@@ -0,0 +1,58 @@
+package net.revature.labs.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntLongMapTest {
+
+    @Test
+    public void testPutGetAndGrow() {
+        //Arrange
+        IntLongMap map = new IntLongMap(4);
+
+        //Act
+        for (int key = 1; key <= 10_000; key++) {
+            map.put(key, key * 100L);
+        }
+        map.put(42, -5);
+
+        //Assert
+        assertEquals(10_000, map.size());
+        assertEquals(-5, map.get(42));
+        assertEquals(1_000_000, map.get(10_000));
+        assertEquals(IntLongMap.NO_VALUE, map.get(10_001));
+        assertFalse(map.containsKey(-1));
+    }
+
+    @Test
+    public void testRemoveKeepsTheRestReachable() {
+        //Arrange
+        //small table and many removes, so entries get shifted back across probe chains and the wrap-around
+        IntLongMap map = new IntLongMap(16);
+        Map<Integer, Long> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(7);
+
+        //Act
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(1, 500);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        //Assert
+        assertEquals(expected.size(), map.size());
+        for (int key = 1; key < 500; key++) {
+            assertEquals(expected.getOrDefault(key, IntLongMap.NO_VALUE).longValue(), map.get(key), "key " + key);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package net.revature.labs.model;
 
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 // import net.revature.labs.model.BankAccount;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,9 +24,9 @@ public class AccountTest {
 
         assertEquals(user.getUserId(), account.getUserId());
         assertEquals("Savings", account.getAccountType());
-        assertEquals(new BigDecimal("0"), account.getBalance());
+        assertEquals(Money.parse("0"), account.getBalance());
         assertEquals(user.getEmail(), account.getEmail());
-        assertEquals(10, account.getAccountNumber().length());
+        assertEquals(10, String.valueOf(account.getAccountNumber()).length());
         //verify account has list of transactions
         //verify account has list of authorized users
         assertEquals(0, account.getTransactions().size());
@@ -38,17 +39,17 @@ public class AccountTest {
         //deposit some money
         User user = new User("John Doe", "johndoe@internet.com", "92223334567", "password", false);
         BankAccount account = new BankAccount(user, "Savings");
-        String fromAccountNumber = "9997778881";
-        account.deposit(new BigDecimal("1500.00"), fromAccountNumber);
+        int fromAccountNumber = 1997778881;
+        account.deposit(Money.parse("1500.00"), fromAccountNumber);
 
-        assertEquals(new BigDecimal("1500.00"), account.getBalance());
+        assertEquals(Money.parse("1500.00"), account.getBalance());
         //verify transaction was added to list of transactions
         //verify transaction details
         assertEquals(1, account.getTransactions().size());
         Transaction transaction = account.getTransactions().get(0);
         assertEquals(account.getAccountNumber(), transaction.getAccountNumber());
         assertEquals("Deposit", transaction.getTransactionType());
-        assertEquals(new BigDecimal("1500.00"), transaction.getAmount());
+        assertEquals(Money.parse("1500.00"), transaction.getAmount());
         assertEquals(fromAccountNumber, transaction.getFromAccountNumber());
         //verfify the  tx toNumber
         assertEquals(account.getAccountNumber(), transaction.getToAccountNumber());
@@ -61,11 +62,11 @@ public class AccountTest {
         User user1 = new User("Joe Bloh", "joe@bloh.com", "7178907634", "password", false);
  
         BankAccount account = new BankAccount(user1, "Savings");
-        account.deposit(new BigDecimal("1000.00"), "9997778881");
-        boolean success = account.withdraw(new BigDecimal("500.00"));
+        account.deposit(Money.parse("1000.00"), 1997778881);
+        boolean success = account.withdraw(Money.parse("500.00"));
 
         assertTrue(success);
-        assertEquals(new BigDecimal("500.00"), account.getBalance());
+        assertEquals(Money.parse("500.00"), account.getBalance());
     }
 
     @Test
@@ -74,9 +75,31 @@ public class AccountTest {
         BankAccount account = new BankAccount(userBetty, "Savings");
         //created account should have a balance of 0
         // thus the withdrawal should fail.
-        boolean success = account.withdraw(new BigDecimal("1500.00"));
+        boolean success = account.withdraw(Money.parse("1500.00"));
 
         assertFalse(success);
-        assertEquals(new BigDecimal("0"), account.getBalance());
+        assertEquals(Money.parse("0"), account.getBalance());
+    }
+
+    @Test
+    public void testAccountNumbersStayStringsInJson() throws Exception {
+        //ids are ints in the model but the API has always sent account numbers as strings
+        ObjectMapper objectMapper = new ObjectMapper();
+        User user = new User("John Doe", "email@web.com", "1112223456", "password", false);
+        BankAccount account = new BankAccount(user, "Savings");
+        account.deposit(Money.parse("10.00"), 1997778881);
+
+        String json = objectMapper.writeValueAsString(account);
+
+        assertTrue(json.contains("\"accountNumber\":\"" + account.getAccountNumber() + "\""));
+        assertTrue(json.contains("\"fromAccountNumber\":\"1997778881\""));
+        BankAccount roundTripped = objectMapper.readValue(json, BankAccount.class);
+        assertEquals(account.getAccountNumber(), roundTripped.getAccountNumber());
+        assertEquals(1997778881, roundTripped.getTransactions().get(0).getFromAccountNumber());
+        //plain numbers are accepted too
+        Transaction tx = objectMapper.readValue("{\"accountNumber\":1000000001,\"fromAccountNumber\":\"1000000002\"}", Transaction.class);
+        assertEquals(1000000001, tx.getAccountNumber());
+        assertEquals(1000000002, tx.getFromAccountNumber());
+        assertEquals(0, tx.getToAccountNumber());
     }
 }
@@ -0,0 +1,115 @@
+package net.revature.labs.model;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyTransactionListTest {
+
+    // ids 1..total, answers keyset pages the way the DAO does
+    private static TransactionPager pagerOf(int total) {
+        return (accountNumber, afterTransactionId, limit) -> {
+            List<Transaction> page = new ArrayList<>();
+            for (int id = afterTransactionId + 1; id <= total && page.size() < limit; id++) {
+                page.add(new Transaction(id, accountNumber, "deposit", Money.ofCents(id),
+                    Timestamp.valueOf("2024-05-01 10:00:00"), accountNumber, accountNumber));
+            }
+            return page;
+        };
+    }
+
+    @Test
+    public void testNothingIsLoadedUntilTouched() {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 10, pagerOf(25));
+
+        //Act
+        int pagesBefore = transactions.getPagesLoaded();
+        Transaction first = transactions.get(0);
+
+        //Assert
+        assertEquals(0, pagesBefore);
+        assertEquals(1, first.getTransactionId());
+        assertEquals(1, transactions.getPagesLoaded());
+    }
+
+    @Test
+    public void testSizeLoadsEveryPageInOrder() {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 10, pagerOf(25));
+
+        //Act
+        int size = transactions.size();
+
+        //Assert
+        //10 + 10 + 5, the short page marks the end
+        assertEquals(25, size);
+        assertEquals(3, transactions.getPagesLoaded());
+        assertEquals(25, transactions.get(24).getTransactionId());
+    }
+
+    @Test
+    public void testIteratorStopsLoadingWhenTheCallerStops() {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 10, pagerOf(100));
+
+        //Act
+        int seen = 0;
+        for (Transaction transaction : transactions) {
+            if (++seen == 15) {
+                break;
+            }
+        }
+
+        //Assert
+        assertEquals(2, transactions.getPagesLoaded());
+    }
+
+    @Test
+    public void testAddGoesAfterTheLoadedHistory() {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 10, pagerOf(3));
+        Transaction posted = new Transaction(1000000001, "deposit", Money.parse("1.00"),
+            Timestamp.valueOf("2024-05-02 10:00:00"), 1000000001, 1000000001);
+
+        //Act
+        transactions.add(posted);
+
+        //Assert
+        assertEquals(4, transactions.size());
+        assertSame(posted, transactions.get(3));
+        assertFalse(transactions.isEmpty());
+    }
+
+    @Test
+    public void testLoadFailureIsNotMistakenForAnEmptyHistory() {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 10, (accountNumber, after, limit) -> {
+            throw new SQLException("connection refused");
+        });
+
+        //Act and Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, transactions::isEmpty);
+        assertEquals("Could not load transactions for account 1000000001", exception.getMessage());
+    }
+
+    @Test
+    public void testSerializesAsAPlainArray() throws Exception {
+        //Arrange
+        LazyTransactionList transactions = new LazyTransactionList(1000000001, 2, pagerOf(3));
+
+        //Act
+        String json = new ObjectMapper().writeValueAsString(transactions);
+
+        //Assert
+        assertTrue(json.startsWith("[{"));
+        assertEquals(3, new ObjectMapper().readTree(json).size());
+    }
+}
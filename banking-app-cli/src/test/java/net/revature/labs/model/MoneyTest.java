@@ -0,0 +1,103 @@
+package net.revature.labs.model;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testParse() {
+        assertEquals(150000, Money.parse("1500").getCents());
+        assertEquals(150050, Money.parse("1500.5").getCents());
+        assertEquals(150055, Money.parse("1500.55").getCents());
+        assertEquals(-5, Money.parse("-0.05").getCents());
+        assertEquals(50, Money.parse(".5").getCents());
+        assertEquals(150000, Money.parse("1.5e3").getCents());
+    }
+
+    @Test
+    public void testParseRejectsFractionsOfACent() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("10.001"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+    }
+
+    @Test
+    public void testParseRejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("ten"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse(null));
+    }
+
+    @Test
+    public void testEqualityIgnoresScale() {
+        assertEquals(Money.parse("10"), Money.parse("10.00"));
+        assertEquals(Money.parse("10"), Money.of(new BigDecimal("10.0")));
+    }
+
+    @Test
+    public void testArithmetic() {
+        Money balance = Money.parse("100.00");
+
+        assertEquals(Money.parse("150.25"), balance.plus(Money.parse("50.25")));
+        assertEquals(Money.parse("-0.01"), balance.minus(Money.parse("100.01")));
+        assertTrue(balance.minus(Money.parse("100.01")).isNegative());
+        assertTrue(balance.isLessThan(Money.parse("100.01")));
+        assertEquals(Money.parse("100.00"), balance.negate().abs());
+    }
+
+    @Test
+    public void testOverflowThrowsInsteadOfWrappingAround() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    public void testParseRangeBoundaries() {
+        //16 integer digits take the fast path
+        assertEquals(999999999999999999L, Money.parse("9999999999999999.99").getCents());
+        assertEquals(-999999999999999999L, Money.parse("-9999999999999999.99").getCents());
+        //17 digits go through BigDecimal, fine as long as the cents fit in a long
+        assertEquals(1234567890123456700L, Money.parse("12345678901234567").getCents());
+        //and rejected, not wrapped around, when they don't
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("99999999999999999"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-99999999999999999"));
+    }
+
+    @Test
+    public void testToStringAndBigDecimal() {
+        assertEquals("1500.00", Money.parse("1500").toString());
+        assertEquals("-0.05", Money.ofCents(-5).toString());
+        assertEquals(new BigDecimal("12.30"), Money.parse("12.3").toBigDecimal());
+    }
+
+    @Test
+    public void testJsonIsANumberWithTwoDecimals() throws Exception {
+        assertEquals("1500.00", objectMapper.writeValueAsString(Money.parse("1500")));
+        assertEquals("{\"amount\":0.05}", objectMapper.writeValueAsString(new Holder(Money.ofCents(5))));
+    }
+
+    @Test
+    public void testJsonAcceptsNumbersAndStrings() throws Exception {
+        assertEquals(Money.parse("100"), objectMapper.readValue("100", Money.class));
+        assertEquals(Money.parse("100.10"), objectMapper.readValue("100.1", Money.class));
+        assertEquals(Money.parse("100.10"), objectMapper.readValue("\"100.10\"", Money.class));
+        assertThrows(Exception.class, () -> objectMapper.readValue("0.001", Money.class));
+    }
+
+    public static class Holder {
+        public Money amount;
+
+        public Holder(Money amount) {
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.revature.labs.model;
+
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionHistoryTest {
+
+    @Test
+    public void testViewsMatchWhatWasAppended() {
+        //Arrange
+        Timestamp time = Timestamp.valueOf("2024-05-01 10:15:30.123456");
+        TransactionHistory history = new TransactionHistory(1000000001, 1);
+
+        //Act
+        history.append(7, "deposit", 150055, time, 1000000002, 1000000001);
+        history.append(new Transaction(8, 1000000001, "transfer", Money.parse("1.00"), time, 1000000001, 0));
+
+        //Assert
+        //grows past the initial capacity and rebuilds every field, microseconds included
+        assertEquals(2, history.size());
+        Transaction first = history.get(0);
+        assertEquals(7, first.getTransactionId());
+        assertEquals(1000000001, first.getAccountNumber());
+        assertEquals("deposit", first.getTransactionType());
+        assertEquals(Money.parse("1500.55"), first.getAmount());
+        assertEquals(time, first.getTransactionDateTime());
+        assertEquals(1000000002, first.getFromAccountNumber());
+        assertEquals(1000000001, first.getToAccountNumber());
+        assertEquals(0, history.get(1).getToAccountNumber());
+        assertEquals(100, history.getAmountCents(1));
+    }
+
+    @Test
+    public void testTimestampsBeforeTheEpochSurvive() {
+        Timestamp time = Timestamp.valueOf("1969-12-31 23:59:59.999999");
+
+        assertEquals(time, TransactionHistory.fromEpochMicros(TransactionHistory.toEpochMicros(time)));
+        assertNull(TransactionHistory.fromEpochMicros(TransactionHistory.toEpochMicros(null)));
+    }
+
+    @Test
+    public void testUnknownTypesGetTheirOwnCode() {
+        byte code = TransactionHistory.typeCode("interest");
+
+        assertEquals(code, TransactionHistory.typeCode("interest"));
+        assertEquals("interest", TransactionHistory.typeName(code));
+        assertNotEquals(code, TransactionHistory.typeCode("deposit"));
+    }
+
+    @Test
+    public void testIsReadOnly() {
+        TransactionHistory history = new TransactionHistory(1, 4);
+        Transaction tx = new Transaction(1, "deposit", Money.ZERO, new Timestamp(0), 1, 1);
+
+        assertThrows(UnsupportedOperationException.class, () -> history.add(tx));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.get(0));
+    }
+
+    @Test
+    public void testSerializesLikeAListOfTransactions() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Timestamp time = new Timestamp(1714558530000L);
+        TransactionHistory history = new TransactionHistory(1000000001, 4);
+        history.append(7, "deposit", 500, time, 1000000002, 1000000001);
+        java.util.List<Transaction> list = java.util.List.of(history.get(0));
+
+        assertEquals(objectMapper.writeValueAsString(list), objectMapper.writeValueAsString(history));
+    }
+}
@@ -1,8 +1,11 @@
 package net.revature.labs.service;
 
+import net.revature.labs.dao.TransactionCursor;
+import net.revature.labs.dao.TransactionFilter;
 import net.revature.labs.dao.UserDAOImpl;
 import net.revature.labs.dao.util.DBUtil;
 import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
 import net.revature.labs.model.Transaction;
 import net.revature.labs.model.User;
 import org.junit.jupiter.api.AfterAll;
@@ -12,7 +15,6 @@ import org.junit.jupiter.api.Test;
 import util.TestUtil;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -85,10 +87,10 @@ public class AccountServiceTest {
         assertEquals(newUser.getEmail(), foundAccount.getEmail());
         assertEquals("savings", foundAccount.getAccountType());
         
-        BigDecimal accountBalance = new BigDecimal("0.00");
+        Money accountBalance = Money.parse("0.00");
         assertEquals(accountBalance, foundAccount.getBalance());
         
-        assertEquals(10, foundAccount.getAccountNumber().length());
+        assertEquals(10, String.valueOf(foundAccount.getAccountNumber()).length());
         assertEquals(0, foundAccount.getTransactions().size());
         assertEquals(0, foundAccount.getAuthorizedUserEmails().size());
     }
@@ -112,8 +114,8 @@ public class AccountServiceTest {
             // authorized users
         BankAccount foundAccount = listOfJamesAccountsFromDB.get(0);
         assertEquals("savings", foundAccount.getAccountType());
-        assertEquals(new BigDecimal("0.00"), foundAccount.getBalance());
-        assertEquals(10, foundAccount.getAccountNumber().length());
+        assertEquals(Money.parse("0.00"), foundAccount.getBalance());
+        assertEquals(10, String.valueOf(foundAccount.getAccountNumber()).length());
         assertEquals(0, foundAccount.getTransactions().size());
         assertEquals(0, foundAccount.getAuthorizedUserEmails().size());
 
@@ -130,12 +132,29 @@ public class AccountServiceTest {
           List<BankAccount> listOfNewUsersAccountsFromDB = accountService.getAllAccountsByUserEmail(newUser.getEmail());
         //do transactions
         BankAccount foundAccount = listOfNewUsersAccountsFromDB.get(0);
-        accountService.deposit(bankAccount, new BigDecimal("100.00"));
-        accountService.withdraw(bankAccount, new BigDecimal("50.00"));
+        accountService.deposit(bankAccount, Money.parse("100.00"));
+        accountService.withdraw(bankAccount, Money.parse("50.00"));
         //verify transaction history
-        List<Transaction> transactions = accountService.getTransactionHistory(foundAccount.getEmail());
+        List<Transaction> transactions = accountService.getTransactionHistory(foundAccount.getAccountNumber(), new TransactionFilter(), null, 100);
         assertEquals(2, transactions.size());
-        
+        //newest first
+        assertEquals("withdraw", transactions.get(0).getTransactionType());
+
+        //filtered to deposits only
+        TransactionFilter deposits = new TransactionFilter();
+        deposits.setTransactionTypes(List.of("deposit"));
+        deposits.setMinAmount(Money.parse("100.00"));
+        List<Transaction> depositHistory = accountService.getTransactionHistory(foundAccount.getAccountNumber(), deposits, null, 100);
+        assertEquals(1, depositHistory.size());
+        assertEquals(Money.parse("100.00"), depositHistory.get(0).getAmount());
+
+        //one row per page, the cursor of the first page leads to the second and nothing repeats
+        List<Transaction> firstPage = accountService.getTransactionHistory(foundAccount.getAccountNumber(), new TransactionFilter(), null, 1);
+        TransactionCursor cursor = TransactionCursor.decode(TransactionCursor.after(firstPage.get(0)).encode());
+        List<Transaction> secondPage = accountService.getTransactionHistory(foundAccount.getAccountNumber(), new TransactionFilter(), cursor, 1);
+        assertEquals(1, secondPage.size());
+        assertNotEquals(firstPage.get(0).getTransactionId(), secondPage.get(0).getTransactionId());
+        assertEquals("deposit", secondPage.get(0).getTransactionType());
 
 
         // accountService.createAccount(userId, "Savings Account", BigDecimal.ZERO);
@@ -174,11 +193,11 @@ public class AccountServiceTest {
         //create bank account
         BankAccount bankAccount = accountService.createBankAccount(email, "savings");
         //make deposit
-        accountService.deposit(bankAccount, new BigDecimal("100.00"));
+        accountService.deposit(bankAccount, Money.parse("100.00"));
         List<BankAccount> user1sAccountsFromDB = accountService.getAllAccountsByUserEmail(user1.getEmail());
         //verify balance
         BankAccount depositAccount = user1sAccountsFromDB.get(0);
-        assertEquals(new BigDecimal("100.00"), depositAccount.getBalance());
+        assertEquals(Money.parse("100.00"), depositAccount.getBalance());
     }
     
     @Test
@@ -190,22 +209,22 @@ public class AccountServiceTest {
         //create bank account
         BankAccount bankAccount = accountService.createBankAccount(userEmail, "savings");
         //make deposit
-        accountService.deposit(bankAccount, new BigDecimal("100.00"));
+        accountService.deposit(bankAccount, Money.parse("100.00"));
         // withdraw
-        accountService.withdraw(bankAccount, new BigDecimal("50.00"));
+        accountService.withdraw(bankAccount, Money.parse("50.00"));
 
         BankAccount foundAccount = accountService.getAccount(bankAccount.getAccountNumber());
-        assertEquals(new BigDecimal("50.00"), foundAccount.getBalance());
+        assertEquals(Money.parse("50.00"), foundAccount.getBalance());
         // verify balance
         // verify transaction was added to list of transactions
         // verify transaction details
         assertEquals(bankAccount, foundAccount);
-        assertEquals(new BigDecimal("50.00"), foundAccount.getBalance());
+        assertEquals(Money.parse("50.00"), foundAccount.getBalance());
         assertEquals(1, foundAccount.getTransactions().size());
         Transaction transaction = foundAccount.getTransactions().get(0);
         assertEquals(bankAccount.getAccountNumber(), transaction.getAccountNumber());
         assertEquals("Withdraw", transaction.getTransactionType());
-        assertEquals(new BigDecimal("50.00"), transaction.getAmount());
+        assertEquals(Money.parse("50.00"), transaction.getAmount());
         assertEquals(bankAccount.getAccountNumber(), transaction.getFromAccountNumber());
         assertEquals(bankAccount.getAccountNumber(), transaction.getToAccountNumber());
         assertEquals(1, foundAccount.getTransactions().size());
@@ -0,0 +1,70 @@
+package net.revature.labs.service;
+
+import net.revature.labs.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthTokenServiceTest {
+    private static final byte[] SECRET = "test-secret-test-secret-test-secret".getBytes(StandardCharsets.UTF_8);
+    private final User admin = new User(42, "Ada Admin", "ada@bank.com", "1234567890", "password", true);
+
+    @Test
+    public void testIssuedTokenVerifiesWithItsClaims() {
+        AuthTokenService tokens = new AuthTokenService(SECRET, 3600, RevocationList.empty());
+
+        AuthToken authToken = tokens.verify(tokens.issue(admin));
+
+        assertNotNull(authToken);
+        assertEquals(42, authToken.getUserId());
+        assertTrue(authToken.isAdmin());
+    }
+
+    @Test
+    public void testTamperedOrForeignTokensAreRejected() {
+        AuthTokenService tokens = new AuthTokenService(SECRET, 3600, RevocationList.empty());
+        AuthTokenService otherNode = new AuthTokenService("another-secret".getBytes(StandardCharsets.UTF_8), 3600, RevocationList.empty());
+        String token = tokens.issue(admin);
+        //flip the last character of the payload
+        int dot = token.indexOf('.');
+        char last = token.charAt(dot - 1);
+        String tampered = token.substring(0, dot - 1) + (last == 'A' ? 'B' : 'A') + token.substring(dot);
+
+        assertNull(tokens.verify(tampered));
+        assertNull(tokens.verify(otherNode.issue(admin)));
+        assertNull(tokens.verify("ada@bank.com"));
+        assertNull(tokens.verify(null));
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        AuthTokenService tokens = new AuthTokenService(SECRET, -1, RevocationList.empty());
+
+        assertNull(tokens.verify(tokens.issue(admin)));
+    }
+
+    @Test
+    public void testRevocationFileIsReloadedWithoutRestart() throws IOException {
+        Path file = Files.createTempFile("revoked", ".txt");
+        try {
+            RevocationList revocationList = new RevocationList(file, 0);
+            AuthTokenService tokens = new AuthTokenService(SECRET, 3600, revocationList);
+            String token = tokens.issue(admin);
+            assertNotNull(tokens.verify(token));
+
+            //revoke every token of user 42
+            Files.writeString(file, "# revoked users\nuser:42\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+
+            assertNull(tokens.verify(token));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.revature.labs.service;
+
+import net.revature.labs.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionCacheTest {
+
+    @Test
+    public void testCachedUserIsReturnedForToken() {
+        SessionCache cache = new SessionCache(10, 60000);
+        User user = new User(1, "John Doe", "john@doe.com", "1234567890", "password", false);
+
+        cache.put("john@doe.com", user, cache.stamp());
+
+        assertEquals(user, cache.get("john@doe.com"));
+        assertNull(cache.get("someone@else.com"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSessionIsEvictedWhenFull() {
+        SessionCache cache = new SessionCache(2, 60000);
+        cache.put("a", new User(1, "A", "a@a.com", "1", "p", false), cache.stamp());
+        cache.put("b", new User(2, "B", "b@b.com", "2", "p", false), cache.stamp());
+        //touch a so b becomes the least recently used
+        cache.get("a");
+
+        cache.put("c", new User(3, "C", "c@c.com", "3", "p", false), cache.stamp());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testExpiredSessionIsNotReturned() throws InterruptedException {
+        SessionCache cache = new SessionCache(10, 1);
+        cache.put("a", new User(1, "A", "a@a.com", "1", "p", false), cache.stamp());
+
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateUserDropsAllOfTheirSessions() {
+        SessionCache cache = new SessionCache(10, 60000);
+        User user = new User(7, "A", "a@a.com", "1", "p", false);
+        cache.put("token-1", user, cache.stamp());
+        cache.put("token-2", user, cache.stamp());
+        cache.put("other", new User(8, "B", "b@b.com", "2", "p", false), cache.stamp());
+
+        cache.invalidateUser(7);
+
+        assertNull(cache.get("token-1"));
+        assertNull(cache.get("token-2"));
+        assertNotNull(cache.get("other"));
+    }
+
+    @Test
+    public void testLookupRacingAnUpdateDoesNotCacheTheOldUser() {
+        //Arrange
+        //a lookup reads the user, then their details change before it caches them
+        SessionCache cache = new SessionCache(10, 60000);
+        long stamp = cache.stamp();
+        User beforeUpdate = new User(7, "A", "a@a.com", "1", "p", false);
+        cache.invalidateUser(7);
+
+        //Act
+        cache.put("token-1", beforeUpdate, stamp);
+
+        //Assert
+        assertNull(cache.get("token-1"));
+    }
+}
@@ -0,0 +1,121 @@
+package net.revature.labs.service;
+
+import net.revature.labs.dao.BankAccountDAO;
+import net.revature.labs.dao.UserDAOImpl;
+import net.revature.labs.dao.util.DBUtil;
+import net.revature.labs.model.BankAccount;
+import net.revature.labs.model.Money;
+import net.revature.labs.model.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.TestUtil;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferServiceTest {
+    private static TransferService transferService;
+    private static BankAccountDAO bankAccountDAO;
+    private static UserDAOImpl userDAO;
+
+    @BeforeAll
+    public static void setup() throws SQLException, IOException, ClassNotFoundException {
+        TestUtil.setEnvironmentToTest();
+        DBUtil.resetTestDatabase();
+        bankAccountDAO = new BankAccountDAO();
+        userDAO = new UserDAOImpl();
+        transferService = new TransferService(bankAccountDAO, 3);
+    }
+
+    @AfterAll
+    public static void tearDown() throws SQLException, IOException {
+        DBUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void testTransferMovesMoneyBetweenAccounts() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "transfer@one.com";
+        userDAO.registerUser(new User("Tran Sfer", email, "6661112222", "password", false));
+        BankAccount sender = bankAccountDAO.createBankAccount(email, "checking");
+        BankAccount receiver = bankAccountDAO.createBankAccount(email, "savings");
+        bankAccountDAO.depositToAccount(sender.getAccountNumber(), Money.parse("100.00"));
+
+        //Act
+        BankAccount senderAfterTransfer = transferService.transfer(sender.getAccountNumber(), receiver.getAccountNumber(), Money.parse("30.00"));
+
+        //Assert
+        assertEquals(Money.parse("70.00"), senderAfterTransfer.getBalance());
+        assertEquals(Money.parse("30.00"), bankAccountDAO.getAccount(receiver.getAccountNumber()).getBalance());
+    }
+
+    @Test
+    public void testTransferWithInsufficientFundsChangesNothing() throws SQLException, ClassNotFoundException, IOException {
+        //Arrange
+        String email = "transfer@two.com";
+        userDAO.registerUser(new User("Tran Sfer", email, "6661112223", "password", false));
+        BankAccount sender = bankAccountDAO.createBankAccount(email, "checking");
+        BankAccount receiver = bankAccountDAO.createBankAccount(email, "savings");
+        bankAccountDAO.depositToAccount(sender.getAccountNumber(), Money.parse("10.00"));
+
+        //Act and Assert
+        assertThrows(IllegalArgumentException.class,
+            () -> transferService.transfer(sender.getAccountNumber(), receiver.getAccountNumber(), Money.parse("10.01")));
+        assertEquals(Money.parse("10.00"), bankAccountDAO.getAccount(sender.getAccountNumber()).getBalance());
+        assertEquals(0, bankAccountDAO.getAccount(receiver.getAccountNumber()).getBalance().signum());
+    }
+
+    @Test
+    public void testOppositeConcurrentTransfersDoNotDeadlockOrLoseMoney() throws Exception {
+        //Arrange
+        //two accounts sending money back and forth at the same time
+        String email = "transfer@three.com";
+        userDAO.registerUser(new User("Tran Sfer", email, "6661112224", "password", false));
+        BankAccount a = bankAccountDAO.createBankAccount(email, "checking");
+        BankAccount b = bankAccountDAO.createBankAccount(email, "savings");
+        bankAccountDAO.depositToAccount(a.getAccountNumber(), Money.parse("1000.00"));
+        bankAccountDAO.depositToAccount(b.getAccountNumber(), Money.parse("1000.00"));
+
+        //Act
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<BankAccount>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            boolean aToB = i % 2 == 0;
+            int from = aToB ? a.getAccountNumber() : b.getAccountNumber();
+            int to = aToB ? b.getAccountNumber() : a.getAccountNumber();
+            results.add(pool.submit(() -> transferService.transfer(from, to, Money.parse("5.00"))));
+        }
+        for (Future<BankAccount> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        //Assert
+        //money is neither created nor destroyed
+        Money total = bankAccountDAO.getAccount(a.getAccountNumber()).getBalance()
+            .plus(bankAccountDAO.getAccount(b.getAccountNumber()).getBalance());
+        assertEquals(Money.parse("2000.00"), total);
+    }
+
+    @Test
+    public void testTransferToSameAccountIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> transferService.transfer(1000000001, 1000000001, Money.parse("1.00")));
+    }
+
+    @Test
+    public void testOnlySerializationFailuresAndDeadlocksAreRetried() {
+        assertTrue(TransferService.isRetryable(new SQLException("serialization failure", "40001")));
+        assertTrue(TransferService.isRetryable(new SQLException("deadlock detected", "40P01")));
+        assertFalse(TransferService.isRetryable(new SQLException("unique violation", "23505")));
+    }
+}